@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Locale;
+
+/** In-memory Derby database for the benchmarks. Each benchmark state creates its own database, which is dropped on tear
+ * down. */
+final class BenchmarkDatabase {
+
+    /** Column types benchmarked by the query result benchmarks. The width of VARCHAR columns is part of the type. */
+    enum ColumnType {
+        INT("INTEGER", Types.INTEGER), BIGINT("BIGINT", Types.BIGINT), DOUBLE("DOUBLE", Types.DOUBLE), DECIMAL(
+                "DECIMAL(12,4)", Types.DECIMAL), VARCHAR_10("VARCHAR(10)", Types.VARCHAR), VARCHAR_1000("VARCHAR(1000)",
+                Types.VARCHAR), TIMESTAMP("TIMESTAMP", Types.TIMESTAMP);
+
+        private final String sqlType;
+
+        private final int jdbcType;
+
+        private ColumnType(String sqlType, int jdbcType) {
+            this.sqlType = sqlType;
+            this.jdbcType = jdbcType;
+        }
+
+        Object createValue(int row) {
+            switch (this) {
+                case INT:
+                    return Integer.valueOf(row);
+                case BIGINT:
+                    return Long.valueOf(row * 1000003L);
+                case DOUBLE:
+                    return Double.valueOf(row / 7.0);
+                case DECIMAL:
+                    return new java.math.BigDecimal(row).movePointLeft(2);
+                case VARCHAR_10:
+                    return pad(row, 10);
+                case VARCHAR_1000:
+                    return pad(row, 1000);
+                default:
+                    return new Timestamp(1420070400000L + row * 1000L);
+            }
+        }
+
+        /** Creates the table column the values of this type are typically retrieved with. */
+        TableColumnImpl<?> createColumn(TableColumnFactoryImpl factory, String name) {
+            switch (this) {
+                case INT:
+                    return (TableColumnImpl<?>) factory.createIntColumn(name);
+                case BIGINT:
+                    return (TableColumnImpl<?>) factory.createLongColumn(name);
+                case DOUBLE:
+                case DECIMAL:
+                    return (TableColumnImpl<?>) factory.createDoubleColumn(name);
+                case VARCHAR_10:
+                case VARCHAR_1000:
+                    return (TableColumnImpl<?>) factory.createStringColumn(name);
+                default:
+                    return (TableColumnImpl<?>) factory.createTimestampColumn(name);
+            }
+        }
+
+        private static String pad(int row, int length) {
+            StringBuilder sb = new StringBuilder(length);
+            sb.append(row);
+            while (sb.length() < length) {
+                sb.append('x');
+            }
+            return sb.toString();
+        }
+    }
+
+    private final String name;
+
+    private final Connection connection;
+
+    BenchmarkDatabase(String name) throws SQLException {
+        this.name = name;
+        this.connection = DriverManager.getConnection("jdbc:derby:memory:" + name + ";create=true");
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /** Creates a table named <code>bench</code> with the given number of rows and columns of the given type. Every tenth value
+     * is NULL. */
+    void createTable(int rows, int columns, ColumnType type) throws SQLException {
+        StringBuilder create = new StringBuilder("CREATE TABLE bench (id INTEGER NOT NULL PRIMARY KEY");
+        StringBuilder insert = new StringBuilder("INSERT INTO bench VALUES (?");
+        for (int i = 1; i <= columns; i++) {
+            create.append(", c").append(i).append(' ').append(type.sqlType);
+            insert.append(", ?");
+        }
+        execute(create.append(')').toString());
+
+        connection.setAutoCommit(false);
+        PreparedStatement ps = connection.prepareStatement(insert.append(')').toString());
+        try {
+            for (int row = 1; row <= rows; row++) {
+                ps.setInt(1, row);
+                for (int i = 1; i <= columns; i++) {
+                    if ((row + i) % 10 == 0) {
+                        ps.setNull(i + 1, type.jdbcType);
+                    }
+                    else {
+                        ps.setObject(i + 1, type.createValue(row));
+                    }
+                }
+                ps.addBatch();
+                if (row % 1000 == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+            connection.commit();
+        }
+        finally {
+            ps.close();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    void execute(String sql) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute(sql);
+        }
+        finally {
+            stmt.close();
+        }
+    }
+
+    /** Closes the connection and drops the database. */
+    void drop() {
+        try {
+            connection.close();
+        }
+        catch (SQLException e) { // NOPMD
+        }
+        try {
+            DriverManager.getConnection("jdbc:derby:memory:" + name + ";drop=true");
+        }
+        catch (SQLException e) { // NOPMD
+            // Derby always reports a dropped database with an exception
+        }
+    }
+
+    static String uniqueName(String prefix) {
+        return (prefix + "_" + Long.toHexString(System.nanoTime())).toLowerCase(Locale.ENGLISH);
+    }
+
+}
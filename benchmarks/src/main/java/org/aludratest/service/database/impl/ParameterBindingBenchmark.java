@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the binding of statement parameters of all types supported by the database service. The statement is never
+ * executed. NULL parameters are not bound, as Derby rejects the untyped NULL the service binds for them. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterBindingBenchmark {
+
+    private BenchmarkDatabase database;
+
+    private PreparedStatement statement;
+
+    private Object[] parameters;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(BenchmarkDatabase.uniqueName("binding"));
+        database.execute("CREATE TABLE bench (a INTEGER, b BIGINT, c DOUBLE, d DECIMAL(12,4), e VARCHAR(100), "
+                + "f TIMESTAMP)");
+        statement = database.getConnection().prepareStatement("INSERT INTO bench VALUES (?, ?, ?, ?, ?, ?)");
+        parameters = new Object[] { Integer.valueOf(42), Long.valueOf(4200000000L), Double.valueOf(4.2),
+                new BigDecimal("42.4242"), "forty-two", new Date(1420070400000L) };
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        statement.close();
+        database.drop();
+    }
+
+    @Benchmark
+    public PreparedStatement bindParameters() throws SQLException {
+        DatabaseActionImpl.bindParameters(statement, parameters);
+        return statement;
+    }
+
+}
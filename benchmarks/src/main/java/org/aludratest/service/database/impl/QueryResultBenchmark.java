@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.aludratest.service.database.impl.BenchmarkDatabase.ColumnType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures the materialization of query results, which replaced the former <code>createCachedRowSet()</code>, and the
+ * retrieval of values from materialized results, as performed by <code>getColumnValue()</code> while iterating over rows. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryResultBenchmark {
+
+    @Param({ "100", "10000" })
+    public int rows;
+
+    /** Number of columns of the benchmarked type, in addition to the integer primary key. */
+    @Param({ "1", "10" })
+    public int columns;
+
+    /** Name of a {@link ColumnType}, as the generated benchmark code cannot access the package visible type itself. */
+    @Param({ "INT", "BIGINT", "DOUBLE", "DECIMAL", "VARCHAR_10", "VARCHAR_1000", "TIMESTAMP" })
+    public String type;
+
+    private ColumnType columnType;
+
+    private BenchmarkDatabase database;
+
+    private TempFiles tempFiles;
+
+    private PreparedStatement query;
+
+    private DataRowsImpl materialized;
+
+    private TableColumnImpl<?>[] tableColumns;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(BenchmarkDatabase.uniqueName("result"));
+        columnType = ColumnType.valueOf(type);
+        database.createTable(rows, columns, columnType);
+        tempFiles = new TempFiles();
+        query = database.getConnection().prepareStatement("SELECT * FROM bench ORDER BY id");
+        materialized = (DataRowsImpl) readResult(-1);
+
+        TableColumnFactoryImpl factory = new TableColumnFactoryImpl();
+        tableColumns = new TableColumnImpl<?>[columns];
+        for (int i = 0; i < columns; i++) {
+            tableColumns[i] = columnType.createColumn(factory, "c" + (i + 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        query.close();
+        tempFiles.close();
+        database.drop();
+    }
+
+    @Benchmark
+    public AbstractDataRows materialize() throws SQLException {
+        return readResult(-1);
+    }
+
+    /** Materializes the result with a memory budget of 0 bytes, i.e. spills all rows to a temporary file. */
+    @Benchmark
+    public AbstractDataRows materializeSpilled() throws SQLException {
+        return readResult(0);
+    }
+
+    @Benchmark
+    public void iterateValues(Blackhole blackhole) throws SQLException {
+        for (int row = 1; row <= rows; row++) {
+            for (TableColumnImpl<?> column : tableColumns) {
+                blackhole.consume(materialized.getValue(row, column));
+            }
+        }
+    }
+
+    private AbstractDataRows readResult(long memoryBudget) throws SQLException {
+        ResultSet rs = query.executeQuery();
+        try {
+            return ResultReader.read(rs, LobStore.inMemory(), tempFiles, memoryBudget);
+        }
+        finally {
+            rs.close();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.aludratest.service.database.impl.BenchmarkDatabase.ColumnType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the row count probes of <code>getQueryResultCount()</code>, which back the existence checks and polling
+ * verifications: stopping at the required count without any limits on the statement, limiting the fetched rows via JDBC, and
+ * wrapping the query into a dialect specific row limiting statement. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowCountProbeBenchmark {
+
+    private static final String QUERY = "SELECT * FROM bench WHERE c1 >= 0";
+
+    /** The number of rows the probes stop at, as used by <code>assertSingleRowQuery()</code>. */
+    private static final int STOP_COUNT = 2;
+
+    @Param({ "1000", "100000" })
+    public int rows;
+
+    private BenchmarkDatabase database;
+
+    private PreparedStatement unlimitedQuery;
+
+    private PreparedStatement limitedQuery;
+
+    private PreparedStatement rewrittenQuery;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(BenchmarkDatabase.uniqueName("probe"));
+        database.createTable(rows, 1, ColumnType.INT);
+        unlimitedQuery = database.getConnection().prepareStatement(QUERY);
+        limitedQuery = database.getConnection().prepareStatement(QUERY);
+        limitedQuery.setMaxRows(STOP_COUNT);
+        limitedQuery.setFetchSize(STOP_COUNT);
+        rewrittenQuery = database.getConnection().prepareStatement(SqlDialect.DERBY.limitRows(QUERY, STOP_COUNT));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        unlimitedQuery.close();
+        limitedQuery.close();
+        rewrittenQuery.close();
+        database.drop();
+    }
+
+    /** Stops counting at the required count, but leaves the maximum rows and fetch size of the statement unlimited, as the
+     * probes did before they were limited, so the driver may fetch and the database may produce more rows than needed. */
+    @Benchmark
+    public int unlimitedProbe() throws SQLException {
+        return count(unlimitedQuery, STOP_COUNT);
+    }
+
+    @Benchmark
+    public int limitedProbe() throws SQLException {
+        return count(limitedQuery, STOP_COUNT);
+    }
+
+    /** The probe used if <code>query.probe.rewrite</code> is enabled. */
+    @Benchmark
+    public int rewrittenProbe() throws SQLException {
+        return count(rewrittenQuery, STOP_COUNT);
+    }
+
+    private static int count(PreparedStatement ps, int stopCount) throws SQLException {
+        ResultSet rs = ps.executeQuery();
+        try {
+            int cnt = 0;
+            while (cnt < stopCount && rs.next()) {
+                cnt++;
+            }
+            return cnt;
+        }
+        finally {
+            rs.close();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the classification of statements, which <code>validateStatementPermission()</code> performs for every executed
+ * statement, with and without the classification cache. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementClassifierBenchmark {
+
+    private static final String[] STATEMENTS = {
+            "SELECT * FROM test1 WHERE test_id = ?",
+            "SELECT a.x, b.y FROM schema1.table_a a JOIN schema1.table_b b ON a.id = b.id WHERE a.x > ? ORDER BY b.y",
+            "/* generated */ WITH recent AS (SELECT id FROM orders WHERE created > ?) SELECT o.* FROM orders o, recent r "
+                    + "WHERE o.id = r.id AND o.note <> 'it''s; DELETE FROM orders' -- trailing comment",
+            "UPDATE test1 SET test_value1 = ?, test_value2 = ? WHERE test_id = ?" };
+
+    @Param({ "0", "1", "2", "3" })
+    public int statement;
+
+    private String sql;
+
+    private StatementClassifier classifier;
+
+    @Setup
+    public void setUp() {
+        sql = STATEMENTS[statement];
+        classifier = new StatementClassifier(1000);
+        classifier.classify(sql);
+    }
+
+    @Benchmark
+    public StatementType classifyCached() {
+        return classifier.classify(sql);
+    }
+
+    @Benchmark
+    public Object classifyUncached() {
+        return StatementClassifier.analyzeUncached(sql);
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/** Asynchronous variants of the most common database operations. Each method returns immediately, while the statement is
+ * executed on a separate thread with its own connection of the connection pool, so independent statements can overlap. The
+ * number of statements executed at the same time is limited by the <code>async.threads</code> and <code>pool.maxSize</code>
+ * configuration of the {@link DatabaseService}. <br>
+ * Asynchronous operations are never part of a transaction started via {@link DatabaseInteraction#beginTransaction()}, and they
+ * are not logged as test steps. Retrieve the result via {@link Future#get()}; if the operation failed, it throws an
+ * {@link ExecutionException} wrapping the cause. */
+public interface AsyncDatabaseInteraction {
+
+    /** Asynchronously executes an SQL <code>SELECT</code> statement (a query). See
+     * {@link DatabaseInteraction#query(String, Object...)} for details.
+     * 
+     * @param query SQL query to execute.
+     * @param parameters Parameters for the SQL statement, if any, in PreparedStatement syntax.
+     * 
+     * @return The future (possibly empty) collection of returned data rows. */
+    Future<DataRows> query(String query, Object... parameters);
+
+    /** Asynchronously executes an SQL <code>INSERT</code> statement.
+     * 
+     * @param sqlStatement SQL <code>INSERT</code> statement.
+     * @param parameters Parameters for the SQL statement, if any, in PreparedStatement syntax.
+     * 
+     * @return The future number of affected database rows. */
+    Future<Integer> insert(String sqlStatement, Object... parameters);
+
+    /** Asynchronously executes an SQL <code>UPDATE</code> statement.
+     * 
+     * @param sqlStatement SQL <code>UPDATE</code> statement.
+     * @param parameters Parameters for the SQL statement, if any, in PreparedStatement syntax.
+     * 
+     * @return The future number of affected database rows. */
+    Future<Integer> update(String sqlStatement, Object... parameters);
+
+    /** Asynchronously executes an SQL <code>DELETE</code> statement.
+     * 
+     * @param sqlStatement SQL <code>DELETE</code> statement.
+     * @param parameters Parameters for the SQL statement, if any, in PreparedStatement syntax.
+     * 
+     * @return The future number of deleted database rows. */
+    Future<Integer> delete(String sqlStatement, Object... parameters);
+
+    /** Asynchronously checks if the given query is valid, but does not return a single row of data. See
+     * {@link DatabaseCondition#isEmptyQuery(String, Object...)} for details.
+     * 
+     * @param query SQL query to execute, in PreparedStatement syntax.
+     * @param parameters Parameters for the SQL query, in the order of placeholders of prepared syntax statement.
+     * 
+     * @return The future check result. */
+    Future<Boolean> isEmptyQuery(String query, Object... parameters);
+
+    /** Asynchronously checks if the given query is valid and returns at least one row of data. See
+     * {@link DatabaseCondition#isNonEmptyQuery(String, Object...)} for details.
+     * 
+     * @param query SQL query to execute, in PreparedStatement syntax.
+     * @param parameters Parameters for the SQL query, in the order of placeholders of prepared syntax statement.
+     * 
+     * @return The future check result. */
+    Future<Boolean> isNonEmptyQuery(String query, Object... parameters);
+
+}
@@ -15,6 +15,8 @@
  */
 package org.aludratest.service.database;
 
+import java.util.NoSuchElementException;
+
 /** Interface of a result of a database query. It offers the total number of rows (maybe zero) and an iterator over all returned
  * rows, in the order they have been returned by the database.
  * 
@@ -23,7 +25,20 @@ public interface DataRows extends Iterable<DataRow> {
 
     /** Returns the number of rows contained in this object.
      * 
-     * @return The number of rows contained in this object. */
+     * @return The number of rows contained in this object.
+     * 
+     * @throws org.aludratest.exception.AutomationException If the number of rows is not known yet, i.e. for a streamed query
+     *             result which has not been iterated completely. */
     int getRowCount();
 
+    /** Returns the row with the given number. The row is accessed directly, without iterating over the preceding rows.
+     * 
+     * @param rowNum The (1-based) number of the row.
+     * 
+     * @return The row with the given number.
+     * 
+     * @throws NoSuchElementException If there is no row with this number, or if it cannot be accessed anymore, e.g. because it
+     *             has already been passed by a streamed query result. */
+    DataRow getRow(int rowNum) throws NoSuchElementException;
+
 }
@@ -16,8 +16,15 @@
 package org.aludratest.service.database;
 
 import org.aludratest.service.Condition;
+import org.aludratest.service.TechnicalArgument;
 import org.aludratest.service.TechnicalLocator;
+import org.aludratest.service.database.tablecolumn.DoubleColumn;
+import org.aludratest.service.database.tablecolumn.IntColumn;
+import org.aludratest.service.database.tablecolumn.LongColumn;
 import org.aludratest.service.database.tablecolumn.TableColumn;
+import org.aludratest.service.database.validator.DoubleValidator;
+import org.aludratest.service.database.validator.IntValidator;
+import org.aludratest.service.database.validator.LongValidator;
 import org.databene.commons.Validator;
 
 /** {@link Condition} interface of the {@link DatabaseService}.
@@ -62,6 +69,83 @@ public interface DatabaseCondition extends Condition {
 	 */
 	public boolean isNonEmptyQuery(@TechnicalLocator String query, Object... parameters);
 
+	/**
+	 * Checks if the given query returns exactly the given number of rows. The rows are counted by the database, so only the count
+	 * is fetched.
+	 * 
+	 * @param query
+	 *            SQL query to count the rows of. Must be a plain <code>SELECT</code> statement which is valid as a derived table,
+	 *            e.g. without an <code>ORDER BY</code> clause on some databases.
+	 * @param expectedCount
+	 *            Expected number of rows.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 * 
+	 * @return <code>true</code> if the query returns the expected number of rows, <code>false</code> otherwise, or if the query
+	 *         could not be executed.
+	 */
+	public boolean hasRowCount(@TechnicalLocator String query, @TechnicalArgument long expectedCount,
+			Object... parameters);
+
+	/**
+	 * Checks if the sum of the given column over all rows of the given query equals the given value. The sum is computed by the
+	 * database, so only the sum is fetched. Numbers are compared by their numeric value, regardless of their type.
+	 * 
+	 * @param query
+	 *            SQL query to sum up the rows of. See {@link #hasRowCount(String, long, Object...)} for restrictions.
+	 * @param column
+	 *            Name of the column of the query to sum up.
+	 * @param expectedSum
+	 *            Expected sum, or <code>null</code> if the query is expected to return no rows, or only <code>NULL</code>
+	 *            values.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 * 
+	 * @return <code>true</code> if the sum equals the expected sum, <code>false</code> otherwise, or if the query could not be
+	 *         executed.
+	 */
+	public boolean hasSum(@TechnicalLocator String query, @TechnicalArgument String column, @TechnicalArgument Number expectedSum,
+			Object... parameters);
+
+	/**
+	 * Checks if the minimum and maximum value of the given column over all rows of the given query equal the given values. Both
+	 * values are computed by the database, so only they are fetched.
+	 * 
+	 * @param query
+	 *            SQL query to aggregate the rows of. See {@link #hasRowCount(String, long, Object...)} for restrictions.
+	 * @param column
+	 *            Name of the column of the query to aggregate.
+	 * @param expectedMin
+	 *            Expected minimum value, or <code>null</code> if no rows or only <code>NULL</code> values are expected.
+	 * @param expectedMax
+	 *            Expected maximum value, or <code>null</code> if no rows or only <code>NULL</code> values are expected.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 * 
+	 * @return <code>true</code> if both values match, <code>false</code> otherwise, or if the query could not be executed.
+	 */
+	public boolean hasMinMax(@TechnicalLocator String query, @TechnicalArgument String column,
+			@TechnicalArgument Object expectedMin, @TechnicalArgument Object expectedMax, Object... parameters);
+
+	/**
+	 * Checks if the given column has exactly the given number of distinct non-<code>NULL</code> values over all rows of the
+	 * given query. The values are counted by the database, so only the count is fetched.
+	 * 
+	 * @param query
+	 *            SQL query to aggregate the rows of. See {@link #hasRowCount(String, long, Object...)} for restrictions.
+	 * @param column
+	 *            Name of the column of the query to count the distinct values of.
+	 * @param expectedCount
+	 *            Expected number of distinct values.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 * 
+	 * @return <code>true</code> if the number of distinct values matches, <code>false</code> otherwise, or if the query could not
+	 *         be executed.
+	 */
+	public boolean hasDistinctCount(@TechnicalLocator String query, @TechnicalArgument String column,
+			@TechnicalArgument long expectedCount, Object... parameters);
+
 	/**
 	 * Checks if the value of the given column in the given row of a result set of a query matches the given validator.
 	 * 
@@ -78,4 +162,69 @@ public interface DatabaseCondition extends Condition {
 	 */
 	public <T> boolean valueMatches(DataRows rows, int rowNum, TableColumn<T> column, Validator<T> validator);
 
+	/**
+	 * Checks if the value of the given int column in the given row of a result set matches the given validator, without
+	 * boxing the value.
+	 * 
+	 * @param rows
+	 *            Result set rows, as returned from {@link DatabaseInteraction#query(String, Object...)}.
+	 * @param rowNum
+	 *            1-based number of the row to check.
+	 * @param column
+	 *            Column to check.
+	 * @param validator
+	 *            Validator to check the column value against.
+	 * 
+	 * @return <code>true</code> if the column value matches the validator, <code>false</code> if it does not match, or is
+	 *         <code>NULL</code>.
+	 */
+	public boolean valueMatches(DataRows rows, int rowNum, IntColumn column, IntValidator validator);
+
+	/**
+	 * Checks if the value of the given long column in the given row of a result set matches the given validator, without
+	 * boxing the value.
+	 * 
+	 * @param rows
+	 *            Result set rows, as returned from {@link DatabaseInteraction#query(String, Object...)}.
+	 * @param rowNum
+	 *            1-based number of the row to check.
+	 * @param column
+	 *            Column to check.
+	 * @param validator
+	 *            Validator to check the column value against.
+	 * 
+	 * @return <code>true</code> if the column value matches the validator, <code>false</code> if it does not match, or is
+	 *         <code>NULL</code>.
+	 */
+	public boolean valueMatches(DataRows rows, int rowNum, LongColumn column, LongValidator validator);
+
+	/**
+	 * Checks if the value of the given double column in the given row of a result set matches the given validator, without
+	 * boxing the value.
+	 * 
+	 * @param rows
+	 *            Result set rows, as returned from {@link DatabaseInteraction#query(String, Object...)}.
+	 * @param rowNum
+	 *            1-based number of the row to check.
+	 * @param column
+	 *            Column to check.
+	 * @param validator
+	 *            Validator to check the column value against.
+	 * 
+	 * @return <code>true</code> if the column value matches the validator, <code>false</code> if it does not match, or is
+	 *         <code>NULL</code>.
+	 */
+	public boolean valueMatches(DataRows rows, int rowNum, DoubleColumn column, DoubleValidator validator);
+
+	/**
+	 * Checks if a database template with the given name has been created via {@link DatabaseInteraction#createTemplate(String)},
+	 * in this or an earlier test run.
+	 * 
+	 * @param name
+	 *            Name of the template.
+	 * 
+	 * @return <code>true</code> if the template exists, <code>false</code> otherwise.
+	 */
+	public boolean isTemplateAvailable(@TechnicalArgument String name);
+
 }
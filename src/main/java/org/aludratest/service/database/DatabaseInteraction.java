@@ -15,9 +15,20 @@
  */
 package org.aludratest.service.database;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 import org.aludratest.service.Interaction;
 import org.aludratest.service.TechnicalArgument;
 import org.aludratest.service.TechnicalLocator;
+import org.aludratest.service.database.tablecolumn.BlobColumn;
+import org.aludratest.service.database.tablecolumn.ClobColumn;
+import org.aludratest.service.database.tablecolumn.DoubleColumn;
+import org.aludratest.service.database.tablecolumn.IntColumn;
+import org.aludratest.service.database.tablecolumn.LongColumn;
 import org.aludratest.service.database.tablecolumn.TableColumn;
 
 /**
@@ -56,7 +67,39 @@ public interface DatabaseInteraction extends Interaction {
      * @return Number of deleted database rows. */
     int delete(@TechnicalLocator String sqlStatement, @TechnicalArgument Object... parameters);
 
-    /** Executes an SQL <code>SELECT</code> statement (a query).
+    /** Executes an SQL <code>INSERT</code> statement once for each of the given parameter sets, using JDBC batches. The
+     * parameter sets are sent to the database in batches of the configured <code>batch.size</code>. Unless a transaction is
+     * active, all batches are executed in their own transaction, which is committed at the end, or after each batch if
+     * <code>batch.commitPerChunk</code> is set. If a batch fails, all uncommitted batches are rolled back.
+     * 
+     * @param sqlStatement SQL <code>INSERT</code> statement in PreparedStatement syntax (use ? as placeholder for parameters).
+     * @param parameterSets Parameter sets for the SQL statement, each one in the same order as to be used in the SQL statement.
+     *            Use <code>Collection.iterator()</code> to pass a collection of parameter sets.
+     * 
+     * @return The number of affected database rows, per executed batch. If the JDBC driver does not report the number for a
+     *         batch, the entry is <code>Statement.SUCCESS_NO_INFO</code>. */
+    int[] insertBatch(@TechnicalLocator String sqlStatement, @TechnicalArgument Iterator<Object[]> parameterSets);
+
+    /** Executes an SQL <code>UPDATE</code> statement once for each of the given parameter sets, using JDBC batches. See
+     * {@link #insertBatch(String, Iterator)} for details.
+     * 
+     * @param sqlStatement SQL <code>UPDATE</code> statement in PreparedStatement syntax (use ? as placeholder for parameters).
+     * @param parameterSets Parameter sets for the SQL statement, each one in the same order as to be used in the SQL statement.
+     * 
+     * @return The number of affected database rows, per executed batch. */
+    int[] updateBatch(@TechnicalLocator String sqlStatement, @TechnicalArgument Iterator<Object[]> parameterSets);
+
+    /** Executes an SQL <code>DELETE</code> statement once for each of the given parameter sets, using JDBC batches. See
+     * {@link #insertBatch(String, Iterator)} for details.
+     * 
+     * @param sqlStatement SQL <code>DELETE</code> statement in PreparedStatement syntax (use ? as placeholder for parameters).
+     * @param parameterSets Parameter sets for the SQL statement, each one in the same order as to be used in the SQL statement.
+     * 
+     * @return The number of deleted database rows, per executed batch. */
+    int[] deleteBatch(@TechnicalLocator String sqlStatement, @TechnicalArgument Iterator<Object[]> parameterSets);
+
+    /** Executes an SQL <code>SELECT</code> statement (a query). Results exceeding the configured <code>query.memoryBudget</code>
+     * are held in a temporary file instead of memory.
      * 
      * @param query SQL query to execute.
      * @param parameters Parameters for the SQL statement, if any. The SQL statement must be in PreparedStatement syntax to use
@@ -67,14 +110,128 @@ public interface DatabaseInteraction extends Interaction {
      *         examine it. */
     DataRows query(@TechnicalLocator String query, @TechnicalArgument Object... parameters);
 
+    /** Executes an SQL <code>SELECT</code> statement (a query) without reading its complete result into memory. The returned rows
+     * are read from the live database cursor while being iterated, so they can be iterated only once, and only the current row of
+     * the iteration can be examined. {@link DataRows#getRowCount()} is only available after the iteration has finished. The
+     * statement is closed as soon as the iteration has finished.
+     * 
+     * @param query SQL query to execute.
+     * @param parameters Parameters for the SQL statement, if any. The SQL statement must be in PreparedStatement syntax to use
+     *            parameters (use ? as placeholder for parameters). Parameters must be in same order as to be used in SQL
+     *            statement.
+     * 
+     * @return The streamed data rows. Use {@link #getColumnValue(DataRows, int, TableColumn)} or the returned {@link DataRow}s to
+     *         examine the current row. */
+    DataRows streamQuery(@TechnicalLocator String query, @TechnicalArgument Object... parameters);
+
     /** Returns the value of a column in a given row in a set of data rows.
      * 
      * @param rows The set of data rows.
      * @param rowNum The (1-based) number of the row.
      * @param column The column to retrieve the value of. Must have been created with the TableColumnFactory returned by
      *            {@link DatabaseService#getTableColumnFactory()}.
-     * @return The value of the column in the given row, possibly <code>null</code>. */
-    <T> T getColumnValue(DataRows rows, @TechnicalArgument int rowNum, @TechnicalLocator TableColumn<T> column);
+     * @return The value of the column in the given row, possibly <code>null</code>.
+     * 
+     * @throws NoSuchElementException If the set of data rows does not contain the given column. */
+    <T> T getColumnValue(DataRows rows, @TechnicalArgument int rowNum, @TechnicalLocator TableColumn<T> column)
+            throws NoSuchElementException;
+
+    /** Returns the content of a CLOB column in a given row as a character stream. For query results, CLOBs larger than the
+     * configured <code>lob.spillThreshold</code> are read from a temporary file instead of memory; for streamed query results,
+     * the content is read directly from the database, and the stream must be read before moving to the next row.
+     * 
+     * @param rows The set of data rows.
+     * @param rowNum The (1-based) number of the row.
+     * @param column The CLOB column to read.
+     * 
+     * @return A character stream of the CLOB content, or <code>null</code> if the value is <code>NULL</code>. The caller must
+     *         close the stream.
+     * 
+     * @throws NoSuchElementException If the set of data rows does not contain the given column. */
+    Reader getCharacterStream(DataRows rows, @TechnicalArgument int rowNum, @TechnicalLocator ClobColumn column)
+            throws NoSuchElementException;
+
+    /** Returns the content of a BLOB column in a given row as a binary stream. See
+     * {@link #getCharacterStream(DataRows, int, ClobColumn)} for details.
+     * 
+     * @param rows The set of data rows.
+     * @param rowNum The (1-based) number of the row.
+     * @param column The BLOB column to read.
+     * 
+     * @return A binary stream of the BLOB content, or <code>null</code> if the value is <code>NULL</code>. The caller must close
+     *         the stream.
+     * 
+     * @throws NoSuchElementException If the set of data rows does not contain the given column. */
+    InputStream getBinaryStream(DataRows rows, @TechnicalArgument int rowNum, @TechnicalLocator BlobColumn column)
+            throws NoSuchElementException;
+
+    /** Returns all values of an integer column of a set of data rows at once, without boxing them. <code>NULL</code> values are
+     * returned as <code>0</code>; use {@link #getNullMask(DataRows, TableColumn)} to distinguish them from actual zeros. Not
+     * supported for {@link #streamQuery(String, Object...)} results.
+     * 
+     * @param rows The set of data rows.
+     * @param column The column to retrieve the values of.
+     * 
+     * @return The values of the column, the value of row 1 at index 0.
+     * 
+     * @throws NoSuchElementException If the set of data rows does not contain the given column. */
+    int[] getInts(DataRows rows, @TechnicalLocator IntColumn column) throws NoSuchElementException;
+
+    /** Returns all values of a long column of a set of data rows at once, without boxing them. See
+     * {@link #getInts(DataRows, IntColumn)} for details.
+     * 
+     * @param rows The set of data rows.
+     * @param column The column to retrieve the values of.
+     * 
+     * @return The values of the column, the value of row 1 at index 0.
+     * 
+     * @throws NoSuchElementException If the set of data rows does not contain the given column. */
+    long[] getLongs(DataRows rows, @TechnicalLocator LongColumn column) throws NoSuchElementException;
+
+    /** Returns all values of a double column of a set of data rows at once, without boxing them. See
+     * {@link #getInts(DataRows, IntColumn)} for details.
+     * 
+     * @param rows The set of data rows.
+     * @param column The column to retrieve the values of.
+     * 
+     * @return The values of the column, the value of row 1 at index 0.
+     * 
+     * @throws NoSuchElementException If the set of data rows does not contain the given column. */
+    double[] getDoubles(DataRows rows, @TechnicalLocator DoubleColumn column) throws NoSuchElementException;
+
+    /** Returns which values of a column of a set of data rows are <code>NULL</code>. Not supported for streamed query
+     * results.
+     * 
+     * @param rows The set of data rows.
+     * @param column The column to check.
+     * 
+     * @return A bit set with bit 0 set if the value of row 1 is <code>NULL</code>, etc.
+     * 
+     * @throws NoSuchElementException If the set of data rows does not contain the given column. */
+    BitSet getNullMask(DataRows rows, @TechnicalLocator TableColumn<?> column) throws NoSuchElementException;
+
+    /** Computes a SHA-256 checksum over the given columns of all rows of a table, e.g. to verify that a large table is identical
+     * in two environments, without reading the table into memory. The table is split into up to the given number of partitions
+     * by ranges of the key column. The partitions are read concurrently on separate connections of the pool, and each row is
+     * hashed while it is streamed. The row digests are summed up, so the checksum depends neither on the order of the rows nor
+     * on the number of partitions. The digest and key range of each partition are logged, so the partitions of two tables with
+     * differing checksums can be compared to narrow down the differing rows. The key ranges are aligned to multiples of a power
+     * of two, so they do not move if rows are missing at either end of the key range of one of the tables. <br>
+     * Values are hashed in a canonical form determined by the type of their column, e.g. the UTF-8 bytes for a string column, so
+     * the checksum does not depend on the database product or JDBC driver, as long as equal values are read. Uncommitted changes
+     * of a transaction of the calling thread are not included.
+     * 
+     * @param table Name of the table, optionally qualified by a schema name.
+     * @param partitions Maximum number of partitions, and of connections used at once (limited by <code>pool.maxSize</code>,
+     *            less the connection of an active transaction). Only tables with an int or long key column are partitioned,
+     *            other tables are read as a single partition.
+     * @param keyColumn Column to partition the rows by, usually the primary key. Rows with a <code>NULL</code> key are read as
+     *            a partition of their own.
+     * @param columns Columns to hash, usually all columns of the table including the key column.
+     * 
+     * @return The checksum, as a hexadecimal string. */
+    String getTableChecksum(@TechnicalLocator String table, @TechnicalArgument int partitions, TableColumn<?> keyColumn,
+            TableColumn<?>... columns);
 
     /** Fails the current test with an appropriate exception, indicating that the DB has an invalid state.
      * 
@@ -85,20 +242,73 @@ public interface DatabaseInteraction extends Interaction {
 	 * Begins a transaction. Following DML operations will not be committed until {@link #commitTransaction()} is called. <br>
 	 * By default, all DML operations are automatically committed. The underlying database connection switches to manual commit
 	 * mode when this method is called. <br>
-	 * If a transaction is already active, this method does nothing.
+	 * The transaction is bound to the calling thread: only operations of this thread take part in it, and only this thread can
+	 * commit or roll it back. Other threads sharing the service are not affected. <br>
+	 * If a transaction is already active for the calling thread, a nested transaction is begun, which is backed by a savepoint of
+	 * the active transaction. Committing the nested transaction keeps its changes as part of the enclosing transaction, rolling
+	 * it back undoes its changes only.
 	 */
 	void beginTransaction();
 
 	/**
 	 * Ends a transaction. All pending DML operations are committed. Following DML operations are committed automatically. <br>
+	 * If a nested transaction is active, it is ended, and its changes become part of the enclosing transaction. <br>
 	 * If no transaction is active, this method does nothing.
 	 */
 	void commitTransaction();
 
 	/**
 	 * Rolls back and ends the current transaction. Following DML operations are committed automatically. <br>
+	 * If a nested transaction is active, only its changes are rolled back, and the enclosing transaction stays active. <br>
 	 * If no transaction is active, this method does nothing.
 	 */
 	void rollbackTransaction();
 
+	/**
+	 * Sets a savepoint in the active transaction of the calling thread. The transaction can be rolled back to the savepoint
+	 * repeatedly, e.g. to restore a fixture inserted once before each test. The name must not be used by another savepoint of the
+	 * transaction.
+	 * 
+	 * @param name Name of the savepoint.
+	 */
+	void setSavepoint(@TechnicalArgument String name);
+
+	/**
+	 * Rolls back all changes made in the active transaction of the calling thread since the given savepoint was set. The
+	 * savepoint stays valid; savepoints set after it are discarded. The savepoint must have been set within the innermost active
+	 * nested transaction, if any.
+	 * 
+	 * @param name Name of the savepoint.
+	 */
+	void rollbackToSavepoint(@TechnicalArgument String name);
+
+	/**
+	 * Removes the given savepoint, and all savepoints set after it, from the active transaction of the calling thread. Changes
+	 * made since the savepoint was set are kept. The savepoint must have been set within the innermost active nested
+	 * transaction, if any.
+	 * 
+	 * @param name Name of the savepoint.
+	 */
+	void releaseSavepoint(@TechnicalArgument String name);
+
+	/**
+	 * Saves a copy of the complete database as a template with the given name, e.g. after seeding the fixture data shared by
+	 * several tests. The template is stored below the configured <code>template.directory</code> and replaces an existing template
+	 * of the same name. It is kept when the service is closed, so it can be built once per test run and restored by each test
+	 * via {@link #restoreTemplate(String)}. Must not be called within a transaction. Only supported for Derby.
+	 * 
+	 * @param name Name of the template, consisting of letters, digits, underscores and hyphens only.
+	 */
+	void createTemplate(@TechnicalArgument String name);
+
+	/**
+	 * Replaces the complete database by a copy of the given template, which is much faster than deleting and seeding the data
+	 * again. All connections of the service are closed for this and opened again on demand, so no transaction must be active,
+	 * no streamed query result must be open, and no other thread must use the service meanwhile. Connections to the database
+	 * opened outside of the service are closed by the database. Only supported for Derby.
+	 * 
+	 * @param name Name of the template, as passed to {@link #createTemplate(String)}.
+	 */
+	void restoreTemplate(@TechnicalArgument String name);
+
 }
@@ -22,7 +22,10 @@ import org.aludratest.service.ServiceInterface;
 import org.aludratest.service.database.tablecolumn.TableColumnFactory;
 
 /**
- * Database service interface for AludraTest.
+ * Database service interface for AludraTest. <br>
+ * A service instance may be shared by concurrent threads. Operations outside of a transaction use a pooled connection each and
+ * run concurrently; a transaction is bound to the thread which has begun it, and uses a connection of its own until it is
+ * committed or rolled back by that thread.
  * 
  * @author Volker Bergmann
  */
@@ -35,7 +38,32 @@ import org.aludratest.service.database.tablecolumn.TableColumnFactory;
 		@ConfigProperty(name = "enable.dml", description = "Allow INSERT, UPDATE, and DELETE statements. By default, these types of statements are forbidden.", required = true, type = boolean.class, defaultValue = "false"),
 		@ConfigProperty(name = "enable.ddl", description = "Allow types of statements other than plain DML (SELECT, INSERT, UPDATE, DELETE), e.g. table creation and dropping, truncations etc. By default, these types of statements are forbidden.", required = true, type = boolean.class, defaultValue = "false"),
 		@ConfigProperty(name = "verify.wait.timeout", description = "Time to wait, in milliseconds, for assertion methods for the desired condition to become true. If 0 (default), no waiting at all is performed.", type = int.class, defaultValue = "0", required = false),
-		@ConfigProperty(name = "verify.wait.interval", description = "The interval, in milliseconds, between two executions of the same statement during a wait of an assertion method. Only used if waiting is enabled for assertion statements.", type = int.class, defaultValue = "200", required = false) })
+		@ConfigProperty(name = "verify.wait.interval", description = "The initial interval, in milliseconds, between two executions of the same statement during a wait of an assertion method. Only used if waiting is enabled for assertion statements.", type = int.class, defaultValue = "200", required = false),
+		@ConfigProperty(name = "verify.wait.multiplier", description = "The factor by which the interval between two executions of the same statement grows during a wait of an assertion method. 1.0 (default) keeps the interval constant.", type = double.class, defaultValue = "1.0", required = false),
+		@ConfigProperty(name = "verify.wait.maxInterval", description = "The maximum interval, in milliseconds, between two executions of the same statement during a wait of an assertion method.", type = int.class, defaultValue = "5000", required = false),
+		@ConfigProperty(name = "verify.wait.jitter", description = "Fraction, between 0.0 and 1.0, by which each interval during a wait of an assertion method is randomly shortened or lengthened, to avoid concurrent tests polling in lockstep. Default is 0.0.", type = double.class, defaultValue = "0.0", required = false),
+		@ConfigProperty(name = "query.fetchSize", description = "The number of rows to fetch from the database at once when streaming query results. If 0 (default), the default of the JDBC driver is used.", type = int.class, defaultValue = "0", required = false),
+		@ConfigProperty(name = "query.memoryBudget", description = "Estimated size, in bytes, up to which a query result is kept in memory. Larger results are written to a temporary file, which is deleted when the service is closed. A negative value keeps all results in memory.", type = int.class, defaultValue = "67108864", required = false),
+		@ConfigProperty(name = "query.probe.rewrite", description = "If true, queries which are only executed to check for the existence of rows (e.g. isEmptyQuery, assertNonEmptyQuery) are wrapped into a database specific statement which returns at most the required number of rows. Only applies if the SQL dialect is known, and never within transactions.", type = boolean.class, defaultValue = "false", required = false),
+		@ConfigProperty(name = "sql.dialect", description = "The SQL dialect of the database, one of GENERIC, DERBY, DB2, POSTGRESQL, MYSQL, H2, HSQLDB, ORACLE. If not set, the dialect is detected from the JDBC URL.", type = String.class, required = false),
+		@ConfigProperty(name = "lob.spillThreshold", description = "Size, in bytes, above which CLOB and BLOB values of query results are copied to temporary files instead of memory. CLOB characters count as two bytes. The files are deleted when the service is closed. A negative value keeps all LOBs in memory.", type = int.class, defaultValue = "1048576", required = false),
+		@ConfigProperty(name = "query.cache.size", description = "The maximum number of query results to cache. Results of queries executed outside of a transaction are cached and returned again for the same SQL query and parameters, until a statement executed by this service modifies one of the queried tables, or the result expires. Changes made by other database clients, triggers or through views are not noticed. If 0, query results are not cached.", type = int.class, defaultValue = "0", required = false),
+		@ConfigProperty(name = "query.cache.ttl", description = "Time, in milliseconds, after which a cached query result expires. If 0, cached results expire only when their tables are modified.", type = int.class, defaultValue = "60000", required = false),
+		@ConfigProperty(name = "slowStatement.threshold", description = "Execution time, in milliseconds, from which on statements are logged as slow, together with their parameters, row count and calling test code. If negative, no statements are logged.", type = int.class, defaultValue = "-1", required = false),
+		@ConfigProperty(name = "slowStatement.capturePlans", description = "If true, the execution plan of each slow statement is captured and logged once, on the next execution of the same SQL. Only supported for Derby, where the runtime statistics of the statement are logged.", type = boolean.class, defaultValue = "false", required = false),
+		@ConfigProperty(name = "template.directory", description = "Directory to store database templates in, which are created via DatabaseInteraction.createTemplate() and copied back into the database via restoreTemplate(). Templates are kept when the service is closed, so they can be shared by all tests of a run; delete them when the data they have been created from changes. If not set, a directory named aludratest-db-templates within the directory for temporary files is used. Only supported for Derby.", type = String.class, required = false),
+		@ConfigProperty(name = "compare.maxMismatches", description = "The number of mismatching rows after which DatabaseVerification.assertSortedQueryResultsEqual() stops comparing and fails. If 0, all rows are compared.", type = int.class, defaultValue = "100", required = false),
+		@ConfigProperty(name = "statement.cache.size", description = "The maximum number of prepared statements to keep open for reuse, per database connection. When the limit is reached, the least recently used statement is closed. If 0, every statement is prepared anew and closed right after its execution.", type = int.class, defaultValue = "20", required = false),
+		@ConfigProperty(name = "batch.size", description = "The number of parameter sets to send to the database at once when executing a batch statement.", type = int.class, defaultValue = "1000", required = false),
+		@ConfigProperty(name = "batch.commitPerChunk", description = "If true, a batch statement executed outside of a transaction is committed after each batch of batch.size parameter sets. Otherwise, it is committed after the last batch only.", type = boolean.class, defaultValue = "false", required = false),
+		@ConfigProperty(name = "async.threads", description = "The number of threads executing the operations submitted via DatabaseService.async(). The number of operations running at the same time is also limited by pool.maxSize.", type = int.class, defaultValue = "4", required = false),
+		@ConfigProperty(name = "async.closeTimeout", description = "Time to wait, in milliseconds, for pending asynchronous operations to finish when the service is closed. Operations which have not finished by then are cancelled.", type = int.class, defaultValue = "30000", required = false),
+		@ConfigProperty(name = "pool.minSize", description = "The minimum number of database connections to keep open. These connections are opened when the service is initialized.", type = int.class, defaultValue = "1", required = false),
+		@ConfigProperty(name = "pool.maxSize", description = "The maximum number of database connections to open. Each operation uses a connection of the pool, and each transaction keeps its connection until it is committed or rolled back. A streamed query result keeps its connection until it has been iterated completely.", type = int.class, defaultValue = "4", required = false),
+		@ConfigProperty(name = "pool.acquireTimeout", description = "Time to wait, in milliseconds, for a database connection to become available if all connections of the pool are in use.", type = int.class, defaultValue = "30000", required = false),
+		@ConfigProperty(name = "pool.validationQuery", description = "SQL query used to check if a pooled connection is still valid before it is used again after being idle. If not set, the validity check of the JDBC driver is used.", type = String.class, required = false),
+		@ConfigProperty(name = "pool.idleTimeout", description = "Time, in milliseconds, after which idle database connections are closed, as long as more than pool.minSize connections are open. If 0, idle connections are never closed.", type = int.class, defaultValue = "600000", required = false),
+		@ConfigProperty(name = "pool.maxLifetime", description = "Maximum lifetime, in milliseconds, of a database connection. Older connections are closed when they are returned to the pool. If 0, connections are never retired.", type = int.class, defaultValue = "1800000", required = false) })
 public interface DatabaseService extends AludraService {
 
 	/** @return the related {@link DatabaseInteraction} */
@@ -50,6 +78,14 @@ public interface DatabaseService extends AludraService {
 	@Override
 	DatabaseCondition check();
 
+	/**
+	 * Returns asynchronous variants of the most common database operations. Use these to execute independent statements at the
+	 * same time, e.g. a set of independent verification queries.
+	 * 
+	 * @return The asynchronous variants of the most common database operations.
+	 */
+	AsyncDatabaseInteraction async();
+
 	/**
 	 * Returns the factory to be used to retrieve instances of different table column types.
 	 * 
@@ -18,7 +18,13 @@ package org.aludratest.service.database;
 import org.aludratest.service.TechnicalArgument;
 import org.aludratest.service.TechnicalLocator;
 import org.aludratest.service.Verification;
+import org.aludratest.service.database.tablecolumn.DoubleColumn;
+import org.aludratest.service.database.tablecolumn.IntColumn;
+import org.aludratest.service.database.tablecolumn.LongColumn;
 import org.aludratest.service.database.tablecolumn.TableColumn;
+import org.aludratest.service.database.validator.DoubleValidator;
+import org.aludratest.service.database.validator.IntValidator;
+import org.aludratest.service.database.validator.LongValidator;
 import org.databene.commons.Validator;
 
 /** {@link Verification} interface of the {@link DatabaseService}.
@@ -73,6 +79,76 @@ public interface DatabaseVerification extends Verification {
 	 */
 	public void assertSingleRowQuery(@TechnicalLocator String query, @TechnicalArgument Object... parameters);
 
+	/**
+	 * Asserts that the given query returns exactly the given number of rows. The rows are counted by the database, so only the
+	 * count is fetched. If a waiting mechanism is configured via {@link DatabaseService} configuration, the rows are counted until
+	 * the count matches, or a timeout occurs.
+	 * 
+	 * @param query
+	 *            SQL query to count the rows of. Must be a plain <code>SELECT</code> statement which is valid as a derived table,
+	 *            e.g. without an <code>ORDER BY</code> clause on some databases.
+	 * @param expectedCount
+	 *            Expected number of rows.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 */
+	public void assertRowCount(@TechnicalLocator String query, @TechnicalArgument long expectedCount,
+			@TechnicalArgument Object... parameters);
+
+	/**
+	 * Asserts that the sum of the given column over all rows of the given query equals the given value. The sum is computed by
+	 * the database, so only the sum is fetched. Numbers are compared by their numeric value, regardless of their type. Waits like
+	 * {@link #assertRowCount(String, long, Object...)}.
+	 * 
+	 * @param query
+	 *            SQL query to sum up the rows of. See {@link #assertRowCount(String, long, Object...)} for restrictions.
+	 * @param column
+	 *            Name of the column of the query to sum up.
+	 * @param expectedSum
+	 *            Expected sum, or <code>null</code> if the query is expected to return no rows, or only <code>NULL</code>
+	 *            values.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 */
+	public void assertSum(@TechnicalLocator String query, @TechnicalArgument String column, @TechnicalArgument Number expectedSum,
+			@TechnicalArgument Object... parameters);
+
+	/**
+	 * Asserts that the minimum and maximum value of the given column over all rows of the given query equal the given values.
+	 * Both values are computed by the database, so only they are fetched. Waits like
+	 * {@link #assertRowCount(String, long, Object...)}.
+	 * 
+	 * @param query
+	 *            SQL query to aggregate the rows of. See {@link #assertRowCount(String, long, Object...)} for restrictions.
+	 * @param column
+	 *            Name of the column of the query to aggregate.
+	 * @param expectedMin
+	 *            Expected minimum value, or <code>null</code> if no rows or only <code>NULL</code> values are expected.
+	 * @param expectedMax
+	 *            Expected maximum value, or <code>null</code> if no rows or only <code>NULL</code> values are expected.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 */
+	public void assertMinMax(@TechnicalLocator String query, @TechnicalArgument String column,
+			@TechnicalArgument Object expectedMin, @TechnicalArgument Object expectedMax, @TechnicalArgument Object... parameters);
+
+	/**
+	 * Asserts that the given column has exactly the given number of distinct non-<code>NULL</code> values over all rows of the
+	 * given query. The values are counted by the database, so only the count is fetched. Waits like
+	 * {@link #assertRowCount(String, long, Object...)}.
+	 * 
+	 * @param query
+	 *            SQL query to aggregate the rows of. See {@link #assertRowCount(String, long, Object...)} for restrictions.
+	 * @param column
+	 *            Name of the column of the query to count the distinct values of.
+	 * @param expectedCount
+	 *            Expected number of distinct values.
+	 * @param parameters
+	 *            Parameters for the SQL statement, if the SQL statement is in PreparedStatement syntax.
+	 */
+	public void assertDistinctCount(@TechnicalLocator String query, @TechnicalArgument String column,
+			@TechnicalArgument long expectedCount, @TechnicalArgument Object... parameters);
+
 	/**
 	 * Asserts that the value of the given column in the given row of a result set of a query matches the given validator.
 	 * 
@@ -87,4 +163,132 @@ public interface DatabaseVerification extends Verification {
 	 */
 	public <T> void assertValueMatches(DataRows rows, int rowNum, TableColumn<T> column, Validator<T> validator);
 
+	/**
+	 * Asserts that the value of the given int column in the given row of a result set matches the given validator, without
+	 * boxing the value. <code>NULL</code> values never match.
+	 * 
+	 * @param rows
+	 *            Result set rows, as returned from {@link DatabaseInteraction#query(String, Object...)}.
+	 * @param rowNum
+	 *            1-based number of the row to check.
+	 * @param column
+	 *            Column to check.
+	 * @param validator
+	 *            Validator to check the column value against.
+	 */
+	public void assertValueMatches(DataRows rows, int rowNum, IntColumn column, IntValidator validator);
+
+	/**
+	 * Asserts that the value of the given long column in the given row of a result set matches the given validator, without
+	 * boxing the value. <code>NULL</code> values never match.
+	 * 
+	 * @param rows
+	 *            Result set rows, as returned from {@link DatabaseInteraction#query(String, Object...)}.
+	 * @param rowNum
+	 *            1-based number of the row to check.
+	 * @param column
+	 *            Column to check.
+	 * @param validator
+	 *            Validator to check the column value against.
+	 */
+	public void assertValueMatches(DataRows rows, int rowNum, LongColumn column, LongValidator validator);
+
+	/**
+	 * Asserts that the value of the given double column in the given row of a result set matches the given validator, without
+	 * boxing the value. <code>NULL</code> values never match.
+	 * 
+	 * @param rows
+	 *            Result set rows, as returned from {@link DatabaseInteraction#query(String, Object...)}.
+	 * @param rowNum
+	 *            1-based number of the row to check.
+	 * @param column
+	 *            Column to check.
+	 * @param validator
+	 *            Validator to check the column value against.
+	 */
+	public void assertValueMatches(DataRows rows, int rowNum, DoubleColumn column, DoubleValidator validator);
+
+	/**
+	 * Asserts that two sets of data rows contain the same data in the given columns. The rows are compared in a single pass over
+	 * each set by hashing them on their key columns, so large results can be compared in linear time. Rows with matching key
+	 * values are compared column by column. If the assertion fails, the missing, extra and changed rows are reported.
+	 * 
+	 * @param expected
+	 *            Expected rows, e.g. the result of a query on a reference table.
+	 * @param actual
+	 *            Rows to check.
+	 * @param ordered
+	 *            If <code>true</code>, the rows must also appear in the same order.
+	 * @param keyColumns
+	 *            Columns identifying a row, each of which must also be contained in <code>columns</code>. If empty, rows are
+	 *            identified by all of their columns, so differing rows are reported as missing and extra rows.
+	 * @param columns
+	 *            Columns to compare.
+	 */
+	public void assertDataRowsEqual(DataRows expected, DataRows actual, @TechnicalArgument boolean ordered,
+			TableColumn<?>[] keyColumns, TableColumn<?>... columns);
+
+	/**
+	 * Asserts that a set of data rows contains the given data in the given columns. See
+	 * {@link #assertDataRowsEqual(DataRows, DataRows, boolean, TableColumn[], TableColumn...)} for details.
+	 * 
+	 * @param expected
+	 *            Expected rows, each with one value per column, in the order of <code>columns</code>.
+	 * @param actual
+	 *            Rows to check.
+	 * @param ordered
+	 *            If <code>true</code>, the rows must also appear in the same order.
+	 * @param keyColumns
+	 *            Columns identifying a row, each of which must also be contained in <code>columns</code>. If empty, rows are
+	 *            identified by all of their columns.
+	 * @param columns
+	 *            Columns to compare.
+	 */
+	public void assertDataRowsEqual(@TechnicalArgument Object[][] expected, DataRows actual, @TechnicalArgument boolean ordered,
+			TableColumn<?>[] keyColumns, TableColumn<?>... columns);
+
+	/**
+	 * Asserts that two queries return the same data in the given columns. If a waiting mechanism is configured via
+	 * {@link DatabaseService} configuration, both queries are executed until their results are equal, or a timeout occurs. See
+	 * {@link #assertDataRowsEqual(DataRows, DataRows, boolean, TableColumn[], TableColumn...)} for details.
+	 * 
+	 * @param expectedQuery
+	 *            SQL query returning the expected rows.
+	 * @param actualQuery
+	 *            SQL query returning the rows to check.
+	 * @param ordered
+	 *            If <code>true</code>, the rows must also appear in the same order.
+	 * @param keyColumns
+	 *            Columns identifying a row, each of which must also be contained in <code>columns</code>. If empty, rows are
+	 *            identified by all of their columns.
+	 * @param columns
+	 *            Columns to compare.
+	 */
+	public void assertQueryResultsEqual(@TechnicalLocator String expectedQuery, @TechnicalLocator String actualQuery,
+			@TechnicalArgument boolean ordered, TableColumn<?>[] keyColumns, TableColumn<?>... columns);
+
+	/**
+	 * Asserts that two queries, possibly on different databases, return the same data in the given columns, e.g. to verify that
+	 * a data migration has copied all rows of a source table. Both queries must return their rows sorted by the key columns, in
+	 * ascending order with <code>NULL</code> values last, and consistently with Java's natural ordering of the key values (e.g. a
+	 * binary collation for string keys). Both results are streamed and merged like in a sort-merge join, so only the current
+	 * row of each query is held in memory, regardless of the number of rows. <br>
+	 * Differences are logged as they are found, and the comparison stops after the configured <code>compare.maxMismatches</code>.
+	 * The number of rows compared and the throughput are logged when the comparison has finished. No waiting is performed.
+	 * 
+	 * @param expectedService
+	 *            Service to execute the expected query on, or <code>null</code> to execute both queries on this service.
+	 * @param expectedQuery
+	 *            SQL query returning the expected rows, sorted by the key columns.
+	 * @param actualQuery
+	 *            SQL query returning the rows to check, sorted by the key columns.
+	 * @param keyColumns
+	 *            Columns identifying a row, in the order the rows are sorted by. Must not be empty, and each of the columns
+	 *            must also be contained in <code>columns</code>.
+	 * @param columns
+	 *            Columns to compare.
+	 */
+	public void assertSortedQueryResultsEqual(DatabaseService expectedService, @TechnicalLocator String expectedQuery,
+			@TechnicalLocator String actualQuery, TableColumn<?>[] keyColumns, TableColumn<?>... columns);
+
 }
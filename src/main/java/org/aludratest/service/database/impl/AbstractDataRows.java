@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+import org.aludratest.service.database.DataRow;
+import org.aludratest.service.database.DataRows;
+import org.aludratest.service.database.DatabaseService;
+import org.aludratest.service.database.tablecolumn.TableColumn;
+
+/** Common base class of all data rows created by the default database service. Subclasses position directly on the requested
+ * row, so retrieving a value never has to scroll through the preceding rows. */
+public abstract class AbstractDataRows implements DataRows {
+
+    /** Returns the value of the given column in the given row.
+     * 
+     * @param rowNum 1-based number of the row.
+     * @param column Column to retrieve the value of.
+     * 
+     * @return The value of the column in the given row, possibly <code>null</code>.
+     * 
+     * @throws SQLException If the value could not be retrieved.
+     * @throws NoSuchElementException If the rows do not contain the given column. */
+    public abstract <T> T getValue(int rowNum, TableColumnImpl<T> column) throws SQLException, NoSuchElementException;
+
+    /** Checks if the given row number can be passed to {@link #getValue(int, TableColumnImpl)}.
+     * 
+     * @param rowNum 1-based number of the row.
+     * 
+     * @return <code>true</code> if the given row can be accessed, <code>false</code> otherwise. */
+    protected abstract boolean isAccessible(int rowNum);
+
+    /** Returns the estimated number of bytes the rows occupy in memory or in temporary files.
+     * 
+     * @return The estimated number of bytes the rows occupy, or 0 if the rows are not materialized. */
+    public long getMaterializedSize() {
+        return 0;
+    }
+
+    @Override
+    public DataRow getRow(int rowNum) throws NoSuchElementException {
+        if (!isAccessible(rowNum)) {
+            throw new NoSuchElementException("Row " + rowNum + " is not available in " + this);
+        }
+        return new DataRowImpl(rowNum);
+    }
+
+    /** A single row of the enclosing data rows. It only holds its row number and retrieves its values on demand. */
+    protected class DataRowImpl implements DataRow {
+
+        private int rowNum;
+
+        public DataRowImpl(int rowNum) {
+            this.rowNum = rowNum;
+        }
+
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        @Override
+        public <T> T getValue(DatabaseService db, TableColumn<T> column) throws NoSuchElementException {
+            return db.perform().getColumnValue(AbstractDataRows.this, rowNum, column);
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aludratest.service.database.AsyncDatabaseInteraction;
+import org.aludratest.service.database.DataRows;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Default implementation of the AsyncDatabaseInteraction interface. Operations are submitted to a fixed size thread pool and
+ * executed by a {@link DatabaseActionImpl} of their own, which never has an active transaction and therefore takes a fresh
+ * connection from the connection pool for each operation. */
+public class AsyncDatabaseInteractionImpl implements AsyncDatabaseInteraction {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncDatabaseInteractionImpl.class);
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final DatabaseActionImpl worker;
+
+    private final ExecutorService executor;
+
+    private final int closeTimeout;
+
+    public AsyncDatabaseInteractionImpl(ConnectionPool pool, TempFiles tempFiles, QueryResultCache resultCache,
+            DatabaseServiceMetrics metrics, SlowStatementLog slowStatementLog, DatabaseConfiguration config) {
+        this.worker = new DatabaseActionImpl(pool, tempFiles, resultCache, metrics, slowStatementLog, config);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, config.getAsyncThreads()),
+                new DaemonThreadFactory("aludratest-db-async-" + POOL_COUNTER.incrementAndGet() + "-"));
+        this.closeTimeout = config.getAsyncCloseTimeout();
+    }
+
+    @Override
+    public Future<DataRows> query(final String query, final Object... parameters) {
+        return executor.submit(new Callable<DataRows>() {
+            @Override
+            public DataRows call() {
+                return worker.query(query, parameters);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> insert(final String sqlStatement, final Object... parameters) {
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return Integer.valueOf(worker.insert(sqlStatement, parameters));
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> update(final String sqlStatement, final Object... parameters) {
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return Integer.valueOf(worker.update(sqlStatement, parameters));
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> delete(final String sqlStatement, final Object... parameters) {
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return Integer.valueOf(worker.delete(sqlStatement, parameters));
+            }
+        });
+    }
+
+    @Override
+    public Future<Boolean> isEmptyQuery(final String query, final Object... parameters) {
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Boolean.valueOf(worker.isEmptyQuery(query, parameters));
+            }
+        });
+    }
+
+    @Override
+    public Future<Boolean> isNonEmptyQuery(final String query, final Object... parameters) {
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Boolean.valueOf(worker.isNonEmptyQuery(query, parameters));
+            }
+        });
+    }
+
+    /** Stops accepting new operations, and waits up to <code>async.closeTimeout</code> milliseconds for the operations already
+     * submitted to finish, so they still have their connections available. Operations which have not finished by then are
+     * cancelled and their threads interrupted. */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(closeTimeout, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Asynchronous database operations did not finish within " + closeTimeout + " ms, cancelling them");
+                executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Creates daemon threads, so pending operations do not keep the JVM alive. */
+    static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, namePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.util.Random;
+
+import org.aludratest.util.poll.PolledTask;
+
+/** Repeatedly executes a {@link PolledTask} until it returns a non-<code>null</code> value or a timeout expires. Unlike
+ * {@link org.aludratest.util.poll.PollService}, the interval between two executions grows by a configurable multiplier up to a
+ * maximum, and may be randomized by a jitter factor, so long timeouts do not keep the database under test busy. <br>
+ * Each instance is meant to be used for one poll operation, after which it reports the number of attempts and the time spent. */
+final class BackoffPoller {
+
+    private static final Random RANDOM = new Random();
+
+    private final long timeout;
+
+    private final long initialInterval;
+
+    private final double multiplier;
+
+    private final long maxInterval;
+
+    private final double jitter;
+
+    private int attempts;
+
+    private long elapsedTime;
+
+    BackoffPoller(long timeout, long initialInterval, double multiplier, long maxInterval, double jitter) {
+        if (initialInterval < 0 || maxInterval < 0) {
+            throw new IllegalArgumentException("Polling intervals must not be negative");
+        }
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("Polling interval multiplier must be at least 1.0, but is " + multiplier);
+        }
+        if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("Polling interval jitter must be between 0.0 and 1.0, but is " + jitter);
+        }
+        this.timeout = timeout;
+        this.initialInterval = initialInterval;
+        this.multiplier = multiplier;
+        this.maxInterval = Math.max(initialInterval, maxInterval);
+        this.jitter = jitter;
+    }
+
+    static BackoffPoller forConfiguration(DatabaseConfiguration config) {
+        return new BackoffPoller(config.getVerifyWaitTimeout(), config.getVerifyWaitInterval(),
+                config.getVerifyWaitMultiplier(), config.getVerifyWaitMaxInterval(), config.getVerifyWaitJitter());
+    }
+
+    /** Executes the given task until it returns a non-<code>null</code> value, or the timeout has expired. In the latter case,
+     * or if the current thread is interrupted while waiting, the result of {@link PolledTask#timedOut()} is returned.
+     * 
+     * @param task Task to execute.
+     * 
+     * @return The first non-<code>null</code> result of the task, or the result of its <code>timedOut()</code> method. */
+    <E> E poll(PolledTask<E> task) {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeout;
+        double interval = initialInterval;
+        attempts = 0;
+        elapsedTime = 0;
+
+        while (true) {
+            attempts++;
+            E result = task.run();
+            long now = System.currentTimeMillis();
+            elapsedTime = now - start;
+            if (result != null) {
+                return result;
+            }
+            long remaining = deadline - now;
+            if (remaining <= 0) {
+                return task.timedOut();
+            }
+            try {
+                Thread.sleep(Math.min(nextDelay(interval), remaining));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                elapsedTime = System.currentTimeMillis() - start;
+                return task.timedOut();
+            }
+            interval = Math.min(interval * multiplier, maxInterval);
+        }
+    }
+
+    private long nextDelay(double interval) {
+        if (jitter == 0.0) {
+            return (long) interval;
+        }
+        // spread evenly across [interval * (1 - jitter), interval * (1 + jitter)]
+        double factor = 1.0 - jitter + 2.0 * jitter * RANDOM.nextDouble();
+        return Math.max(0, (long) (interval * factor));
+    }
+
+    /** Returns the number of times the task has been executed during the last poll operation.
+     * 
+     * @return The number of times the task has been executed during the last poll operation. */
+    int getAttempts() {
+        return attempts;
+    }
+
+    /** Returns the time, in milliseconds, spent in the last poll operation.
+     * 
+     * @return The time, in milliseconds, spent in the last poll operation. */
+    long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+        return attempts + (attempts == 1 ? " attempt" : " attempts") + " in " + elapsedTime + " ms";
+    }
+
+}
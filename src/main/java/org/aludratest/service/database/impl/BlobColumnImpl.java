@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.aludratest.service.database.tablecolumn.BlobColumn;
+
+public class BlobColumnImpl extends TableColumnImpl<Blob> implements BlobColumn {
+
+    public BlobColumnImpl(String columnName) {
+        super(columnName);
+    }
+
+    @Override
+    public Blob getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        return rs.getBlob(columnIndex);
+    }
+
+    @Override
+    public Blob getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.getBlob(row);
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        Blob blob = rs.getBlob(columnIndex);
+        if (blob == null) {
+            writeNull(out);
+            return;
+        }
+        out.writeByte(VALUE_TAG);
+        out.writeLong(blob.length());
+        // streamed, so large values are never held in memory
+        InputStream in = blob.getBinaryStream();
+        try {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+}
@@ -15,11 +15,13 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.Clob;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.ClobColumn;
 
 public class ClobColumnImpl extends TableColumnImpl<Clob> implements ClobColumn {
@@ -29,8 +31,38 @@ public class ClobColumnImpl extends TableColumnImpl<Clob> implements ClobColumn
     }
 
     @Override
-    public Clob getValueFromRowSet(RowSet rs) throws SQLException {
-        return rs.getClob(getColumnName());
+    public Clob getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        return rs.getClob(columnIndex);
+    }
+
+    @Override
+    public Clob getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.getClob(row);
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        Clob clob = rs.getClob(columnIndex);
+        if (clob == null) {
+            writeNull(out);
+            return;
+        }
+        out.writeByte(VALUE_TAG);
+        out.writeLong(clob.length());
+        // streamed, so large values are never held in memory
+        Reader reader = clob.getCharacterStream();
+        try {
+            char[] buf = new char[4096];
+            int len;
+            while ((len = reader.read(buf)) != -1) {
+                for (int i = 0; i < len; i++) {
+                    out.writeChar(buf[i]);
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
     }
 
 }
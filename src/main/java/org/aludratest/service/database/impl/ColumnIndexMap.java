@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/** Case-insensitive mapping of the column labels and names of a query result to their 1-based column indexes. It is built once
+ * per result, so resolving a table column costs a single hash lookup instead of a search through all column names. Labels take
+ * precedence over names, just as for <code>ResultSet.findColumn()</code>. */
+public final class ColumnIndexMap {
+
+    private final Map<String, Integer> indexes;
+
+    /** Creates a new mapping for the given columns.
+     * 
+     * @param labels Column labels, in the order of the columns.
+     * @param names Column names, in the order of the columns. */
+    public ColumnIndexMap(String[] labels, String[] names) {
+        indexes = new HashMap<String, Integer>(labels.length * 4);
+        for (int i = 0; i < labels.length; i++) {
+            putIfAbsent(labels[i], i + 1);
+        }
+        for (int i = 0; i < names.length; i++) {
+            putIfAbsent(names[i], i + 1);
+        }
+    }
+
+    /** Creates a new mapping for the columns described by the given meta data.
+     * 
+     * @param meta Meta data of a result set.
+     * 
+     * @return A new mapping for the columns of the result set.
+     * 
+     * @throws SQLException If the meta data could not be read. */
+    public static ColumnIndexMap of(ResultSetMetaData meta) throws SQLException {
+        int columnCount = meta.getColumnCount();
+        String[] labels = new String[columnCount];
+        String[] names = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = meta.getColumnLabel(i + 1);
+            names[i] = meta.getColumnName(i + 1);
+        }
+        return new ColumnIndexMap(labels, names);
+    }
+
+    /** Returns the 1-based index of the given column in the query result.
+     * 
+     * @param column Column to look up.
+     * 
+     * @return The 1-based index of the column.
+     * 
+     * @throws NoSuchElementException If the query result does not contain this column. */
+    public int getColumnIndex(TableColumnImpl<?> column) throws NoSuchElementException {
+        Integer index = indexes.get(column.getLookupKey());
+        if (index == null) {
+            throw new NoSuchElementException("Query result does not contain column " + column.getColumnName());
+        }
+        return index.intValue();
+    }
+
+    static String toLookupKey(String columnName) {
+        return columnName.toUpperCase(Locale.ENGLISH);
+    }
+
+    private void putIfAbsent(String columnName, int index) {
+        if (columnName == null) {
+            return;
+        }
+        String key = toLookupKey(columnName);
+        if (!indexes.containsKey(key)) {
+            indexes.put(key, Integer.valueOf(index));
+        }
+    }
+
+}
@@ -0,0 +1,823 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/** Storage for all values of one column of a query result. Numeric and temporal values are kept in primitive arrays, with
+ * <code>NULL</code> values being tracked in a bitmap. Use {@link #forSqlType(int)} to create the storage best suited for a JDBC
+ * column type. <br>
+ * The getters follow the conversion rules of <code>ResultSet</code>: a <code>NULL</code> value is returned as <code>0</code> or
+ * <code>null</code>, and a value which cannot be converted to the requested type causes an <code>SQLException</code>. */
+public abstract class ColumnValues {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final BitSet nulls = new BitSet();
+
+    private int size;
+
+    /** Creates a new, empty storage for values of the given JDBC column type. LOB values are kept in memory.
+     * 
+     * @param sqlType JDBC column type, as defined in {@link Types}.
+     * 
+     * @return A new, empty storage for values of the given JDBC column type. */
+    public static ColumnValues forSqlType(int sqlType) {
+        return forSqlType(sqlType, LobStore.inMemory());
+    }
+
+    /** Creates a new, empty storage for values of the given JDBC column type.
+     * 
+     * @param sqlType JDBC column type, as defined in {@link Types}.
+     * @param lobStore Store to copy LOB values to.
+     * 
+     * @return A new, empty storage for values of the given JDBC column type. */
+    public static ColumnValues forSqlType(int sqlType, LobStore lobStore) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return new IntValues();
+            case Types.BIGINT:
+                return new LongValues();
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleValues();
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return new TemporalValues(sqlType);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return new DecimalValues();
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return new StringValues();
+            case Types.CLOB:
+            case Types.NCLOB:
+                return new ClobValues(lobStore);
+            case Types.BLOB:
+                return new BlobValues(lobStore);
+            default:
+                return new ObjectValues();
+        }
+    }
+
+    /** Appends the value of the given column of the current row of the given result set to this storage.
+     * 
+     * @param rs Result set, positioned on the row to read.
+     * @param columnIndex 1-based index of the column to read.
+     * 
+     * @throws SQLException If the value could not be read. */
+    public final void read(ResultSet rs, int columnIndex) throws SQLException {
+        ensureCapacity(size + 1);
+        if (!readValue(rs, columnIndex, size)) {
+            nulls.set(size);
+        }
+        size++;
+    }
+
+    /** Returns the number of values in this storage.
+     * 
+     * @return The number of values in this storage. */
+    public final int size() {
+        return size;
+    }
+
+    /** Checks if the value in the given row is <code>NULL</code>.
+     * 
+     * @param row 0-based row index.
+     * 
+     * @return <code>true</code> if the value in the given row is <code>NULL</code>, <code>false</code> otherwise. */
+    public final boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    /** Returns a copy of the <code>NULL</code> bitmap of this storage.
+     * 
+     * @return A bit set with the bits of all <code>NULL</code> values set, using 0-based row indexes. */
+    public final BitSet getNullMask() {
+        return (BitSet) nulls.clone();
+    }
+
+    /** Returns all values of this storage as <code>int</code>s, <code>NULL</code> values as <code>0</code>.
+     * 
+     * @return All values of this storage as <code>int</code>s.
+     * 
+     * @throws SQLException If a value cannot be converted to an <code>int</code>. */
+    public int[] getInts() throws SQLException {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = getInt(i);
+        }
+        return result;
+    }
+
+    /** Returns all values of this storage as <code>long</code>s, <code>NULL</code> values as <code>0</code>.
+     * 
+     * @return All values of this storage as <code>long</code>s.
+     * 
+     * @throws SQLException If a value cannot be converted to a <code>long</code>. */
+    public long[] getLongs() throws SQLException {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = getLong(i);
+        }
+        return result;
+    }
+
+    /** Returns all values of this storage as <code>double</code>s, <code>NULL</code> values as <code>0</code>.
+     * 
+     * @return All values of this storage as <code>double</code>s.
+     * 
+     * @throws SQLException If a value cannot be converted to a <code>double</code>. */
+    public double[] getDoubles() throws SQLException {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = getDouble(i);
+        }
+        return result;
+    }
+
+    /** Reduces the memory used by this storage to what is required for the values it contains. */
+    public final void trimToSize() {
+        resize(size);
+    }
+
+    /** Appends a <code>NULL</code> value to this storage. */
+    public final void appendNull() {
+        ensureCapacity(size + 1);
+        nulls.set(size);
+        size++;
+    }
+
+    /** Appends a value which has been encoded by {@link #encodeValue(int, DataOutput, List)} of a storage of the same type.
+     * 
+     * @param buf Buffer, positioned at the start of the encoded value. Is positioned after the value afterwards.
+     * @param references Objects referenced by the encoded value. */
+    public final void appendEncoded(ByteBuffer buf, List<Object> references) {
+        ensureCapacity(size + 1);
+        decodeValue(buf, references, size);
+        size++;
+    }
+
+    /** Encodes the non-<code>NULL</code> value in the given row into a compact binary form. Values which have no binary form,
+     * e.g. LOBs, are added to the given list of references, and only their index is encoded.
+     * 
+     * @param row 0-based row index.
+     * @param out Output to write the encoded value to.
+     * @param references List to add referenced objects to.
+     * 
+     * @throws IOException If the output could not be written. */
+    public abstract void encodeValue(int row, DataOutput out, List<Object> references) throws IOException;
+
+    /** Returns an estimate of the heap memory used by the value in the given row.
+     * 
+     * @param row 0-based row index.
+     * 
+     * @return The estimated number of bytes used by the value in the given row. */
+    public long estimateSize(int row) {
+        return 8;
+    }
+
+    /** Decodes a value encoded by {@link #encodeValue(int, DataOutput, List)} and stores it at the given position.
+     * 
+     * @param buf Buffer, positioned at the start of the encoded value.
+     * @param references Objects referenced by the encoded value.
+     * @param row 0-based position to store the value at. */
+    protected abstract void decodeValue(ByteBuffer buf, List<Object> references, int row);
+
+    /** Reads the value of the given column of the current result set row and stores it at the given position.
+     * 
+     * @param rs Result set, positioned on the row to read.
+     * @param columnIndex 1-based index of the column to read.
+     * @param row 0-based position to store the value at.
+     * 
+     * @return <code>false</code> if the value was <code>NULL</code>, <code>true</code> otherwise.
+     * 
+     * @throws SQLException If the value could not be read. */
+    protected abstract boolean readValue(ResultSet rs, int columnIndex, int row) throws SQLException;
+
+    /** Changes the capacity of the underlying arrays to the given value.
+     * 
+     * @param capacity New capacity, never smaller than the number of values in this storage. */
+    protected abstract void resize(int capacity);
+
+    /** Returns the current capacity of the underlying arrays.
+     * 
+     * @return The current capacity of the underlying arrays. */
+    protected abstract int capacity();
+
+    /** Returns the value in the given row as an object of the natural Java type of the column.
+     * 
+     * @param row 0-based row index.
+     * 
+     * @return The value in the given row, or <code>null</code> if the value is <code>NULL</code>. */
+    public abstract Object getObject(int row);
+
+    public int getInt(int row) throws SQLException {
+        return toInt(getLong(row));
+    }
+
+    public long getLong(int row) throws SQLException {
+        Object value = getObject(row);
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return toLong(((Number) value).doubleValue());
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return toBigDecimal(value).longValue();
+    }
+
+    public float getFloat(int row) throws SQLException {
+        return (float) getDouble(row);
+    }
+
+    public double getDouble(int row) throws SQLException {
+        Object value = getObject(row);
+        if (value == null) {
+            return 0d;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue() ? 1d : 0d;
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        }
+        catch (NumberFormatException e) {
+            throw new SQLException("Cannot convert value " + value + " to a number", e);
+        }
+    }
+
+    public String getString(int row) throws SQLException {
+        Object value = getObject(row);
+        return value == null ? null : value.toString();
+    }
+
+    public java.sql.Date getDate(int row) throws SQLException {
+        Object value = getObject(row);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof java.util.Date) {
+            return new java.sql.Date(((java.util.Date) value).getTime());
+        }
+        try {
+            return java.sql.Date.valueOf(value.toString().trim());
+        }
+        catch (IllegalArgumentException e) {
+            throw new SQLException("Cannot convert value " + value + " to a date", e);
+        }
+    }
+
+    public Time getTime(int row) throws SQLException {
+        Object value = getObject(row);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof java.util.Date) {
+            return new Time(((java.util.Date) value).getTime());
+        }
+        try {
+            return Time.valueOf(value.toString().trim());
+        }
+        catch (IllegalArgumentException e) {
+            throw new SQLException("Cannot convert value " + value + " to a time", e);
+        }
+    }
+
+    public Timestamp getTimestamp(int row) throws SQLException {
+        Object value = getObject(row);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Timestamp) {
+            return (Timestamp) value;
+        }
+        if (value instanceof java.util.Date) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        }
+        try {
+            return Timestamp.valueOf(value.toString().trim());
+        }
+        catch (IllegalArgumentException e) {
+            throw new SQLException("Cannot convert value " + value + " to a timestamp", e);
+        }
+    }
+
+    public Clob getClob(int row) throws SQLException {
+        Object value = getObject(row);
+        if (value == null || value instanceof Clob) {
+            return (Clob) value;
+        }
+        throw new SQLException("Value of type " + value.getClass().getName() + " is not a CLOB");
+    }
+
+    public Blob getBlob(int row) throws SQLException {
+        Object value = getObject(row);
+        if (value == null || value instanceof Blob) {
+            return (Blob) value;
+        }
+        throw new SQLException("Value of type " + value.getClass().getName() + " is not a BLOB");
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        int capacity = capacity();
+        if (minCapacity > capacity) {
+            resize(Math.max(minCapacity, capacity == 0 ? INITIAL_CAPACITY : capacity + (capacity >> 1)));
+        }
+    }
+
+    protected static int toInt(long value) throws SQLException {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new SQLException("Value " + value + " is out of range for an int");
+        }
+        return (int) value;
+    }
+
+    protected static long toLong(double value) throws SQLException {
+        if (Double.isNaN(value) || value < Long.MIN_VALUE || value > Long.MAX_VALUE) {
+            throw new SQLException("Value " + value + " is out of range for a long");
+        }
+        return (long) value;
+    }
+
+    private static BigDecimal toBigDecimal(Object value) throws SQLException {
+        if (value instanceof BigDecimal) {
+            BigDecimal bd = (BigDecimal) value;
+            if (bd.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0 || bd.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) {
+                throw new SQLException("Value " + value + " is out of range for a long");
+            }
+            return bd;
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue() ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        try {
+            return toBigDecimal(new BigDecimal(value.toString().trim()));
+        }
+        catch (NumberFormatException e) {
+            throw new SQLException("Cannot convert value " + value + " to a number", e);
+        }
+    }
+
+    private static final class IntValues extends ColumnValues {
+
+        private int[] values = new int[0];
+
+        @Override
+        protected boolean readValue(ResultSet rs, int columnIndex, int row) throws SQLException {
+            values[row] = rs.getInt(columnIndex);
+            return !rs.wasNull();
+        }
+
+        @Override
+        protected void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return values.length;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : Integer.valueOf(values[row]);
+        }
+
+        @Override
+        public int getInt(int row) {
+            return values[row];
+        }
+
+        @Override
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public int[] getInts() {
+            return Arrays.copyOf(values, size());
+        }
+
+        @Override
+        public void encodeValue(int row, DataOutput out, List<Object> references) throws IOException {
+            out.writeInt(values[row]);
+        }
+
+        @Override
+        protected void decodeValue(ByteBuffer buf, List<Object> references, int row) {
+            values[row] = buf.getInt();
+        }
+    }
+
+    private static final class LongValues extends ColumnValues {
+
+        private long[] values = new long[0];
+
+        @Override
+        protected boolean readValue(ResultSet rs, int columnIndex, int row) throws SQLException {
+            values[row] = rs.getLong(columnIndex);
+            return !rs.wasNull();
+        }
+
+        @Override
+        protected void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return values.length;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : Long.valueOf(values[row]);
+        }
+
+        @Override
+        public int getInt(int row) throws SQLException {
+            return toInt(values[row]);
+        }
+
+        @Override
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public long[] getLongs() {
+            return Arrays.copyOf(values, size());
+        }
+
+        @Override
+        public void encodeValue(int row, DataOutput out, List<Object> references) throws IOException {
+            out.writeLong(values[row]);
+        }
+
+        @Override
+        protected void decodeValue(ByteBuffer buf, List<Object> references, int row) {
+            values[row] = buf.getLong();
+        }
+    }
+
+    private static final class DoubleValues extends ColumnValues {
+
+        private double[] values = new double[0];
+
+        @Override
+        protected boolean readValue(ResultSet rs, int columnIndex, int row) throws SQLException {
+            values[row] = rs.getDouble(columnIndex);
+            return !rs.wasNull();
+        }
+
+        @Override
+        protected void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return values.length;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : Double.valueOf(values[row]);
+        }
+
+        @Override
+        public long getLong(int row) throws SQLException {
+            return toLong(values[row]);
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double[] getDoubles() {
+            return Arrays.copyOf(values, size());
+        }
+
+        @Override
+        public void encodeValue(int row, DataOutput out, List<Object> references) throws IOException {
+            out.writeDouble(values[row]);
+        }
+
+        @Override
+        protected void decodeValue(ByteBuffer buf, List<Object> references, int row) {
+            values[row] = buf.getDouble();
+        }
+    }
+
+    /** Stores DATE, TIME, and TIMESTAMP values as milliseconds since the epoch, plus the nanoseconds for TIMESTAMP values. */
+    private static final class TemporalValues extends ColumnValues {
+
+        private final int sqlType;
+
+        private long[] millis = new long[0];
+
+        private int[] nanos;
+
+        private TemporalValues(int sqlType) {
+            this.sqlType = sqlType;
+            if (sqlType == Types.TIMESTAMP) {
+                nanos = new int[0];
+            }
+        }
+
+        @Override
+        protected boolean readValue(ResultSet rs, int columnIndex, int row) throws SQLException {
+            java.util.Date value;
+            if (sqlType == Types.DATE) {
+                value = rs.getDate(columnIndex);
+            }
+            else if (sqlType == Types.TIME) {
+                value = rs.getTime(columnIndex);
+            }
+            else {
+                Timestamp ts = rs.getTimestamp(columnIndex);
+                if (ts != null) {
+                    nanos[row] = ts.getNanos();
+                }
+                value = ts;
+            }
+            if (value == null) {
+                return false;
+            }
+            millis[row] = value.getTime();
+            return true;
+        }
+
+        @Override
+        protected void resize(int capacity) {
+            millis = Arrays.copyOf(millis, capacity);
+            if (nanos != null) {
+                nanos = Arrays.copyOf(nanos, capacity);
+            }
+        }
+
+        @Override
+        protected int capacity() {
+            return millis.length;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            if (sqlType == Types.DATE) {
+                return new java.sql.Date(millis[row]);
+            }
+            if (sqlType == Types.TIME) {
+                return new Time(millis[row]);
+            }
+            Timestamp ts = new Timestamp(millis[row]);
+            ts.setNanos(nanos[row]);
+            return ts;
+        }
+
+        @Override
+        public void encodeValue(int row, DataOutput out, List<Object> references) throws IOException {
+            out.writeLong(millis[row]);
+            if (nanos != null) {
+                out.writeInt(nanos[row]);
+            }
+        }
+
+        @Override
+        protected void decodeValue(ByteBuffer buf, List<Object> references, int row) {
+            millis[row] = buf.getLong();
+            if (nanos != null) {
+                nanos[row] = buf.getInt();
+            }
+        }
+
+        @Override
+        public long estimateSize(int row) {
+            return 12;
+        }
+    }
+
+    private static class ObjectValues extends ColumnValues {
+
+        private Object[] values = new Object[0];
+
+        @Override
+        protected boolean readValue(ResultSet rs, int columnIndex, int row) throws SQLException {
+            values[row] = readObject(rs, columnIndex);
+            return values[row] != null;
+        }
+
+        protected Object readObject(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getObject(columnIndex);
+        }
+
+        @Override
+        protected void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected int capacity() {
+            return values.length;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return values[row];
+        }
+
+        @Override
+        public void encodeValue(int row, DataOutput out, List<Object> references) throws IOException {
+            references.add(values[row]);
+            out.writeInt(references.size() - 1);
+        }
+
+        @Override
+        protected void decodeValue(ByteBuffer buf, List<Object> references, int row) {
+            values[row] = references.get(buf.getInt());
+        }
+
+        @Override
+        public long estimateSize(int row) {
+            return 32;
+        }
+
+        protected final void setObject(int row, Object value) {
+            values[row] = value;
+        }
+    }
+
+    private static final class DecimalValues extends ObjectValues {
+        @Override
+        protected Object readObject(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getBigDecimal(columnIndex);
+        }
+
+        @Override
+        public void encodeValue(int row, DataOutput out, List<Object> references) throws IOException {
+            BigDecimal value = (BigDecimal) getObject(row);
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeInt(unscaled.length);
+            out.write(unscaled);
+        }
+
+        @Override
+        protected void decodeValue(ByteBuffer buf, List<Object> references, int row) {
+            int scale = buf.getInt();
+            byte[] unscaled = new byte[buf.getInt()];
+            buf.get(unscaled);
+            setObject(row, new BigDecimal(new BigInteger(unscaled), scale));
+        }
+
+        @Override
+        public long estimateSize(int row) {
+            return 64;
+        }
+    }
+
+    private static final class StringValues extends ObjectValues {
+        @Override
+        protected Object readObject(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getString(columnIndex);
+        }
+
+        @Override
+        public void encodeValue(int row, DataOutput out, List<Object> references) throws IOException {
+            String value = (String) getObject(row);
+            out.writeInt(value.length());
+            out.writeChars(value);
+        }
+
+        @Override
+        protected void decodeValue(ByteBuffer buf, List<Object> references, int row) {
+            char[] chars = new char[buf.getInt()];
+            buf.asCharBuffer().get(chars);
+            buf.position(buf.position() + chars.length * 2);
+            setObject(row, new String(chars));
+        }
+
+        @Override
+        public long estimateSize(int row) {
+            Object value = getObject(row);
+            return value == null ? 8 : 48 + 2L * ((String) value).length();
+        }
+    }
+
+    /** Copies CLOB values, as they may become invalid as soon as the result set is closed. */
+    private static final class ClobValues extends ObjectValues {
+
+        private final LobStore lobStore;
+
+        private ClobValues(LobStore lobStore) {
+            this.lobStore = lobStore;
+        }
+
+        @Override
+        protected Object readObject(ResultSet rs, int columnIndex) throws SQLException {
+            Clob clob = rs.getClob(columnIndex);
+            return clob == null ? null : lobStore.copy(clob);
+        }
+
+        @Override
+        public long estimateSize(int row) {
+            Object value = getObject(row);
+            if (value == null || value instanceof FileClob) {
+                return 32;
+            }
+            try {
+                return 64 + 2 * ((Clob) value).length();
+            }
+            catch (SQLException e) {
+                return 64;
+            }
+        }
+    }
+
+    /** Copies BLOB values, as they may become invalid as soon as the result set is closed. */
+    private static final class BlobValues extends ObjectValues {
+
+        private final LobStore lobStore;
+
+        private BlobValues(LobStore lobStore) {
+            this.lobStore = lobStore;
+        }
+
+        @Override
+        protected Object readObject(ResultSet rs, int columnIndex) throws SQLException {
+            Blob blob = rs.getBlob(columnIndex);
+            return blob == null ? null : lobStore.copy(blob);
+        }
+
+        @Override
+        public long estimateSize(int row) {
+            Object value = getObject(row);
+            if (value == null || value instanceof FileBlob) {
+                return 32;
+            }
+            try {
+                return 64 + ((Blob) value).length();
+            }
+            catch (SQLException e) {
+                return 64;
+            }
+        }
+    }
+
+}
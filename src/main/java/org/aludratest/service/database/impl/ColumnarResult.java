@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+/** Complete, column-oriented copy of a query result. Each column is held in a {@link ColumnValues} storage suited for its JDBC
+ * type, so numeric and temporal values do not need an object per cell. Instances are immutable after creation, and created
+ * by the {@link ResultReader}. */
+public final class ColumnarResult {
+
+    private final String[] columnLabels;
+
+    private final ColumnIndexMap columnIndexes;
+
+    private final ColumnValues[] columns;
+
+    private final int rowCount;
+
+    ColumnarResult(String[] columnLabels, String[] columnNames, ColumnValues[] columns, int rowCount) {
+        this.columnLabels = columnLabels;
+        this.columnIndexes = new ColumnIndexMap(columnLabels, columnNames);
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /** Returns the label of the column with the given index.
+     * 
+     * @param columnIndex 1-based index of the column.
+     * 
+     * @return The label of the column. */
+    public String getColumnLabel(int columnIndex) {
+        return columnLabels[columnIndex - 1];
+    }
+
+    /** Returns the mapping of the column labels and names of this result to their indexes.
+     * 
+     * @return The mapping of the column labels and names of this result to their indexes. */
+    public ColumnIndexMap getColumnIndexes() {
+        return columnIndexes;
+    }
+
+    /** Returns the values of the column with the given index.
+     * 
+     * @param columnIndex 1-based index of the column.
+     * 
+     * @return The values of the column. */
+    public ColumnValues getColumnValues(int columnIndex) {
+        return columns[columnIndex - 1];
+    }
+
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Simple pool of JDBC connections, configured via the <code>pool.*</code> properties of the database service. Connections are
+ * created on demand up to the maximum pool size; callers wait up to the acquire timeout for a connection to become available.
+ * Connections exceeding their maximum lifetime are closed when they are returned to or taken from the pool, and connections
+ * idle for longer than the idle timeout are closed as long as more than the minimum number of connections exists. */
+public class ConnectionPool {
+
+    /** Connections idle for longer than this are validated before being handed out. */
+    private static final long VALIDATION_IDLE_MILLIS = 1000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final DatabaseConfiguration config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    /** Idle connections, most recently used first. */
+    private final Deque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+
+    private final Set<PooledConnection> all = new HashSet<PooledConnection>();
+
+    private int pendingCount;
+
+    private long createdCount;
+
+    private long timeoutCount;
+
+    private long acquireCount;
+
+    /** Number of acquisitions which had to wait for a connection to be returned. */
+    private long waitCount;
+
+    private long waitNanos;
+
+    private long maxWaitNanos;
+
+    private boolean closed;
+
+    public ConnectionPool(DatabaseConfiguration config) {
+        this.config = config;
+        if (config.getPoolMaxSize() < 1 || config.getPoolMinSize() > config.getPoolMaxSize()) {
+            throw new IllegalArgumentException("Invalid pool size: pool.minSize=" + config.getPoolMinSize() + ", pool.maxSize="
+                    + config.getPoolMaxSize());
+        }
+    }
+
+    /** Opens the minimum number of connections.
+     * 
+     * @throws SQLException If a connection could not be opened. */
+    public void start() throws SQLException {
+        for (int i = 0; i < config.getPoolMinSize(); i++) {
+            PooledConnection pc = createConnection();
+            lock.lock();
+            try {
+                all.add(pc);
+                idle.addLast(pc);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Takes a connection from the pool, opening a new one if none is idle and the maximum pool size has not been reached yet.
+     * Otherwise, waits until a connection is released or the acquire timeout has elapsed.
+     * 
+     * @return A connection in auto-commit mode, to be handed back via {@link PooledConnection#release()}.
+     * 
+     * @throws SQLException If no connection could be obtained. */
+    public PooledConnection acquire() throws SQLException {
+        long timeout = config.getPoolAcquireTimeout();
+        long deadline = System.currentTimeMillis() + timeout;
+        boolean counted = false;
+        long waitStart = 0;
+        while (true) {
+            PooledConnection pc = null;
+            List<PooledConnection> evicted;
+            lock.lock();
+            try {
+                if (!counted) {
+                    acquireCount++;
+                    counted = true;
+                }
+                evicted = evictIdle();
+                while (pc == null) {
+                    if (closed) {
+                        throw new SQLException("Connection pool has been closed");
+                    }
+                    pc = idle.pollFirst();
+                    if (pc == null) {
+                        if (all.size() + pendingCount < config.getPoolMaxSize()) {
+                            pendingCount++;
+                            break;
+                        }
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            timeoutCount++;
+                            recordWait(waitStart);
+                            throw new SQLException("Timed out after " + timeout
+                                    + " ms waiting for a database connection. All " + all.size()
+                                    + " connection(s) are in use; consider increasing pool.maxSize.");
+                        }
+                        if (waitStart == 0) {
+                            waitStart = System.nanoTime();
+                        }
+                        available.await(remaining, TimeUnit.MILLISECONDS);
+                    }
+                }
+                recordWait(waitStart);
+                waitStart = 0;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            finally {
+                lock.unlock();
+            }
+            closeAll(evicted);
+
+            if (pc == null) {
+                return createPendingConnection();
+            }
+            if (isUsable(pc)) {
+                return pc;
+            }
+            discard(pc);
+        }
+    }
+
+    /** Records the time an acquisition has waited for a connection. Must be called while holding the lock.
+     * 
+     * @param waitStart Start of the wait, as returned by {@link System#nanoTime()}, or 0 if the acquisition has not waited. */
+    private void recordWait(long waitStart) {
+        if (waitStart == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - waitStart;
+        waitCount++;
+        waitNanos += nanos;
+        maxWaitNanos = Math.max(maxWaitNanos, nanos);
+    }
+
+    /** Returns a connection to the pool. Called via {@link PooledConnection#release()}.
+     * 
+     * @param pc Connection to return. */
+    void release(PooledConnection pc) {
+        boolean reusable = !isExpired(pc) && resetState(pc);
+        List<PooledConnection> evicted;
+        lock.lock();
+        try {
+            if (closed || !reusable) {
+                all.remove(pc);
+                evicted = new ArrayList<PooledConnection>();
+                evicted.add(pc);
+            }
+            else {
+                pc.touch();
+                idle.addFirst(pc);
+                evicted = evictIdle();
+            }
+            available.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+        closeAll(evicted);
+    }
+
+    /** Closes all connections of this pool if none of them is in use, e.g. before the database is replaced. Connections are
+     * opened again on demand afterwards.
+     * 
+     * @return <code>true</code> if all connections have been closed, <code>false</code> if a connection is in use, in which case
+     *         no connection is closed. */
+    public boolean closeConnections() {
+        List<PooledConnection> closing;
+        lock.lock();
+        try {
+            if (pendingCount > 0 || all.size() > idle.size()) {
+                return false;
+            }
+            closing = new ArrayList<PooledConnection>(idle);
+            idle.clear();
+            all.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+        closeAll(closing);
+        return true;
+    }
+
+    /** Closes all connections of this pool, including those currently in use. Following calls to {@link #acquire()} fail. */
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<PooledConnection>(all);
+            all.clear();
+            idle.clear();
+            available.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+        closeAll(toClose);
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return all.size() - idle.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCreatedCount() {
+        lock.lock();
+        try {
+            return createdCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTimeoutCount() {
+        lock.lock();
+        try {
+            return timeoutCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAcquireCount() {
+        lock.lock();
+        try {
+            return acquireCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of times a caller had to wait for a connection to be returned, because all connections were in use.
+     * 
+     * @return The number of times a caller had to wait for a connection. */
+    public long getWaitCount() {
+        lock.lock();
+        try {
+            return waitCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the total time callers have waited for a connection to be returned.
+     * 
+     * @return The total wait time, in nanoseconds. */
+    public long getWaitNanos() {
+        lock.lock();
+        try {
+            return waitNanos;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxWaitNanos() {
+        lock.lock();
+        try {
+            return maxWaitNanos;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes all cached statements of all connections of this pool, e.g. because a DDL statement has changed the objects they
+     * refer to. */
+    public void clearStatementCaches() {
+        lock.lock();
+        try {
+            for (PooledConnection pc : all) {
+                pc.getStatementCache().clear();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the sum of the given statistic of the statement caches of all open connections.
+     * 
+     * @param hits <code>true</code> for the cache hits, <code>false</code> for the cache misses.
+     * 
+     * @return The sum of the given statistic of the statement caches of all open connections. */
+    public long getStatementCacheCount(boolean hits) {
+        lock.lock();
+        try {
+            long sum = 0;
+            for (PooledConnection pc : all) {
+                sum += hits ? pc.getStatementCache().getHitCount() : pc.getStatementCache().getMissCount();
+            }
+            return sum;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "ConnectionPool [active=" + (all.size() - idle.size()) + ", idle=" + idle.size() + ", created=" + createdCount
+                    + ", timeouts=" + timeoutCount + ", acquisitions=" + acquireCount + ", waits=" + waitCount + ", waitTime="
+                    + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms, statementCacheHits=" + getStatementCacheCount(true)
+                    + ", statementCacheMisses=" + getStatementCacheCount(false) + "]";
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection createPendingConnection() throws SQLException {
+        PooledConnection pc;
+        try {
+            pc = createConnection();
+        }
+        catch (SQLException e) {
+            lock.lock();
+            try {
+                pendingCount--;
+                available.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+
+        lock.lock();
+        try {
+            pendingCount--;
+            if (!closed) {
+                all.add(pc);
+                return pc;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        pc.closeQuietly();
+        throw new SQLException("Connection pool has been closed");
+    }
+
+    /** Opens a connection with the configured credentials, bypassing the pool.
+     * 
+     * @param config Configuration of the database service.
+     * @param jdbcUrl JDBC URL to connect to, e.g. the configured URL with additional attributes.
+     * 
+     * @return The new connection.
+     * 
+     * @throws SQLException If the connection could not be opened. */
+    static Connection openConnection(DatabaseConfiguration config, String jdbcUrl) throws SQLException {
+        if (config.getUser() != null) {
+            return DriverManager.getConnection(jdbcUrl, config.getUser(), config.getPassword());
+        }
+        return DriverManager.getConnection(jdbcUrl);
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection connection = openConnection(config, config.getJdbcUrl());
+        lock.lock();
+        try {
+            createdCount++;
+        }
+        finally {
+            lock.unlock();
+        }
+        return new PooledConnection(this, connection, config.getStatementCacheSize());
+    }
+
+    private boolean isExpired(PooledConnection pc) {
+        long maxLifetime = config.getPoolMaxLifetime();
+        return maxLifetime > 0 && System.currentTimeMillis() - pc.getCreatedAt() > maxLifetime;
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (isExpired(pc)) {
+            return false;
+        }
+        if (System.currentTimeMillis() - pc.getLastUsedAt() <= VALIDATION_IDLE_MILLIS) {
+            return true;
+        }
+        try {
+            String validationQuery = config.getPoolValidationQuery();
+            if (validationQuery == null) {
+                return pc.getConnection().isValid(5);
+            }
+            Statement stmt = pc.getConnection().createStatement();
+            try {
+                stmt.execute(validationQuery);
+            }
+            finally {
+                stmt.close();
+            }
+            return true;
+        }
+        catch (SQLException e) {
+            LOG.debug("Discarding invalid pooled database connection", e);
+            return false;
+        }
+    }
+
+    /** Prepares a returned connection for its next use. Any pending transaction is rolled back.
+     * 
+     * @param pc Returned connection.
+     * 
+     * @return <code>true</code> if the connection can be reused, <code>false</code> otherwise. */
+    private boolean resetState(PooledConnection pc) {
+        try {
+            Connection connection = pc.getConnection();
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        }
+        catch (SQLException e) {
+            LOG.debug("Discarding pooled database connection which could not be reset", e);
+            return false;
+        }
+    }
+
+    /** Removes the connections which have been idle for too long from the idle list. Must be called while holding the lock.
+     * 
+     * @return The evicted connections, to be closed by the caller after releasing the lock. */
+    private List<PooledConnection> evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<PooledConnection>();
+        long idleTimeout = config.getPoolIdleTimeout();
+        if (idleTimeout <= 0) {
+            return evicted;
+        }
+        long now = System.currentTimeMillis();
+        // least recently used connections are at the end of the list
+        Iterator<PooledConnection> iter = idle.descendingIterator();
+        while (iter.hasNext() && all.size() > config.getPoolMinSize()) {
+            PooledConnection pc = iter.next();
+            if (now - pc.getLastUsedAt() <= idleTimeout) {
+                break;
+            }
+            iter.remove();
+            all.remove(pc);
+            evicted.add(pc);
+        }
+        return evicted;
+    }
+
+    private void discard(PooledConnection pc) {
+        lock.lock();
+        try {
+            all.remove(pc);
+            available.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+        pc.closeQuietly();
+    }
+
+    private static void closeAll(List<PooledConnection> connections) {
+        for (PooledConnection pc : connections) {
+            pc.closeQuietly();
+        }
+    }
+
+}
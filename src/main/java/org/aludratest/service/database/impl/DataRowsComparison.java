@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Compares expected with actual data rows in a single pass over each. The expected rows are put into a hash table on the values
+ * of their key columns, and each actual row is looked up in this table, so the comparison takes linear time. Rows are reported as
+ * missing, as extra, or as changed if their key columns match but other columns do not. In ordered mode, the matching rows must
+ * also appear in the same order. <br>
+ * Values are normalized before being compared: numbers of all types are compared by their numeric value, with floating point
+ * numbers taken by their decimal representation, CLOBs as strings and BLOBs and byte arrays by their content. */
+final class DataRowsComparison {
+
+    /** Maximum number of rows listed per kind of difference in the report. */
+    static final int MAX_REPORTED_ROWS = 10;
+
+    private final String[] columnNames;
+
+    /** Indexes of the key columns, or <code>null</code> if rows are identified by all of their columns. */
+    private final int[] keyIndexes;
+
+    private final boolean ordered;
+
+    /** Expected rows which have not been matched yet. Rows with equal keys are chained in their original order. */
+    private final Map<RowKey, ExpectedRow> unmatchedRows = new LinkedHashMap<RowKey, ExpectedRow>();
+
+    private int unmatchedCount;
+
+    private int extraCount;
+
+    private int changedCount;
+
+    private int misorderedCount;
+
+    private int lastMatchedRowNum;
+
+    private final List<String> extraRows = new ArrayList<String>();
+
+    private final List<String> changedRows = new ArrayList<String>();
+
+    private final List<String> misorderedRows = new ArrayList<String>();
+
+    /** Creates a new comparison.
+     * 
+     * @param columnNames Names of the compared columns, in the order of the values passed for each row.
+     * @param keyIndexes Indexes of the columns identifying a row. If empty, rows are identified by all of their columns, so
+     *            differing rows are reported as missing and extra rows instead of changed rows.
+     * @param ordered If <code>true</code>, matching rows must appear in the same order in the expected and actual rows. */
+    DataRowsComparison(String[] columnNames, int[] keyIndexes, boolean ordered) {
+        this.columnNames = columnNames;
+        this.keyIndexes = keyIndexes.length == 0 ? null : keyIndexes;
+        this.ordered = ordered;
+    }
+
+    /** Adds an expected row. All expected rows must be added before the first actual row.
+     * 
+     * @param rowNum 1-based number of the row within the expected rows.
+     * @param values Values of the row, in the order of the column names. The array is normalized in place and kept.
+     * 
+     * @throws SQLException If a LOB value could not be read. */
+    void addExpected(int rowNum, Object[] values) throws SQLException {
+        normalize(values);
+        RowKey key = keyOf(values);
+        ExpectedRow row = new ExpectedRow(rowNum, values);
+        ExpectedRow first = unmatchedRows.get(key);
+        if (first == null) {
+            unmatchedRows.put(key, row);
+        }
+        else {
+            first.last.next = row;
+            first.last = row;
+        }
+        unmatchedCount++;
+    }
+
+    /** Matches an actual row against the expected rows.
+     * 
+     * @param rowNum 1-based number of the row within the actual rows.
+     * @param values Values of the row, in the order of the column names. The array is normalized in place.
+     * 
+     * @throws SQLException If a LOB value could not be read. */
+    void addActual(int rowNum, Object[] values) throws SQLException {
+        normalize(values);
+        RowKey key = keyOf(values);
+        ExpectedRow expected = unmatchedRows.get(key);
+        if (expected == null) {
+            extraCount++;
+            report(extraRows, "Extra row " + rowNum + ": " + formatRow(columnNames, values));
+            return;
+        }
+        if (expected.next == null) {
+            unmatchedRows.remove(key);
+        }
+        else {
+            expected.next.last = expected.last;
+            unmatchedRows.put(key, expected.next);
+        }
+        unmatchedCount--;
+
+        if (keyIndexes != null && !Arrays.equals(expected.values, values)) {
+            changedCount++;
+            report(changedRows, describeChange(columnNames, rowNum, expected.rowNum, expected.values, values));
+        }
+        if (ordered) {
+            if (expected.rowNum < lastMatchedRowNum) {
+                misorderedCount++;
+                report(misorderedRows, "Row " + rowNum + " is out of order: it matches expected row " + expected.rowNum
+                        + ", but expected row " + lastMatchedRowNum + " has been matched before");
+            }
+            else {
+                lastMatchedRowNum = expected.rowNum;
+            }
+        }
+    }
+
+    /** Returns whether all rows added so far match.
+     * 
+     * @return <code>true</code> if no differences have been found, <code>false</code> otherwise. */
+    boolean isEqual() {
+        return unmatchedCount == 0 && extraCount == 0 && changedCount == 0 && misorderedCount == 0;
+    }
+
+    /** Describes the differences between the expected and actual rows added.
+     * 
+     * @return A description of the differences, or <code>null</code> if the rows are equal. */
+    String getReport() {
+        if (isEqual()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Data rows differ: ").append(unmatchedCount).append(" missing, ").append(extraCount).append(" extra, ")
+                .append(changedCount).append(" changed");
+        if (ordered) {
+            sb.append(", ").append(misorderedCount).append(" out of order");
+        }
+        sb.append(" row(s)");
+
+        List<String> missingRows = new ArrayList<String>();
+        for (ExpectedRow row : unmatchedRows.values()) {
+            for (; row != null && missingRows.size() < MAX_REPORTED_ROWS; row = row.next) {
+                missingRows.add("Missing row " + row.rowNum + ": " + formatRow(columnNames, row.values));
+            }
+        }
+        appendRows(sb, missingRows, unmatchedCount);
+        appendRows(sb, extraRows, extraCount);
+        appendRows(sb, changedRows, changedCount);
+        appendRows(sb, misorderedRows, misorderedCount);
+        return sb.toString();
+    }
+
+    private RowKey keyOf(Object[] values) {
+        if (keyIndexes == null) {
+            return new RowKey(values);
+        }
+        Object[] keyValues = new Object[keyIndexes.length];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            keyValues[i] = values[keyIndexes[i]];
+        }
+        return new RowKey(keyValues);
+    }
+
+    /** Describes the differing columns of two rows with the same key.
+     * 
+     * @param columnNames Names of the compared columns.
+     * @param rowNum 1-based number of the actual row.
+     * @param expectedRowNum 1-based number of the expected row.
+     * @param expected Normalized values of the expected row.
+     * @param actual Normalized values of the actual row.
+     * 
+     * @return A description of the differences. */
+    static String describeChange(String[] columnNames, int rowNum, int expectedRowNum, Object[] expected, Object[] actual) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Changed row ").append(rowNum).append(" (expected row ").append(expectedRowNum).append(")");
+        String separator = ": ";
+        for (int i = 0; i < actual.length; i++) {
+            if (!equal(expected[i], actual[i])) {
+                sb.append(separator).append(columnNames[i]).append(" is ").append(formatValue(actual[i])).append(" instead of ")
+                        .append(formatValue(expected[i]));
+                separator = ", ";
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatRow(String[] columnNames, Object[] values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columnNames[i]).append('=').append(formatValue(values[i]));
+        }
+        return sb.append(']').toString();
+    }
+
+    static void report(List<String> rows, String description) {
+        if (rows.size() < MAX_REPORTED_ROWS) {
+            rows.add(description);
+        }
+    }
+
+    static void appendRows(StringBuilder sb, List<String> rows, int count) {
+        for (String row : rows) {
+            sb.append('\n').append(row);
+        }
+        if (count > rows.size()) {
+            sb.append("\n... and ").append(count - rows.size()).append(" more");
+        }
+    }
+
+    private static boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    static String formatValue(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof String) {
+            return "'" + value + "'";
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof ByteBuffer) {
+            return "<" + ((ByteBuffer) value).remaining() + " bytes>";
+        }
+        return value.toString();
+    }
+
+    static void normalize(Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = normalize(values[i]);
+        }
+    }
+
+    /** Converts the given value into a representation which is equal to the representations of all values which are considered
+     * equal in a comparison, and has a matching hash code.
+     * 
+     * @param value Value to normalize, possibly <code>null</code>.
+     * 
+     * @return The normalized value.
+     * 
+     * @throws SQLException If a LOB value could not be read. */
+    static Object normalize(Object value) throws SQLException {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Long.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof BigInteger) {
+            BigInteger i = (BigInteger) value;
+            return i.bitLength() < 64 ? (Object) Long.valueOf(i.longValue()) : new BigDecimal(i);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return Double.valueOf(d);
+            }
+            // the decimal representation avoids binary conversion artifacts, e.g. 0.1f becoming 0.10000000149011612
+            value = new BigDecimal(value.toString());
+        }
+        if (value instanceof BigDecimal) {
+            BigDecimal d = (BigDecimal) value;
+            if (d.signum() == 0) {
+                return Long.valueOf(0);
+            }
+            d = d.stripTrailingZeros();
+            if (d.scale() <= 0 && d.precision() - d.scale() <= 18) {
+                return Long.valueOf(d.longValue());
+            }
+            return d;
+        }
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            return clob.getSubString(1, (int) clob.length());
+        }
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            return ByteBuffer.wrap(blob.getBytes(1, (int) blob.length()));
+        }
+        if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value);
+        }
+        return value;
+    }
+
+    /** Values of the key columns of a row, or of all of its columns. */
+    private static final class RowKey {
+
+        private final Object[] values;
+
+        private final int hashCode;
+
+        RowKey(Object[] values) {
+            this.values = values;
+            this.hashCode = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof RowKey)) {
+                return false;
+            }
+            RowKey other = (RowKey) obj;
+            return hashCode == other.hashCode && Arrays.equals(values, other.values);
+        }
+    }
+
+    private static final class ExpectedRow {
+
+        private final int rowNum;
+
+        private final Object[] values;
+
+        /** Next expected row with the same key, if any. */
+        private ExpectedRow next;
+
+        /** Last row of the chain of rows with the same key. Only maintained for the first row of the chain. */
+        private ExpectedRow last = this;
+
+        ExpectedRow(int rowNum, Object[] values) {
+            this.rowNum = rowNum;
+            this.values = values;
+        }
+    }
+
+}
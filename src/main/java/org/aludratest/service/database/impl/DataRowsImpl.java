@@ -15,31 +15,29 @@
  */
 package org.aludratest.service.database.impl;
 
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import javax.sql.rowset.CachedRowSet;
-
+import org.aludratest.exception.AutomationException;
 import org.aludratest.service.database.DataRow;
-import org.aludratest.service.database.DataRows;
-import org.aludratest.service.database.DatabaseService;
-import org.aludratest.service.database.tablecolumn.TableColumn;
 
-public class DataRowsImpl implements DataRows {
+public class DataRowsImpl extends AbstractDataRows {
 
-    private CachedRowSet cachedRowSet;
+    private ColumnarResult result;
 
     private int rowCount;
 
-    public DataRowsImpl(CachedRowSet cachedRowSet) throws SQLException {
-        this.cachedRowSet = cachedRowSet;
-        rowCount = cachedRowSet.size();
-    }
+    private long estimatedSize;
 
-    public CachedRowSet getCachedRowSet() {
-        return cachedRowSet;
+    /** Creates new data rows.
+     * 
+     * @param result Values of the rows.
+     * @param estimatedSize Estimated number of bytes the values occupy in memory. */
+    public DataRowsImpl(ColumnarResult result, long estimatedSize) {
+        this.result = result;
+        this.estimatedSize = estimatedSize;
+        rowCount = result.getRowCount();
     }
 
     @Override
@@ -52,6 +50,45 @@ public class DataRowsImpl implements DataRows {
         return rowCount;
     }
 
+    @Override
+    public long getMaterializedSize() {
+        return estimatedSize;
+    }
+
+    @Override
+    public <T> T getValue(int rowNum, TableColumnImpl<T> column) throws SQLException {
+        checkRowNumber(rowNum);
+        return column.getValueFromColumn(getColumnValues(column), rowNum - 1);
+    }
+
+    /** Returns the storage of all values of the given column.
+     * 
+     * @param column Column to return the values of.
+     * 
+     * @return The storage of all values of the given column.
+     * 
+     * @throws NoSuchElementException If this result does not contain the given column. */
+    public ColumnValues getColumnValues(TableColumnImpl<?> column) throws NoSuchElementException {
+        return result.getColumnValues(result.getColumnIndexes().getColumnIndex(column));
+    }
+
+    /** Ensures that the given row number exists in this result.
+     * 
+     * @param rowNum 1-based row number to check.
+     * 
+     * @throws AutomationException If the row does not exist. */
+    public void checkRowNumber(int rowNum) {
+        if (!isAccessible(rowNum)) {
+            throw new AutomationException("Row number out of bounds: " + rowNum + " (only " + rowCount
+                    + " row(s) in query result)");
+        }
+    }
+
+    @Override
+    protected boolean isAccessible(int rowNum) {
+        return rowNum >= 1 && rowNum <= rowCount;
+    }
+
 	@Override
 	public String toString() {
 		return rowCount + " data row(s) with columns " + buildColumnNamesString();
@@ -59,19 +96,13 @@ public class DataRowsImpl implements DataRows {
 
 	private String buildColumnNamesString() {
 		StringBuilder sb = new StringBuilder();
-		try {
-			ResultSetMetaData meta = cachedRowSet.getMetaData();
-			for (int i = 1; i <= meta.getColumnCount(); i++) {
-				if (i > 1) {
-					sb.append(", ");
-				}
-				sb.append(meta.getColumnName(i));
+		for (int i = 1; i <= result.getColumnCount(); i++) {
+			if (i > 1) {
+				sb.append(", ");
 			}
-			return sb.toString();
-		}
-		catch (SQLException e) {
-			return "(unknown)";
+			sb.append(result.getColumnLabel(i));
 		}
+		return sb.toString();
 	}
 
     private class DataRowIterator implements Iterator<DataRow> {
@@ -99,18 +130,4 @@ public class DataRowsImpl implements DataRows {
 
     }
 
-    private class DataRowImpl implements DataRow {
-
-        private int rowNum;
-
-        public DataRowImpl(int rowNum) {
-            this.rowNum = rowNum;
-        }
-
-        @Override
-        public <T> T getValue(DatabaseService db, TableColumn<T> column) throws NoSuchElementException {
-            return db.perform().getColumnValue(DataRowsImpl.this, rowNum, column);
-        }
-    }
-
 }
@@ -15,45 +15,127 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-
-import javax.sql.rowset.CachedRowSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.aludratest.exception.AutomationException;
 import org.aludratest.exception.FunctionalFailure;
 import org.aludratest.service.SystemConnector;
+import org.aludratest.service.database.DataRow;
 import org.aludratest.service.database.DataRows;
 import org.aludratest.service.database.DatabaseCondition;
 import org.aludratest.service.database.DatabaseInteraction;
+import org.aludratest.service.database.DatabaseService;
 import org.aludratest.service.database.DatabaseVerification;
+import org.aludratest.service.database.impl.DatabaseServiceMetrics.Operation;
+import org.aludratest.service.database.tablecolumn.BlobColumn;
+import org.aludratest.service.database.tablecolumn.ClobColumn;
+import org.aludratest.service.database.tablecolumn.DoubleColumn;
+import org.aludratest.service.database.tablecolumn.IntColumn;
+import org.aludratest.service.database.tablecolumn.LongColumn;
 import org.aludratest.service.database.tablecolumn.TableColumn;
+import org.aludratest.service.database.validator.DoubleValidator;
+import org.aludratest.service.database.validator.IntValidator;
+import org.aludratest.service.database.validator.LongValidator;
 import org.aludratest.testcase.event.attachment.Attachment;
-import org.aludratest.util.poll.PollService;
 import org.aludratest.util.poll.PolledTask;
+import org.databene.commons.FileUtil;
 import org.databene.commons.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class DatabaseActionImpl implements DatabaseInteraction, DatabaseCondition, DatabaseVerification {
 
-    private Connection connection;
+	private static final Logger LOG = LoggerFactory.getLogger(DatabaseActionImpl.class);
+
+	/** Classifications are independent of the connection, so they are shared by all service instances. */
+	private static final StatementClassifier CLASSIFIER = new StatementClassifier(1000);
+
+	/** Template names are used as directory names, so they are restricted to characters valid on all file systems. */
+	private static final Pattern TEMPLATE_NAME = Pattern.compile("[A-Za-z0-9_\\-]+");
+
+	/** Column names are inserted into generated aggregate queries, so only plain or quoted identifiers are accepted. */
+	private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_$#]*|\"[^\"]+\"");
+
+	/** Table names are inserted into generated queries, so only plain or quoted identifiers with an optional schema are accepted. */
+	private static final Pattern TABLE_NAME = Pattern.compile("(" + COLUMN_NAME.pattern() + ")(\\.(" + COLUMN_NAME.pattern()
+			+ "))?");
+
+	private static final String AGGREGATE_ALIAS = "aggregated_rows";
+
+    private ConnectionPool pool;
+
+    private TempFiles tempFiles;
+
+    private LobStore lobStore;
+
+	/** Cache of query results, or <code>null</code> if results are not cached. */
+	private QueryResultCache resultCache;
+
+	private DatabaseServiceMetrics metrics;
+
+	private SlowStatementLog slowStatementLog;
 
 	private DatabaseConfiguration config;
 
-	private boolean inTransaction;
+	private SqlDialect dialect;
 
-	public DatabaseActionImpl(Connection connection, DatabaseConfiguration config) {
-        this.connection = connection;
+	/** Transaction of the current thread, if any. Transactions are bound to the thread which has begun them, so threads sharing
+	 * this object neither see nor end each other's transactions. */
+	private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<Transaction>();
+
+	/** Transactions of all threads, to roll them back when this object is closed. */
+	private final Set<Transaction> activeTransactions = Collections
+			.newSetFromMap(new ConcurrentHashMap<Transaction, Boolean>());
+
+	public DatabaseActionImpl(ConnectionPool pool, TempFiles tempFiles, QueryResultCache resultCache,
+			DatabaseServiceMetrics metrics, SlowStatementLog slowStatementLog, DatabaseConfiguration config) {
+        this.pool = pool;
+        this.tempFiles = tempFiles;
+        this.lobStore = new LobStore(config.getLobSpillThreshold(), tempFiles);
+		this.resultCache = resultCache;
+		this.metrics = metrics;
+		this.slowStatementLog = slowStatementLog;
 		this.config = config;
+		this.dialect = SqlDialect.forConfiguration(config);
     }
 
+	/** Rolls back the active transactions of all threads, if any, and returns their connections to the pool. The pool itself
+	 * is not closed. */
+	public void close() {
+		for (Transaction transaction : activeTransactions) {
+			activeTransactions.remove(transaction);
+			try {
+				transaction.connection.getConnection().rollback();
+			}
+			catch (Throwable t) { // NOPMD
+			}
+			transaction.connection.release();
+		}
+	}
+
     @Override
     public void setSystemConnector(SystemConnector systemConnector) {
         // stub in action classes
@@ -61,74 +143,130 @@ public class DatabaseActionImpl implements DatabaseInteraction, DatabaseConditio
 
     @Override
     public int insert(String sqlStatement, Object... parameters) {
-        return insertUpdateDelete(sqlStatement, "insert", parameters);
+        return insertUpdateDelete(sqlStatement, Operation.INSERT, parameters);
     }
 
     @Override
     public int update(String sqlStatement, Object... parameters) {
-        return insertUpdateDelete(sqlStatement, "update", parameters);
+        return insertUpdateDelete(sqlStatement, Operation.UPDATE, parameters);
     }
 
     @Override
     public int delete(String sqlStatement, Object... parameters) {
-        return insertUpdateDelete(sqlStatement, "delete", parameters);
+        return insertUpdateDelete(sqlStatement, Operation.DELETE, parameters);
+    }
+
+    @Override
+    public int[] insertBatch(String sqlStatement, Iterator<Object[]> parameterSets) {
+        return executeBatch(sqlStatement, Operation.INSERT, parameterSets);
+    }
+
+    @Override
+    public int[] updateBatch(String sqlStatement, Iterator<Object[]> parameterSets) {
+        return executeBatch(sqlStatement, Operation.UPDATE, parameterSets);
+    }
+
+    @Override
+    public int[] deleteBatch(String sqlStatement, Iterator<Object[]> parameterSets) {
+        return executeBatch(sqlStatement, Operation.DELETE, parameterSets);
     }
 
     @Override
     public DataRows query(String query, Object... parameters) {
-		validateStatementPermission(query);
-        Statement stmt = null;
+		StatementType type = validateStatementPermission(query);
+		long start = System.nanoTime();
+		// within a transaction, results may include uncommitted changes, so the cache is bypassed
+		boolean cacheable = resultCache != null && currentTransaction.get() == null && type == StatementType.QUERY;
+		long cacheGeneration = 0;
+		if (cacheable) {
+			cacheGeneration = resultCache.getGeneration();
+			DataRows rows = resultCache.get(query, parameters);
+			if (rows != null) {
+				metrics.record(Operation.QUERY, start, true);
+				return rows;
+			}
+		}
+        PooledConnection pc = null;
+        PreparedStatement ps = null;
+        boolean success = false;
+		boolean capturePlan = false;
+		long rowCount = -1;
         try {
-            ResultSet rs;
-            if (parameters.length > 0) {
-                PreparedStatement ps = connection.prepareStatement(query);
-                stmt = ps; // for auto-close in finally
-                for (int i = 0; i < parameters.length; i++) {
-                    setPreparedStatementParameter(ps, i + 1, parameters[i]);
-                }
-                rs = ps.executeQuery();
+            pc = acquireConnection();
+            ps = pc.getStatementCache().prepare(query, type != StatementType.DDL);
+            bindParameters(ps, parameters);
+			capturePlan = startPlanCapture(query, pc);
+            ResultSet rs = ps.executeQuery();
+            try {
+                AbstractDataRows rows = ResultReader.read(rs, lobStore, tempFiles, config.getQueryMemoryBudget());
+                success = true;
+				rowCount = rows.getRowCount();
+				metrics.recordResult(rowCount, rows.getMaterializedSize());
+				// spilled results are not cached, as their temporary files may be large
+				if (cacheable && rows instanceof DataRowsImpl) {
+					resultCache.put(query, parameters, CLASSIFIER.getReferencedTables(query), rows, cacheGeneration);
+				}
+                return rows;
             }
-            else {
-                stmt = connection.createStatement();
-                rs = stmt.executeQuery(query);
+            finally {
+                closeQuietly(rs);
             }
-            return new DataRowsImpl(createCachedRowSet(rs));
         }
         catch (SQLException e) {
             throw new AutomationException("Could not execute query in database", e);
         }
         finally {
+			if (capturePlan) {
+				finishPlanCapture(query, pc);
+			}
+            releaseConnection(pc, ps, success);
+			metrics.record(Operation.QUERY, start, success);
+			slowStatementLog.record(query, parameters, start, rowCount);
+        }
+    }
+
+    @Override
+    public DataRows streamQuery(String query, Object... parameters) {
+        validateStatementPermission(query);
+		// only the execution of the query is recorded, as the rows are fetched while they are iterated
+		long start = System.nanoTime();
+        PooledConnection pc = null;
+        PreparedStatement ps = null;
+        try {
+            pc = acquireConnection();
+            ps = pc.getConnection().prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (config.getQueryFetchSize() > 0) {
+                ps.setFetchSize(config.getQueryFetchSize());
+            }
+            bindParameters(ps, parameters);
+            // statement and connection are released by the rows when iteration has finished
+            DataRows rows = new StreamingDataRowsImpl(ps, ps.executeQuery(), pc == getTransactionConnection() ? null : pc);
+			metrics.record(Operation.QUERY, start, true);
+            return rows;
+        }
+        catch (SQLException e) {
+			metrics.record(Operation.QUERY, start, false);
             try {
-                stmt.close();
+                ps.close();
             }
             catch (Throwable t) { // NOPMD
             }
+            releaseConnection(pc, null, false);
+            throw new AutomationException("Could not execute query in database", e);
         }
     }
 
     @Override
     public <T> T getColumnValue(DataRows rows, int rowNum, TableColumn<T> column) {
-        if (!(rows instanceof DataRowsImpl)) {
+        if (!(rows instanceof AbstractDataRows)) {
             throw new AutomationException("rows parameter has not been created by this database service");
         }
         if (!(column instanceof TableColumnImpl)) {
             throw new AutomationException("column parameter has not been created by this database service");
         }
 
-        if (rowNum > rows.getRowCount()) {
-            throw new AutomationException("Row number out of bounds: " + rowNum + " (only " + rows.getRowCount()
-                    + " row(s) in query result)");
-        }
-
-        CachedRowSet rowSet = ((DataRowsImpl) rows).getCachedRowSet();
         try {
-            // scroll to row num
-            rowSet.beforeFirst();
-            for (int i = 0; i < rowNum; i++) {
-                rowSet.next();
-            }
-
-            return ((TableColumnImpl<T>) column).getValueFromRowSet(rowSet);
+            return ((AbstractDataRows) rows).getValue(rowNum, (TableColumnImpl<T>) column);
         }
         catch (SQLException e) {
             throw new AutomationException("Could not retrieve value", e);
@@ -202,6 +340,108 @@ public class DatabaseActionImpl implements DatabaseInteraction, DatabaseConditio
 		}, "Query returned zero rows, or more than one row of data", parameters);
     }
 
+	@Override
+	public boolean hasRowCount(String query, long expectedCount, Object... parameters) {
+		try {
+			return checkRowCount(query, expectedCount, parameters) == null;
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean hasSum(String query, String column, Number expectedSum, Object... parameters) {
+		try {
+			return checkSum(query, column, expectedSum, parameters) == null;
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean hasMinMax(String query, String column, Object expectedMin, Object expectedMax, Object... parameters) {
+		try {
+			return checkMinMax(query, column, expectedMin, expectedMax, parameters) == null;
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean hasDistinctCount(String query, String column, long expectedCount, Object... parameters) {
+		try {
+			return checkDistinctCount(query, column, expectedCount, parameters) == null;
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void assertRowCount(final String query, final long expectedCount, final Object... parameters) {
+		waitForCondition(new ConditionCheck() {
+			@Override
+			public String check() {
+				try {
+					return checkRowCount(query, expectedCount, parameters);
+				}
+				catch (SQLException e) {
+					throw new AutomationException("Could not execute query", e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void assertSum(final String query, final String column, final Number expectedSum, final Object... parameters) {
+		waitForCondition(new ConditionCheck() {
+			@Override
+			public String check() {
+				try {
+					return checkSum(query, column, expectedSum, parameters);
+				}
+				catch (SQLException e) {
+					throw new AutomationException("Could not execute query", e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void assertMinMax(final String query, final String column, final Object expectedMin, final Object expectedMax,
+			final Object... parameters) {
+		waitForCondition(new ConditionCheck() {
+			@Override
+			public String check() {
+				try {
+					return checkMinMax(query, column, expectedMin, expectedMax, parameters);
+				}
+				catch (SQLException e) {
+					throw new AutomationException("Could not execute query", e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void assertDistinctCount(final String query, final String column, final long expectedCount,
+			final Object... parameters) {
+		waitForCondition(new ConditionCheck() {
+			@Override
+			public String check() {
+				try {
+					return checkDistinctCount(query, column, expectedCount, parameters);
+				}
+				catch (SQLException e) {
+					throw new AutomationException("Could not execute query", e);
+				}
+			}
+		});
+	}
+
     @Override
 	public void assertValidQuery(String query, Object... parameters) {
         try {
@@ -221,256 +461,1317 @@ public class DatabaseActionImpl implements DatabaseInteraction, DatabaseConditio
 	}
 
     @Override
-    public void reportInvalidState(String message) {
-        throw new FunctionalFailure(message);
+    public Reader getCharacterStream(DataRows rows, int rowNum, ClobColumn column) {
+        Clob clob = getColumnValue(rows, rowNum, column);
+        try {
+            return clob == null ? null : clob.getCharacterStream();
+        }
+        catch (SQLException e) {
+            throw new AutomationException("Could not read CLOB value", e);
+        }
     }
 
     @Override
-    public List<Attachment> createDebugAttachments() {
-		return Collections.emptyList();
+    public InputStream getBinaryStream(DataRows rows, int rowNum, BlobColumn column) {
+        Blob blob = getColumnValue(rows, rowNum, column);
+        try {
+            return blob == null ? null : blob.getBinaryStream();
+        }
+        catch (SQLException e) {
+            throw new AutomationException("Could not read BLOB value", e);
+        }
     }
 
     @Override
-    public List<Attachment> createAttachments(Object object, String title) {
-        return null;
-    }
-
-    private int insertUpdateDelete(String sqlStatement, String messageType, Object... parameters) {
-		validateStatementPermission(sqlStatement);
-        Statement stmt = null;
+    public int[] getInts(DataRows rows, IntColumn column) {
         try {
-            if (parameters.length > 0) {
-                PreparedStatement ps = connection.prepareStatement(sqlStatement);
-                stmt = ps; // for auto-close in finally
-                for (int i = 0; i < parameters.length; i++) {
-                    setPreparedStatementParameter(ps, i + 1, parameters[i]);
-                }
-                return ps.executeUpdate();
+            if (rows instanceof SpilledDataRowsImpl) {
+                return ((SpilledDataRowsImpl) rows).getInts(getColumnImpl(column));
             }
-            stmt = connection.createStatement();
-            return stmt.executeUpdate(sqlStatement);
+            return getMaterializedColumn(rows, column).getInts();
         }
         catch (SQLException e) {
-            throw new AutomationException("Could not execute " + messageType + " in database", e);
-        }
-        finally {
-            try {
-                stmt.close();
-            }
-            catch (Throwable t) { // NOPMD
-            }
+            throw new AutomationException("Could not retrieve values", e);
         }
     }
 
-	private int getQueryResultCount(String sql, int stopCount, Object... parameters) throws SQLException {
-		validateStatementPermission(sql);
-		Statement stmt = null;
-		ResultSet rs = null;
+    @Override
+    public long[] getLongs(DataRows rows, LongColumn column) {
         try {
-			if (parameters.length > 0) {
-				PreparedStatement ps = connection.prepareStatement(sql);
-				stmt = ps; // for auto-close in finally
-				for (int i = 0; i < parameters.length; i++) {
-					setPreparedStatementParameter(ps, i + 1, parameters[i]);
-				}
-				rs = ps.executeQuery();
-			}
-			else {
-				stmt = connection.createStatement();
-				rs = stmt.executeQuery(sql);
-			}
-            int cnt = 0;
-            while (rs.next() && cnt < stopCount) {
-                cnt++;
+            if (rows instanceof SpilledDataRowsImpl) {
+                return ((SpilledDataRowsImpl) rows).getLongs(getColumnImpl(column));
             }
-            return cnt;
+            return getMaterializedColumn(rows, column).getLongs();
         }
-        finally {
-			try {
-				rs.close();
-			}
-			catch (Throwable t) { // NOPMD
-			}
-            try {
-                stmt.close();
-            }
-            catch (Throwable t) { // NOPMD
-            }
+        catch (SQLException e) {
+            throw new AutomationException("Could not retrieve values", e);
         }
     }
 
-	private void validateStatementPermission(String sql) {
-		sql = sql.trim().toUpperCase();
-
-		// this is a rather simple check. E.g. Teradata would have a "LOCK ROW FOR ACCESS" even in front of
-		// simple SELECT statements. Also, a semicolon separating multiple SQL commands (if supported by JDBC
-		// driver) would not be detected.
-		if (sql.startsWith("SELECT ")) {
-			return;
-		}
-
-		if (sql.matches("(INSERT INTO|UPDATE|DELETE) .*")) {
-			if (!config.isDmlEnabled()) {
-				throw new AutomationException(
-					"DML statement submitted, but not allowed for this database connection. Set enable.dml to true if required.");
-			}
-			// otherwise, OK
-			return;
-		}
-
-		// everything else is treated as DDL
-		if (!config.isDdlEnabled()) {
-			throw new AutomationException(
-					"DDL statement submitted, but not allowed for this database connection. Set enable.ddl to true if required.");
-		}
-	}
-
-    private static CachedRowSet createCachedRowSet(ResultSet rs) throws SQLException {
+    @Override
+    public double[] getDoubles(DataRows rows, DoubleColumn column) {
         try {
-            Class<?> clz = Class.forName("com.sun.rowset.CachedRowSetImpl");
-            CachedRowSet rowSet = (CachedRowSet) clz.newInstance();
-            rowSet.populate(rs);
-            return rowSet;
-        }
-        catch (ClassNotFoundException e) {
-            throw new SQLException("Could not find Sun's CachedRowSetImpl on classpath", e);
-        }
-        catch (InstantiationException e) {
-            throw new SQLException("Could not instantiate Sun's CachedRowSetImpl", e);
+            if (rows instanceof SpilledDataRowsImpl) {
+                return ((SpilledDataRowsImpl) rows).getDoubles(getColumnImpl(column));
+            }
+            return getMaterializedColumn(rows, column).getDoubles();
         }
-        catch (IllegalAccessException e) {
-            throw new SQLException("Could not access Sun's CachedRowSetImpl", e);
+        catch (SQLException e) {
+            throw new AutomationException("Could not retrieve values", e);
         }
     }
 
-    private static void setPreparedStatementParameter(PreparedStatement ps, int index, Object value) throws SQLException {
-        if (value == null) {
-            // this could be a problem with some JDBC drivers.
-            ps.setNull(index, Types.NULL);
-            return;
-        }
-
-        if (value instanceof String) {
-            ps.setString(index, value.toString());
-        }
-        else if (value instanceof Long) {
-            ps.setLong(index, ((Long) value).longValue());
-        }
-        else if (value instanceof Integer) {
-            ps.setInt(index, ((Integer) value).intValue());
-        }
-        else if (value instanceof Float) {
-            ps.setFloat(index, ((Float) value).intValue());
-        }
-        else if (value instanceof Number) {
-            // handle all other types via setDouble
-            ps.setDouble(index, ((Number) value).doubleValue());
-        }
-        else if (value instanceof java.sql.Date) {
-            ps.setDate(index, (java.sql.Date) value);
-        }
-        else if (value instanceof Time) {
-            ps.setTime(index, (Time) value);
-        }
-        else if (value instanceof java.util.Date) {
-            ps.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
-        }
-        else {
-            // no guarantee this works with used JDBC driver
-            ps.setObject(index, value);
+    @Override
+    public BitSet getNullMask(DataRows rows, TableColumn<?> column) {
+        if (rows instanceof SpilledDataRowsImpl) {
+            return ((SpilledDataRowsImpl) rows).getNullMask(getColumnImpl(column));
         }
+        return getMaterializedColumn(rows, column).getNullMask();
     }
 
-	private void waitForStatementRowCountCondition(final String query, final Validator<Integer> validator,
-			final String failureMessage, final Object... parameters) {
-		PolledTask<Boolean> task = new PolledTask<Boolean>() {
-			@Override
-			public Boolean timedOut() {
-				throw new FunctionalFailure(failureMessage);
+	@Override
+	public boolean valueMatches(DataRows rows, int rowNum, IntColumn column, IntValidator validator) {
+		if (rows instanceof DataRowsImpl) {
+			ColumnValues values = getMaterializedValue(rows, rowNum, column);
+			try {
+				return !values.isNull(rowNum - 1) && validator.valid(values.getInt(rowNum - 1));
 			}
-
-			@Override
-			public Boolean run() {
-				try {
-					int cnt = getQueryResultCount(query, 2, parameters);
-					return validator.valid(Integer.valueOf(cnt)) ? Boolean.TRUE : null;
-				}
-				catch (SQLException e) {
-					throw new AutomationException("Could not execute query", e);
-				}
+			catch (SQLException e) {
+				throw new AutomationException("Could not retrieve value", e);
 			}
-		};
+		}
+		Integer value = getColumnValue(rows, rowNum, column);
+		return value != null && validator.valid(value.intValue());
+	}
 
-		if (config.getVerifyWaitTimeout() == 0) {
-			// no polling
-			if (task.run() == null) {
-				task.timedOut();
+	@Override
+	public boolean valueMatches(DataRows rows, int rowNum, LongColumn column, LongValidator validator) {
+		if (rows instanceof DataRowsImpl) {
+			ColumnValues values = getMaterializedValue(rows, rowNum, column);
+			try {
+				return !values.isNull(rowNum - 1) && validator.valid(values.getLong(rowNum - 1));
+			}
+			catch (SQLException e) {
+				throw new AutomationException("Could not retrieve value", e);
 			}
 		}
-		else {
-			PollService poll = new PollService(config.getVerifyWaitTimeout(), config.getVerifyWaitInterval());
-			poll.poll(task);
-		}
+		Long value = getColumnValue(rows, rowNum, column);
+		return value != null && validator.valid(value.longValue());
 	}
 
 	@Override
-	public void beginTransaction() {
-		if (inTransaction) {
-			return;
+	public boolean valueMatches(DataRows rows, int rowNum, DoubleColumn column, DoubleValidator validator) {
+		if (rows instanceof DataRowsImpl) {
+			ColumnValues values = getMaterializedValue(rows, rowNum, column);
+			try {
+				return !values.isNull(rowNum - 1) && validator.valid(values.getDouble(rowNum - 1));
+			}
+			catch (SQLException e) {
+				throw new AutomationException("Could not retrieve value", e);
+			}
 		}
+		Double value = getColumnValue(rows, rowNum, column);
+		return value != null && validator.valid(value.doubleValue());
+	}
 
-		try {
-			connection.setAutoCommit(false);
-		}
-		catch (SQLException e) {
-			throw new AutomationException("Could not switch database to manual commit mode", e);
+	@Override
+	public void assertValueMatches(DataRows rows, int rowNum, IntColumn column, IntValidator validator) {
+		if (!valueMatches(rows, rowNum, column, validator)) {
+			throw new FunctionalFailure("Value " + getColumnValue(rows, rowNum, column)
+					+ " does not match validation criteria " + validator);
 		}
-		inTransaction = true;
 	}
 
 	@Override
-	public void commitTransaction() {
-		if (!inTransaction) {
-			return;
+	public void assertValueMatches(DataRows rows, int rowNum, LongColumn column, LongValidator validator) {
+		if (!valueMatches(rows, rowNum, column, validator)) {
+			throw new FunctionalFailure("Value " + getColumnValue(rows, rowNum, column)
+					+ " does not match validation criteria " + validator);
+		}
+	}
+
+	@Override
+	public void assertValueMatches(DataRows rows, int rowNum, DoubleColumn column, DoubleValidator validator) {
+		if (!valueMatches(rows, rowNum, column, validator)) {
+			throw new FunctionalFailure("Value " + getColumnValue(rows, rowNum, column)
+					+ " does not match validation criteria " + validator);
+		}
+	}
+
+	@Override
+	public void assertDataRowsEqual(DataRows expected, DataRows actual, boolean ordered, TableColumn<?>[] keyColumns,
+			TableColumn<?>... columns) {
+		DataRowsComparison comparison = createComparison(ordered, keyColumns, columns);
+		addRows(expected, columns, comparison, true);
+		addRows(actual, columns, comparison, false);
+		String report = comparison.getReport();
+		if (report != null) {
+			throw new FunctionalFailure(report);
+		}
+	}
+
+	@Override
+	public void assertDataRowsEqual(Object[][] expected, DataRows actual, boolean ordered, TableColumn<?>[] keyColumns,
+			TableColumn<?>... columns) {
+		DataRowsComparison comparison = createComparison(ordered, keyColumns, columns);
+		try {
+			for (int i = 0; i < expected.length; i++) {
+				if (expected[i].length != columns.length) {
+					throw new AutomationException("Expected row " + (i + 1) + " has " + expected[i].length + " values, but "
+							+ columns.length + " columns are compared");
+				}
+				// values are normalized in place, so the caller's rows must not be passed on
+				comparison.addExpected(i + 1, expected[i].clone());
+			}
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not read expected value", e);
+		}
+		addRows(actual, columns, comparison, false);
+		String report = comparison.getReport();
+		if (report != null) {
+			throw new FunctionalFailure(report);
+		}
+	}
+
+	@Override
+	public void assertQueryResultsEqual(final String expectedQuery, final String actualQuery, final boolean ordered,
+			final TableColumn<?>[] keyColumns, final TableColumn<?>... columns) {
+		// fail early on invalid arguments instead of when polling
+		createComparison(ordered, keyColumns, columns);
+		waitForCondition(new ConditionCheck() {
+			@Override
+			public String check() {
+				DataRowsComparison comparison = createComparison(ordered, keyColumns, columns);
+				addRows(query(expectedQuery), columns, comparison, true);
+				addRows(query(actualQuery), columns, comparison, false);
+				return comparison.getReport();
+			}
+		});
+	}
+
+	@Override
+	public void assertSortedQueryResultsEqual(DatabaseService expectedService, String expectedQuery, String actualQuery,
+			TableColumn<?>[] keyColumns, TableColumn<?>... columns) {
+		String[] columnNames = getColumnNames(columns);
+		int[] keyIndexes = getKeyIndexes(columnNames, keyColumns);
+		if (keyIndexes.length == 0) {
+			throw new AutomationException("Sorted query results can only be compared by key columns");
+		}
+		SortedRowsComparison comparison = new SortedRowsComparison(columnNames, keyIndexes, config.getCompareMaxMismatches());
+
+		DataRows expectedRows = expectedService == null ? streamQuery(expectedQuery) : expectedService.perform().streamQuery(
+				expectedQuery);
+		if (expectedRows == null) {
+			// the other service has already reported the failure
+			throw new AutomationException("Could not execute expected query");
+		}
+		DataRows actualRows = null;
+		try {
+			actualRows = streamQuery(actualQuery);
+			comparison.run(new DataRowsSource(expectedRows, columns), new DataRowsSource(actualRows, columns));
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not retrieve value", e);
+		}
+		finally {
+			// the comparison may stop before the end of the rows
+			closeStreamed(expectedRows);
+			closeStreamed(actualRows);
+		}
+		LOG.info(comparison.getThroughput());
+		String report = comparison.getReport();
+		if (report != null) {
+			throw new FunctionalFailure(report);
+		}
+	}
+
+	@Override
+	public String getTableChecksum(String table, int partitions, TableColumn<?> keyColumn, TableColumn<?>... columns) {
+		if (table == null || !TABLE_NAME.matcher(table.trim()).matches()) {
+			throw new AutomationException("Invalid table name: " + table);
+		}
+		if (partitions < 1) {
+			throw new AutomationException("At least one partition is required, but " + partitions + " have been requested");
+		}
+		getColumnNames(columns);
+		if (!(keyColumn instanceof TableColumnImpl)) {
+			throw new AutomationException("column parameter has not been created by this database service");
+		}
+		TableColumnImpl<?>[] columnImpls = new TableColumnImpl<?>[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			validateColumnName(columns[i].getColumnName());
+			columnImpls[i] = (TableColumnImpl<?>) columns[i];
+		}
+		validateColumnName(keyColumn.getColumnName());
+
+		// the connection of an active transaction stays in use, so the partitions must not wait for it
+		int threads = config.getPoolMaxSize() - (currentTransaction.get() == null ? 0 : 1);
+		if (threads < 1) {
+			throw new AutomationException("No connection is available to compute a checksum within the transaction. Increase "
+					+ "pool.maxSize or compute the checksum outside of the transaction.");
+		}
+
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			TableChecksum checksum = new TableChecksum(pool, table.trim(), (TableColumnImpl<?>) keyColumn, columnImpls,
+					config.getQueryFetchSize());
+			String result = checksum.compute(partitions, Math.min(partitions, threads));
+			success = true;
+			return result;
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not compute checksum of table " + table, e);
+		}
+		finally {
+			metrics.record(Operation.CHECKSUM, start, success);
+		}
+	}
+
+    @Override
+    public void reportInvalidState(String message) {
+        throw new FunctionalFailure(message);
+    }
+
+    @Override
+    public List<Attachment> createDebugAttachments() {
+		return Collections.emptyList();
+    }
+
+    @Override
+    public List<Attachment> createAttachments(Object object, String title) {
+        return null;
+    }
+
+	private static DataRowsComparison createComparison(boolean ordered, TableColumn<?>[] keyColumns, TableColumn<?>[] columns) {
+		String[] columnNames = getColumnNames(columns);
+		return new DataRowsComparison(columnNames, getKeyIndexes(columnNames, keyColumns), ordered);
+	}
+
+	private static String[] getColumnNames(TableColumn<?>[] columns) {
+		if (columns.length == 0) {
+			throw new AutomationException("No columns to compare");
+		}
+		String[] columnNames = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			if (!(columns[i] instanceof TableColumnImpl)) {
+				throw new AutomationException("column parameter has not been created by this database service");
+			}
+			columnNames[i] = columns[i].getColumnName();
+		}
+		return columnNames;
+	}
+
+	private static int[] getKeyIndexes(String[] columnNames, TableColumn<?>[] keyColumns) {
+		int[] keyIndexes = new int[keyColumns == null ? 0 : keyColumns.length];
+		for (int k = 0; k < keyIndexes.length; k++) {
+			keyIndexes[k] = -1;
+			for (int i = 0; i < columnNames.length && keyIndexes[k] < 0; i++) {
+				if (columnNames[i].equalsIgnoreCase(keyColumns[k].getColumnName())) {
+					keyIndexes[k] = i;
+				}
+			}
+			if (keyIndexes[k] < 0) {
+				throw new AutomationException("Key column " + keyColumns[k].getColumnName() + " is not a compared column");
+			}
 		}
+		return keyIndexes;
+	}
 
+	/** Adds all rows of the given data rows to a comparison, iterating over them once, so streamed query results can be compared
+	 * as well. */
+	private static void addRows(DataRows rows, TableColumn<?>[] columns, DataRowsComparison comparison, boolean expected) {
+		DataRowsSource source = new DataRowsSource(rows, columns);
 		try {
+			for (Object[] values = source.nextRow(); values != null; values = source.nextRow()) {
+				if (expected) {
+					comparison.addExpected(source.rowNum, values);
+				}
+				else {
+					comparison.addActual(source.rowNum, values);
+				}
+			}
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not retrieve value", e);
+		}
+	}
+
+	private static void closeStreamed(DataRows rows) {
+		if (rows instanceof StreamingDataRowsImpl) {
+			((StreamingDataRowsImpl) rows).close();
+		}
+	}
+
+    private static ColumnValues getMaterializedColumn(DataRows rows, TableColumn<?> column) {
+        if (!(rows instanceof AbstractDataRows)) {
+            throw new AutomationException("rows parameter has not been created by this database service");
+        }
+        if (!(rows instanceof DataRowsImpl)) {
+            throw new AutomationException("Bulk access is not supported for streamed query results");
+        }
+        return ((DataRowsImpl) rows).getColumnValues(getColumnImpl(column));
+    }
+
+    private static TableColumnImpl<?> getColumnImpl(TableColumn<?> column) {
+        if (!(column instanceof TableColumnImpl)) {
+            throw new AutomationException("column parameter has not been created by this database service");
+        }
+        return (TableColumnImpl<?>) column;
+    }
+
+    private static ColumnValues getMaterializedValue(DataRows rows, int rowNum, TableColumn<?> column) {
+        ColumnValues values = getMaterializedColumn(rows, column);
+        ((DataRowsImpl) rows).checkRowNumber(rowNum);
+        return values;
+    }
+
+    private int insertUpdateDelete(String sqlStatement, Operation operation, Object... parameters) {
+		StatementType type = validateStatementPermission(sqlStatement);
+		long start = System.nanoTime();
+        PooledConnection pc = null;
+        PreparedStatement ps = null;
+        boolean success = false;
+		boolean capturePlan = false;
+		long rowCount = -1;
+        try {
+            pc = acquireConnection();
+            ps = pc.getStatementCache().prepare(sqlStatement, type != StatementType.DDL);
+            bindParameters(ps, parameters);
+			capturePlan = startPlanCapture(sqlStatement, pc);
+            int result = ps.executeUpdate();
+            success = true;
+			rowCount = result;
+            return result;
+        }
+        catch (SQLException e) {
+            throw new AutomationException("Could not execute " + operation.name().toLowerCase(Locale.ENGLISH) + " in database", e);
+        }
+        finally {
+			if (capturePlan) {
+				finishPlanCapture(sqlStatement, pc);
+			}
+            releaseConnection(pc, ps, success);
+			metrics.record(operation, start, success);
+			slowStatementLog.record(sqlStatement, parameters, start, rowCount);
+            if (type == StatementType.DDL) {
+                // cached statements may refer to changed or dropped objects
+                pool.clearStatementCaches();
+                ddlExecuted();
+            }
+			invalidateResults(sqlStatement, type);
+        }
+    }
+
+	/** Records that DDL has been executed within the transaction of the current thread, if any, so rolling it back clears the
+	 * statement cache of the transaction. */
+	private void ddlExecuted() {
+		Transaction transaction = currentTransaction.get();
+		if (transaction != null) {
+			transaction.ddlCount++;
+		}
+	}
+
+	private int[] executeBatch(String sqlStatement, Operation operation, Iterator<Object[]> parameterSets) {
+		StatementType type = validateStatementPermission(sqlStatement);
+		long start = System.nanoTime();
+		int batchSize = Math.max(1, config.getBatchSize());
+		// outside of a transaction, the batch runs in its own one
+		boolean ownTransaction = currentTransaction.get() == null;
+		boolean commitPerChunk = ownTransaction && config.isBatchCommitPerChunk();
+		List<Integer> batchCounts = new ArrayList<Integer>();
+		PooledConnection pc = null;
+		PreparedStatement ps = null;
+		boolean success = false;
+		try {
+			pc = acquireConnection();
+			Connection connection = pc.getConnection();
+			if (ownTransaction) {
+				connection.setAutoCommit(false);
+			}
+			ps = pc.getStatementCache().prepare(sqlStatement, type != StatementType.DDL);
+			int pending = 0;
+			while (parameterSets.hasNext()) {
+				bindParameters(ps, parameterSets.next());
+				ps.addBatch();
+				if (++pending == batchSize) {
+					batchCounts.add(Integer.valueOf(executeBatchChunk(ps, connection, commitPerChunk)));
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				batchCounts.add(Integer.valueOf(executeBatchChunk(ps, connection, commitPerChunk)));
+			}
+			if (ownTransaction) {
+				connection.commit();
+			}
+			success = true;
+		}
+		catch (SQLException e) {
+			if (ownTransaction && pc != null) {
+				try {
+					pc.getConnection().rollback();
+				}
+				catch (SQLException e2) { // NOPMD
+				}
+			}
+			String state = "";
+			if (ownTransaction) {
+				state = commitPerChunk ? "; " + batchCounts.size() + " batch(es) have been committed"
+						: "; all batches have been rolled back";
+			}
+			throw new AutomationException("Could not execute " + operation.name().toLowerCase(Locale.ENGLISH)
+					+ " batch in database" + state, e);
+		}
+		finally {
+			if (ownTransaction && pc != null) {
+				try {
+					pc.getConnection().setAutoCommit(true);
+				}
+				catch (SQLException e) { // NOPMD
+					// connection is reset by pool
+				}
+			}
+			if (!success && ps != null) {
+				try {
+					ps.clearBatch();
+				}
+				catch (SQLException e) { // NOPMD
+				}
+			}
+			releaseConnection(pc, ps, success);
+			metrics.record(operation, start, success);
+			// parameter sets have been consumed, so they cannot be logged
+			slowStatementLog.record(sqlStatement, null, start, success ? sumCounts(batchCounts) : -1);
+			if (type == StatementType.DDL) {
+				pool.clearStatementCaches();
+				ddlExecuted();
+			}
+			invalidateResults(sqlStatement, type);
+		}
+
+		int[] result = new int[batchCounts.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = batchCounts.get(i).intValue();
+		}
+		return result;
+	}
+
+	/** Removes the cached results of queries on the tables possibly modified by the given statement. The statement is also
+	 * considered to have modified its tables if it has failed, as it may have been executed partially. */
+	private void invalidateResults(String sqlStatement, StatementType type) {
+		if (resultCache == null) {
+			return;
+		}
+		Set<String> tables = type == StatementType.DDL ? null : CLASSIFIER.getReferencedTables(sqlStatement);
+		resultCache.invalidate(tables);
+		Transaction transaction = currentTransaction.get();
+		if (transaction != null) {
+			if (tables == null) {
+				transaction.modifiedTables.add(null);
+			}
+			else {
+				transaction.modifiedTables.addAll(tables);
+			}
+		}
+	}
+
+	private static int executeBatchChunk(PreparedStatement ps, Connection connection, boolean commit) throws SQLException {
+		int sum = 0;
+		for (int count : ps.executeBatch()) {
+			if (count == Statement.SUCCESS_NO_INFO) {
+				sum = Statement.SUCCESS_NO_INFO;
+			}
+			else if (sum != Statement.SUCCESS_NO_INFO) {
+				sum += count;
+			}
+		}
+		if (commit) {
 			connection.commit();
 		}
+		return sum;
+	}
+
+	/** Returns the total number of rows affected by the given batches, or -1 if unknown for any of them. */
+	private static long sumCounts(List<Integer> batchCounts) {
+		long sum = 0;
+		for (Integer count : batchCounts) {
+			if (count.intValue() < 0) {
+				return -1;
+			}
+			sum += count.intValue();
+		}
+		return sum;
+	}
+
+	/** Counts the rows returned by the given query, stopping at the given count. The statement is limited to the rows which are
+	 * needed for the count, and, if enabled by <code>query.probe.rewrite</code>, wrapped into a dialect specific row limiting
+	 * statement, so the database may stop executing the query early. */
+	private int getQueryResultCount(String sql, int stopCount, Object... parameters) throws SQLException {
+		StatementType type = validateStatementPermission(sql);
+		// at least one row must be fetched to detect errors which only occur when fetching
+		int maxRows = Math.max(stopCount, 1);
+
+		// a failed statement aborts the whole transaction in some databases, so do not risk it. Validations (stop count 0) are
+		// not rewritten either, as the optimizer may drop the select list of the wrapped query, and with it its errors.
+		if (type == StatementType.QUERY && stopCount > 0 && config.isQueryProbeRewriteEnabled()
+				&& currentTransaction.get() == null && isPlainSelect(sql)) {
+			String probeSql = dialect.limitRows(sql.trim(), maxRows);
+			if (probeSql != null) {
+				try {
+					return executeCountProbe(probeSql, true, stopCount, maxRows, parameters);
+				}
+				catch (SQLException e) {
+					// e.g. duplicate column names within the query; fall back to the original statement
+					LOG.debug("Could not execute row limited query, falling back to original query", e);
+				}
+			}
+		}
+		return executeCountProbe(sql, type != StatementType.DDL, stopCount, maxRows, parameters);
+	}
+
+	/** Only plain SELECT statements can be wrapped, but not e.g. common table expressions or Teradata lock modifiers. */
+	private static boolean isPlainSelect(String sql) {
+		String trimmed = sql.trim();
+		return trimmed.regionMatches(true, 0, "SELECT", 0, 6) && trimmed.length() > 6
+				&& Character.isWhitespace(trimmed.charAt(6)) && trimmed.indexOf(';') < 0;
+	}
+
+	private int executeCountProbe(String sql, boolean cacheable, int stopCount, int maxRows, Object... parameters)
+			throws SQLException {
+		long start = System.nanoTime();
+		PooledConnection pc = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		boolean success = false;
+		boolean capturePlan = false;
+		long rowCount = -1;
+		try {
+			pc = acquireConnection();
+			ps = pc.getStatementCache().prepare(sql, cacheable);
+			ps.setMaxRows(maxRows);
+			ps.setFetchSize(maxRows);
+			bindParameters(ps, parameters);
+			capturePlan = startPlanCapture(sql, pc);
+			rs = ps.executeQuery();
+			// always fetch at least one row, even if no rows are to be counted
+			int cnt = 0;
+			while (cnt < maxRows && rs.next()) {
+				cnt++;
+			}
+			cnt = Math.min(cnt, stopCount);
+			// reset limits, as the statement may be reused for unlimited queries
+			ps.setMaxRows(0);
+			ps.setFetchSize(0);
+			success = true;
+			rowCount = cnt;
+			return cnt;
+		}
+		finally {
+			closeQuietly(rs);
+			if (capturePlan) {
+				finishPlanCapture(sql, pc);
+			}
+			releaseConnection(pc, ps, success);
+			slowStatementLog.record(sql, parameters, start, rowCount);
+		}
+	}
+
+	private String checkRowCount(String query, long expectedCount, Object... parameters) throws SQLException {
+		Object count = queryAggregates(query, "COUNT(*)", parameters)[0];
+		return aggregateEquals(Long.valueOf(expectedCount), count) ? null : "Query returned " + count + " row(s) instead of "
+				+ expectedCount;
+	}
+
+	private String checkSum(String query, String column, Number expectedSum, Object... parameters) throws SQLException {
+		Object sum = queryAggregates(query, "SUM(" + validateColumnName(column) + ")", parameters)[0];
+		return aggregateEquals(expectedSum, sum) ? null : "Sum of " + column + " is " + DataRowsComparison.formatValue(sum)
+				+ " instead of " + DataRowsComparison.formatValue(expectedSum);
+	}
+
+	private String checkMinMax(String query, String column, Object expectedMin, Object expectedMax, Object... parameters)
+			throws SQLException {
+		String name = validateColumnName(column);
+		Object[] minMax = queryAggregates(query, "MIN(" + name + "), MAX(" + name + ")", parameters);
+		if (aggregateEquals(expectedMin, minMax[0]) && aggregateEquals(expectedMax, minMax[1])) {
+			return null;
+		}
+		return "Minimum and maximum of " + column + " are " + DataRowsComparison.formatValue(minMax[0]) + " and "
+				+ DataRowsComparison.formatValue(minMax[1]) + " instead of " + DataRowsComparison.formatValue(expectedMin) + " and "
+				+ DataRowsComparison.formatValue(expectedMax);
+	}
+
+	private String checkDistinctCount(String query, String column, long expectedCount, Object... parameters)
+			throws SQLException {
+		Object count = queryAggregates(query, "COUNT(DISTINCT " + validateColumnName(column) + ")", parameters)[0];
+		return aggregateEquals(Long.valueOf(expectedCount), count) ? null : "Query returned " + count + " distinct value(s) of "
+				+ column + " instead of " + expectedCount;
+	}
+
+	private static String validateColumnName(String column) {
+		if (column == null || !COLUMN_NAME.matcher(column.trim()).matches()) {
+			throw new AutomationException("Invalid column name: " + column);
+		}
+		return column.trim();
+	}
+
+	/** Numbers are compared by their numeric value, so e.g. an expected <code>int</code> matches a <code>BIGINT</code> sum. */
+	private static boolean aggregateEquals(Object expected, Object actual) throws SQLException {
+		Object expectedValue = DataRowsComparison.normalize(expected);
+		Object actualValue = DataRowsComparison.normalize(actual);
+		if (expectedValue instanceof Number && actualValue instanceof Number) {
+			return SortedRowsComparison.compareValues(expectedValue, actualValue) == 0;
+		}
+		return expectedValue == null ? actualValue == null : expectedValue.equals(actualValue);
+	}
+
+	/** Computes aggregates over the rows of the given query in the database, so only the aggregated values are fetched.
+	 * 
+	 * @param query Query to aggregate the rows of, which is used as a derived table.
+	 * @param aggregates Aggregate expressions to select, e.g. <code>COUNT(*)</code>.
+	 * @param parameters Parameters for the query.
+	 * 
+	 * @return The values of the aggregate expressions.
+	 * 
+	 * @throws SQLException If the aggregates could not be computed. */
+	private Object[] queryAggregates(String query, String aggregates, Object... parameters) throws SQLException {
+		if (validateStatementPermission(query) != StatementType.QUERY) {
+			throw new AutomationException("Aggregates can only be computed for queries");
+		}
+		String sql = "SELECT " + aggregates + " FROM (" + query.trim() + ") " + AGGREGATE_ALIAS;
+		long start = System.nanoTime();
+		PooledConnection pc = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		boolean success = false;
+		boolean capturePlan = false;
+		try {
+			pc = acquireConnection();
+			ps = pc.getStatementCache().prepare(sql, true);
+			bindParameters(ps, parameters);
+			capturePlan = startPlanCapture(sql, pc);
+			rs = ps.executeQuery();
+			// aggregates without GROUP BY always return exactly one row
+			if (!rs.next()) {
+				throw new SQLException("Aggregate query returned no row: " + sql);
+			}
+			Object[] values = new Object[rs.getMetaData().getColumnCount()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = rs.getObject(i + 1);
+			}
+			success = true;
+			return values;
+		}
+		finally {
+			closeQuietly(rs);
+			if (capturePlan) {
+				finishPlanCapture(sql, pc);
+			}
+			releaseConnection(pc, ps, success);
+			slowStatementLog.record(sql, parameters, start, success ? 1 : -1);
+		}
+	}
+
+	private boolean startPlanCapture(String sql, PooledConnection pc) {
+		if (!slowStatementLog.isPlanWanted(sql)) {
+			return false;
+		}
+		try {
+			if (dialect.startPlanCapture(pc.getConnection())) {
+				return true;
+			}
+		}
 		catch (SQLException e) {
-			throw new AutomationException("Could not commit database transaction", e);
+			LOG.debug("Could not enable execution plan capturing", e);
+		}
+		// do not try again
+		slowStatementLog.planCaptured(sql, null);
+		return false;
+	}
+
+	private void finishPlanCapture(String sql, PooledConnection pc) {
+		String plan = null;
+		try {
+			plan = dialect.finishPlanCapture(pc.getConnection());
+		}
+		catch (SQLException e) {
+			LOG.debug("Could not capture execution plan", e);
+		}
+		slowStatementLog.planCaptured(sql, plan);
+	}
+
+	private StatementType validateStatementPermission(String sql) {
+		StatementType type = CLASSIFIER.classify(sql);
+		if (type == StatementType.QUERY) {
+			return type;
+		}
+
+		if (type == StatementType.DML) {
+			if (!config.isDmlEnabled()) {
+				throw new AutomationException(
+					"DML statement submitted, but not allowed for this database connection. Set enable.dml to true if required.");
+			}
+			// otherwise, OK
+			return StatementType.DML;
+		}
+
+		// everything else is treated as DDL
+		if (!config.isDdlEnabled()) {
+			throw new AutomationException(
+					"DDL statement submitted, but not allowed for this database connection. Set enable.ddl to true if required.");
+		}
+		return StatementType.DDL;
+	}
+
+	private PooledConnection acquireConnection() throws SQLException {
+		PooledConnection pc = getTransactionConnection();
+		return pc != null ? pc : pool.acquire();
+	}
+
+	private PooledConnection getTransactionConnection() {
+		Transaction transaction = currentTransaction.get();
+		return transaction == null ? null : transaction.connection;
+	}
+
+	/** Hands back a statement to the statement cache of its connection, and the connection to the pool, unless it is the
+	 * connection of the active transaction of the current thread.
+	 * 
+	 * @param pc Connection to release, or <code>null</code> if none has been acquired.
+	 * @param ps Statement to release, or <code>null</code> if none has been prepared.
+	 * @param success <code>true</code> if the statement has been executed successfully and may be reused. */
+	private void releaseConnection(PooledConnection pc, PreparedStatement ps, boolean success) {
+		if (pc == null) {
+			return;
+		}
+		pc.getStatementCache().release(ps, success);
+		if (pc != getTransactionConnection()) {
+			pc.release();
+		}
+	}
+
+    /** Binds the given parameters to the statement. Package visible for the benchmarks module. */
+    static void bindParameters(PreparedStatement ps, Object... parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            setPreparedStatementParameter(ps, i + 1, parameters[i]);
+        }
+    }
+
+    private static void closeQuietly(ResultSet rs) {
+        try {
+            rs.close();
+        }
+        catch (Throwable t) { // NOPMD
+        }
+    }
+
+    private static void setPreparedStatementParameter(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            // this could be a problem with some JDBC drivers.
+            ps.setNull(index, Types.NULL);
+            return;
+        }
+
+        if (value instanceof String) {
+            ps.setString(index, value.toString());
+        }
+        else if (value instanceof Long) {
+            ps.setLong(index, ((Long) value).longValue());
+        }
+        else if (value instanceof Integer) {
+            ps.setInt(index, ((Integer) value).intValue());
+        }
+        else if (value instanceof Float) {
+            ps.setFloat(index, ((Float) value).intValue());
+        }
+        else if (value instanceof Number) {
+            // handle all other types via setDouble
+            ps.setDouble(index, ((Number) value).doubleValue());
+        }
+        else if (value instanceof java.sql.Date) {
+            ps.setDate(index, (java.sql.Date) value);
+        }
+        else if (value instanceof Time) {
+            ps.setTime(index, (Time) value);
+        }
+        else if (value instanceof java.util.Date) {
+            ps.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+        }
+        else {
+            // no guarantee this works with used JDBC driver
+            ps.setObject(index, value);
+        }
+    }
+
+	private void waitForStatementRowCountCondition(final String query, final Validator<Integer> validator,
+			final String failureMessage, final Object... parameters) {
+		waitForCondition(new ConditionCheck() {
+			@Override
+			public String check() {
+				return validator.valid(Integer.valueOf(executeRowCountQuery(query, parameters))) ? null : failureMessage;
+			}
+		});
+	}
+
+	/** Evaluates the given condition until it is met. If no waiting is configured, the condition is evaluated once.
+	 * 
+	 * @param condition Condition to evaluate.
+	 * 
+	 * @throws FunctionalFailure If the condition is not met, or not met before the timeout. */
+	private void waitForCondition(final ConditionCheck condition) {
+		long start = System.nanoTime();
+		if (config.getVerifyWaitTimeout() == 0) {
+			// no polling
+			String failureMessage = null;
+			boolean valid = false;
+			try {
+				failureMessage = condition.check();
+				valid = failureMessage == null;
+			}
+			finally {
+				metrics.recordPollAttempts(1);
+				metrics.record(Operation.POLL, start, valid);
+			}
+			if (!valid) {
+				throw new FunctionalFailure(failureMessage);
+			}
+			return;
+		}
+
+		final BackoffPoller poller = BackoffPoller.forConfiguration(config);
+		PolledTask<Boolean> task = new PolledTask<Boolean>() {
+			private String failureMessage;
+
+			@Override
+			public Boolean timedOut() {
+				throw new FunctionalFailure(failureMessage + " (" + poller + ")");
+			}
+
+			@Override
+			public Boolean run() {
+				failureMessage = condition.check();
+				return failureMessage == null ? Boolean.TRUE : null;
+			}
+		};
+
+		boolean success = false;
+		try {
+			poller.poll(task);
+			success = true;
 		}
 		finally {
+			metrics.recordPollAttempts(poller.getAttempts());
+			metrics.record(Operation.POLL, start, success);
+			LOG.debug("Waited for query condition: " + poller);
+		}
+	}
+
+	private int executeRowCountQuery(String query, Object... parameters) {
+		try {
+			return getQueryResultCount(query, 2, parameters);
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not execute query", e);
+		}
+	}
+
+	@Override
+	public void beginTransaction() {
+		Transaction active = currentTransaction.get();
+		if (active != null) {
 			try {
-				connection.setAutoCommit(true);
+				active.savepoints.add(new NamedSavepoint(null, active.connection.getConnection().setSavepoint(), active.ddlCount));
 			}
 			catch (SQLException e) {
-				throw new AutomationException("Could not switch database back to auto-commit", e);
+				throw new AutomationException("Could not begin nested database transaction", e);
 			}
-			inTransaction = false;
+			return;
+		}
+
+		PooledConnection pc;
+		try {
+			pc = pool.acquire();
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not obtain a database connection for the transaction", e);
+		}
+		try {
+			pc.getConnection().setAutoCommit(false);
+		}
+		catch (SQLException e) {
+			pc.release();
+			throw new AutomationException("Could not switch database to manual commit mode", e);
 		}
+		Transaction transaction = new Transaction(pc);
+		currentTransaction.set(transaction);
+		activeTransactions.add(transaction);
+		metrics.transactionBegun();
 	}
 
 	@Override
-	public void rollbackTransaction() {
-		if (!inTransaction) {
+	public void commitTransaction() {
+		Transaction transaction = currentTransaction.get();
+		if (transaction == null) {
+			return;
+		}
+		int nestedIndex = transaction.getNestedTransactionIndex();
+		if (nestedIndex >= 0) {
+			try {
+				transaction.connection.getConnection().releaseSavepoint(transaction.savepoints.get(nestedIndex).savepoint);
+			}
+			catch (SQLException e) {
+				throw new AutomationException("Could not commit nested database transaction", e);
+			}
+			finally {
+				transaction.discardSavepoints(nestedIndex);
+			}
 			return;
 		}
 
+		boolean committed = false;
 		try {
-			connection.rollback();
+			transaction.connection.getConnection().commit();
+			committed = true;
 		}
 		catch (SQLException e) {
-			throw new AutomationException("Could not rollback database transaction", e);
+			throw new AutomationException("Could not commit database transaction", e);
 		}
 		finally {
+			endTransaction(transaction, committed);
+		}
+	}
+
+	@Override
+	public void rollbackTransaction() {
+		Transaction transaction = currentTransaction.get();
+		if (transaction == null) {
+			return;
+		}
+		int nestedIndex = transaction.getNestedTransactionIndex();
+		if (nestedIndex >= 0) {
 			try {
-				connection.setAutoCommit(true);
+				NamedSavepoint savepoint = transaction.savepoints.get(nestedIndex);
+				transaction.rollbackDdl(savepoint.ddlCount);
+				transaction.connection.getConnection().rollback(savepoint.savepoint);
+				transaction.connection.getConnection().releaseSavepoint(savepoint.savepoint);
 			}
 			catch (SQLException e) {
-				throw new AutomationException("Could not switch database back to auto-commit", e);
+				throw new AutomationException("Could not rollback nested database transaction", e);
+			}
+			finally {
+				transaction.discardSavepoints(nestedIndex);
+			}
+			return;
+		}
+
+		try {
+			transaction.rollbackDdl(0);
+			transaction.connection.getConnection().rollback();
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not rollback database transaction", e);
+		}
+		finally {
+			endTransaction(transaction, false);
+		}
+	}
+
+	@Override
+	public void setSavepoint(String name) {
+		Transaction transaction = getActiveTransaction();
+		if (transaction.getSavepointIndex(name) >= 0) {
+			throw new AutomationException("Savepoint " + name + " already exists in the current transaction");
+		}
+		try {
+			transaction.savepoints.add(new NamedSavepoint(name, transaction.connection.getConnection().setSavepoint(name),
+					transaction.ddlCount));
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not set savepoint " + name, e);
+		}
+	}
+
+	@Override
+	public void rollbackToSavepoint(String name) {
+		Transaction transaction = getActiveTransaction();
+		int index = getSavepointIndex(transaction, name);
+		try {
+			NamedSavepoint savepoint = transaction.savepoints.get(index);
+			transaction.rollbackDdl(savepoint.ddlCount);
+			transaction.connection.getConnection().rollback(savepoint.savepoint);
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not rollback to savepoint " + name, e);
+		}
+		finally {
+			// the database discards all later savepoints
+			transaction.discardSavepoints(index + 1);
+		}
+	}
+
+	@Override
+	public void releaseSavepoint(String name) {
+		Transaction transaction = getActiveTransaction();
+		int index = getSavepointIndex(transaction, name);
+		try {
+			transaction.connection.getConnection().releaseSavepoint(transaction.savepoints.get(index).savepoint);
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not release savepoint " + name, e);
+		}
+		finally {
+			transaction.discardSavepoints(index);
+		}
+	}
+
+	private Transaction getActiveTransaction() {
+		Transaction transaction = currentTransaction.get();
+		if (transaction == null) {
+			throw new AutomationException("No database transaction is active. Call beginTransaction() first.");
+		}
+		return transaction;
+	}
+
+	private static int getSavepointIndex(Transaction transaction, String name) {
+		int index = transaction.getSavepointIndex(name);
+		if (index < 0) {
+			throw new AutomationException("Unknown savepoint " + name);
+		}
+		// otherwise, the savepoint of the nested transaction would be discarded, and its commit would end the outer transaction
+		if (index < transaction.getNestedTransactionIndex()) {
+			throw new AutomationException("Savepoint " + name
+					+ " has been set before the active nested transaction was begun. End the nested transaction first.");
+		}
+		return index;
+	}
+
+	@Override
+	public void createTemplate(String name) {
+		if (currentTransaction.get() != null) {
+			throw new AutomationException("Database templates cannot be created within a transaction");
+		}
+		File directory = getTemplateDirectory(name);
+		// the template is copied next to an existing one first, so the existing one is kept if copying fails
+		File newDirectory = new File(directory.getParentFile(), name + ".new");
+		if (newDirectory.exists()) {
+			FileUtil.deleteDirectory(newDirectory);
+		}
+		if (!newDirectory.mkdirs()) {
+			throw new AutomationException("Could not create template directory " + newDirectory);
+		}
+		boolean supported;
+		PooledConnection pc = null;
+		try {
+			pc = pool.acquire();
+			supported = dialect.backupDatabase(pc.getConnection(), newDirectory);
+		}
+		catch (SQLException e) {
+			FileUtil.deleteDirectory(newDirectory);
+			throw new AutomationException("Could not create database template " + name, e);
+		}
+		finally {
+			if (pc != null) {
+				pc.release();
+			}
+		}
+		if (!supported) {
+			FileUtil.deleteDirectory(newDirectory);
+			throw new AutomationException("Database templates are not supported for SQL dialect " + dialect);
+		}
+		if (directory.exists()) {
+			FileUtil.deleteDirectory(directory);
+		}
+		if (!newDirectory.renameTo(directory)) {
+			throw new AutomationException("Could not move database template to " + directory);
+		}
+	}
+
+	@Override
+	public void restoreTemplate(String name) {
+		if (!activeTransactions.isEmpty()) {
+			throw new AutomationException("Database templates cannot be restored while a transaction is active");
+		}
+		File directory = getTemplateDirectory(name);
+		if (!directory.isDirectory()) {
+			throw new AutomationException("Unknown database template " + name);
+		}
+		if (!pool.closeConnections()) {
+			throw new AutomationException(
+					"Database templates cannot be restored while database connections are in use, e.g. by streamed query results");
+		}
+		try {
+			if (!dialect.restoreDatabase(config, directory)) {
+				throw new AutomationException("Database templates are not supported for SQL dialect " + dialect);
+			}
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not restore database template " + name, e);
+		}
+		finally {
+			if (resultCache != null) {
+				resultCache.invalidate(null);
+			}
+		}
+	}
+
+	@Override
+	public boolean isTemplateAvailable(String name) {
+		return getTemplateDirectory(name).isDirectory();
+	}
+
+	private File getTemplateDirectory(String name) {
+		if (name == null || !TEMPLATE_NAME.matcher(name).matches()) {
+			throw new AutomationException("Invalid database template name: " + name
+					+ ". Only letters, digits, underscores and hyphens are allowed.");
+		}
+		String baseDirectory = config.getTemplateDirectory();
+		if (baseDirectory == null || "".equals(baseDirectory.trim())) {
+			return new File(new File(System.getProperty("java.io.tmpdir"), "aludratest-db-templates"), name);
+		}
+		return new File(baseDirectory.trim(), name);
+	}
+
+	private void endTransaction(Transaction transaction, boolean committed) {
+		currentTransaction.remove();
+		metrics.transactionEnded(transaction.start, committed);
+		// queries executed concurrently outside of the transaction may have cached results from before its changes
+		if (resultCache != null && !transaction.modifiedTables.isEmpty()) {
+			resultCache.invalidate(transaction.modifiedTables.contains(null) ? null : transaction.modifiedTables);
+		}
+		if (!activeTransactions.remove(transaction)) {
+			// already rolled back and released by close()
+			return;
+		}
+		PooledConnection pc = transaction.connection;
+		try {
+			pc.getConnection().setAutoCommit(true);
+		}
+		catch (SQLException e) {
+			throw new AutomationException("Could not switch database back to auto-commit", e);
+		}
+		finally {
+			pc.release();
+		}
+	}
+
+	/** Reads the values of the given columns from each row of a set of data rows, iterating over them once. */
+	private static final class DataRowsSource implements SortedRowsComparison.RowSource {
+
+		private final AbstractDataRows rows;
+
+		private final Iterator<DataRow> iterator;
+
+		private final TableColumn<?>[] columns;
+
+		/** 1-based number of the row read last. */
+		private int rowNum;
+
+		DataRowsSource(DataRows rows, TableColumn<?>[] columns) {
+			if (!(rows instanceof AbstractDataRows)) {
+				throw new AutomationException("rows parameter has not been created by this database service");
+			}
+			this.rows = (AbstractDataRows) rows;
+			this.iterator = rows.iterator();
+			this.columns = columns;
+		}
+
+		@Override
+		public Object[] nextRow() throws SQLException {
+			if (!iterator.hasNext()) {
+				return null;
 			}
-			inTransaction = false;
+			rowNum = ((AbstractDataRows.DataRowImpl) iterator.next()).getRowNum();
+			Object[] values = new Object[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				values[i] = rows.getValue(rowNum, (TableColumnImpl<?>) columns[i]);
+			}
+			return values;
+		}
+
+	}
+
+	/** A condition which is evaluated repeatedly by {@link DatabaseActionImpl#waitForCondition(ConditionCheck)}. */
+	private interface ConditionCheck {
+
+		/** Evaluates the condition.
+		 * 
+		 * @return <code>null</code> if the condition is met, otherwise a message describing why it is not met. */
+		String check();
+
+	}
+
+	/** State of a transaction, which is bound to the thread which has begun it. */
+	private static final class Transaction {
+
+		private final PooledConnection connection;
+
+		/** Start time, as returned by {@link System#nanoTime()}. */
+		private final long start = System.nanoTime();
+
+		/** Tables modified within the transaction, whose cached results are invalidated again when the transaction ends. Contains
+		 * <code>null</code> if the modified tables are unknown. */
+		private final Set<String> modifiedTables = new HashSet<String>();
+
+		/** Savepoints of the transaction, in the order they have been set. Nested transactions are backed by unnamed
+		 * savepoints. */
+		private final List<NamedSavepoint> savepoints = new ArrayList<NamedSavepoint>();
+
+		/** Number of DDL statements executed within the transaction, which have not been rolled back. */
+		private int ddlCount;
+
+		private Transaction(PooledConnection connection) {
+			this.connection = connection;
+		}
+
+		/** Prepares a rollback to a state in which the given number of DDL statements had been executed. Statements prepared
+		 * since then may refer to objects which are rolled back, so the statement cache is cleared if DDL has been executed
+		 * since. Otherwise, the prepared statements stay valid and are kept. */
+		private void rollbackDdl(int previousDdlCount) {
+			if (ddlCount != previousDdlCount) {
+				connection.getStatementCache().clear();
+				ddlCount = previousDdlCount;
+			}
+		}
+
+		/** Returns the index of the savepoint of the innermost nested transaction, or -1 if no nested transaction is active. */
+		private int getNestedTransactionIndex() {
+			for (int i = savepoints.size() - 1; i >= 0; i--) {
+				if (savepoints.get(i).name == null) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private int getSavepointIndex(String name) {
+			for (int i = savepoints.size() - 1; i >= 0; i--) {
+				if (name.equals(savepoints.get(i).name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/** Forgets the savepoint with the given index and all later ones. */
+		private void discardSavepoints(int fromIndex) {
+			savepoints.subList(fromIndex, savepoints.size()).clear();
+		}
+	}
+
+	private static final class NamedSavepoint {
+
+		/** Name of the savepoint, or <code>null</code> if it backs a nested transaction. */
+		private final String name;
+
+		private final Savepoint savepoint;
+
+		/** Number of DDL statements executed within the transaction when the savepoint was set. */
+		private final int ddlCount;
+
+		private NamedSavepoint(String name, Savepoint savepoint, int ddlCount) {
+			this.name = name;
+			this.savepoint = savepoint;
+			this.ddlCount = ddlCount;
 		}
 	}
 
@@ -57,4 +57,104 @@ public class DatabaseConfiguration {
 	public int getVerifyWaitInterval() {
 		return prefs.getIntValue("verify.wait.interval");
 	}
+
+	public double getVerifyWaitMultiplier() {
+		return prefs.getDoubleValue("verify.wait.multiplier");
+	}
+
+	public int getVerifyWaitMaxInterval() {
+		return prefs.getIntValue("verify.wait.maxInterval");
+	}
+
+	public double getVerifyWaitJitter() {
+		return prefs.getDoubleValue("verify.wait.jitter");
+	}
+
+	public int getQueryFetchSize() {
+		return prefs.getIntValue("query.fetchSize");
+	}
+
+	public int getQueryMemoryBudget() {
+		return prefs.getIntValue("query.memoryBudget");
+	}
+
+	public boolean isQueryProbeRewriteEnabled() {
+		return prefs.getBooleanValue("query.probe.rewrite");
+	}
+
+	public String getSqlDialect() {
+		return prefs.getStringValue("sql.dialect");
+	}
+
+	public int getLobSpillThreshold() {
+		return prefs.getIntValue("lob.spillThreshold");
+	}
+
+	public int getQueryCacheSize() {
+		return prefs.getIntValue("query.cache.size");
+	}
+
+	public int getQueryCacheTtl() {
+		return prefs.getIntValue("query.cache.ttl");
+	}
+
+	public int getSlowStatementThreshold() {
+		return prefs.getIntValue("slowStatement.threshold");
+	}
+
+	public boolean isSlowStatementPlanCaptureEnabled() {
+		return prefs.getBooleanValue("slowStatement.capturePlans");
+	}
+
+	public String getTemplateDirectory() {
+		return prefs.getStringValue("template.directory");
+	}
+
+	public int getCompareMaxMismatches() {
+		return prefs.getIntValue("compare.maxMismatches");
+	}
+
+	public int getStatementCacheSize() {
+		return prefs.getIntValue("statement.cache.size");
+	}
+
+	public int getBatchSize() {
+		return prefs.getIntValue("batch.size");
+	}
+
+	public boolean isBatchCommitPerChunk() {
+		return prefs.getBooleanValue("batch.commitPerChunk");
+	}
+
+	public int getAsyncThreads() {
+		return prefs.getIntValue("async.threads");
+	}
+
+	public int getAsyncCloseTimeout() {
+		return prefs.getIntValue("async.closeTimeout");
+	}
+
+	public int getPoolMinSize() {
+		return prefs.getIntValue("pool.minSize");
+	}
+
+	public int getPoolMaxSize() {
+		return prefs.getIntValue("pool.maxSize");
+	}
+
+	public int getPoolAcquireTimeout() {
+		return prefs.getIntValue("pool.acquireTimeout");
+	}
+
+	public String getPoolValidationQuery() {
+		return prefs.getStringValue("pool.validationQuery");
+	}
+
+	public int getPoolIdleTimeout() {
+		return prefs.getIntValue("pool.idleTimeout");
+	}
+
+	public int getPoolMaxLifetime() {
+		return prefs.getIntValue("pool.maxLifetime");
+	}
 }
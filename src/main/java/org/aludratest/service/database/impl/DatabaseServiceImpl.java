@@ -15,14 +15,13 @@
  */
 package org.aludratest.service.database.impl;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 import org.aludratest.config.Preferences;
 import org.aludratest.exception.AccessFailure;
 import org.aludratest.exception.AutomationException;
 import org.aludratest.service.AbstractConfigurableAludraService;
+import org.aludratest.service.database.AsyncDatabaseInteraction;
 import org.aludratest.service.database.DatabaseCondition;
 import org.aludratest.service.database.DatabaseInteraction;
 import org.aludratest.service.database.DatabaseService;
@@ -35,7 +34,17 @@ public class DatabaseServiceImpl extends AbstractConfigurableAludraService imple
 
     private DatabaseActionImpl actions;
 
-    private Connection connection;
+    private AsyncDatabaseInteractionImpl asyncActions;
+
+    private ConnectionPool pool;
+
+    private TempFiles tempFiles;
+
+    private QueryResultCache resultCache;
+
+    private DatabaseServiceMetrics metrics;
+
+    private SlowStatementLog slowStatementLog;
 
     private DatabaseConfiguration config;
 
@@ -49,12 +58,27 @@ public class DatabaseServiceImpl extends AbstractConfigurableAludraService imple
     }
 
     @Override
-    public void close() {
-        try {
-            connection.close();
+    public synchronized void close() {
+        if (asyncActions != null) {
+            asyncActions.close();
         }
-        catch (Exception e) {
-            LOG.info("Exception when closing database connection", e);
+        if (actions != null) {
+            actions.close();
+        }
+        if (metrics != null) {
+            LOG.debug("Database service statistics: " + metrics);
+            metrics.unregister();
+        }
+        if (pool != null) {
+            LOG.debug("Closing database connections, " + pool);
+            pool.close();
+        }
+        if (resultCache != null) {
+            LOG.debug("Closing " + resultCache);
+            resultCache.clear();
+        }
+        if (tempFiles != null) {
+            tempFiles.close();
         }
     }
 
@@ -76,21 +100,43 @@ public class DatabaseServiceImpl extends AbstractConfigurableAludraService imple
         catch (Exception e) {
             throw new AutomationException("Could not find or initialize JDBC Driver Class", e);
         }
+
+        try {
+            SqlDialect.forConfiguration(config);
+        }
+        catch (IllegalArgumentException e) {
+            throw new AutomationException("Unknown SQL dialect " + config.getSqlDialect(), e);
+        }
+
+        // check polling configuration for validness
+        try {
+            BackoffPoller.forConfiguration(config);
+        }
+        catch (IllegalArgumentException e) {
+            throw new AutomationException("Invalid verify.wait configuration", e);
+        }
     }
 
     @Override
     public void initService() {
+        tempFiles = new TempFiles();
+        slowStatementLog = new SlowStatementLog(config.getSlowStatementThreshold(), config.isSlowStatementPlanCaptureEnabled());
+        if (config.getQueryCacheSize() > 0) {
+            resultCache = new QueryResultCache(config.getQueryCacheSize(), config.getQueryCacheTtl());
+        }
         try {
-            if (config.getUser() != null) {
-                connection = DriverManager.getConnection(config.getJdbcUrl(), config.getUser(), config.getPassword());
-            }
-            else {
-                connection = DriverManager.getConnection(config.getJdbcUrl());
-            }
+            pool = new ConnectionPool(config);
+            pool.start();
+        }
+        catch (IllegalArgumentException e) {
+            throw new AutomationException("Invalid connection pool configuration", e);
         }
         catch (SQLException e) {
+            pool.close();
             throw new AccessFailure("Could not connect to database", e);
         }
+        metrics = new DatabaseServiceMetrics(config.getJdbcUrl(), pool, resultCache, slowStatementLog);
+        metrics.register();
     }
 
     @Override
@@ -108,14 +154,23 @@ public class DatabaseServiceImpl extends AbstractConfigurableAludraService imple
         return getActions();
     }
 
+    @Override
+    public synchronized AsyncDatabaseInteraction async() {
+        if (asyncActions == null) {
+            asyncActions = new AsyncDatabaseInteractionImpl(pool, tempFiles, resultCache, metrics, slowStatementLog,
+                    config);
+        }
+        return asyncActions;
+    }
+
     @Override
     public TableColumnFactory getTableColumnFactory() {
         return factory;
     }
 
-    private DatabaseActionImpl getActions() {
+    private synchronized DatabaseActionImpl getActions() {
         if (actions == null) {
-			actions = new DatabaseActionImpl(connection, config);
+			actions = new DatabaseActionImpl(pool, tempFiles, resultCache, metrics, slowStatementLog, config);
         }
 
         return actions;
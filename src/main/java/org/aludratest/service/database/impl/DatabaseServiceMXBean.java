@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+/** Management interface of a database service instance, registered in the platform MBean server as
+ * <code>org.aludratest.service.database:type=DatabaseService,url=&lt;JDBC URL&gt;,id=&lt;n&gt;</code> while the service is
+ * open. The JDBC URL is exposed without properties and user information, as they may contain credentials. Durations are in
+ * milliseconds. */
+public interface DatabaseServiceMXBean {
+
+    String getJdbcUrl();
+
+    OperationStatistics getQueryStatistics();
+
+    OperationStatistics getInsertStatistics();
+
+    OperationStatistics getUpdateStatistics();
+
+    OperationStatistics getDeleteStatistics();
+
+    /** Returns the statistics of the verifications and conditions which wait for a query result, e.g.
+     * <code>assertNonEmptyQuery()</code>. Their durations include the time spent waiting between the attempts.
+     * 
+     * @return The statistics of the polling operations. */
+    OperationStatistics getPollStatistics();
+
+    /** Returns the statistics of the transactions, from their begin until their commit or rollback. Rolled back transactions
+     * are counted as failed.
+     * 
+     * @return The statistics of the transactions. */
+    OperationStatistics getTransactionStatistics();
+
+    /** Returns the statistics of the table checksum computations, each including the reads of all of its partitions.
+     * 
+     * @return The statistics of the table checksum computations. */
+    OperationStatistics getChecksumStatistics();
+
+    long getRowsFetched();
+
+    /** Returns the estimated number of bytes of the materialized query results, including the sizes of temporary files.
+     * 
+     * @return The estimated number of bytes of the materialized query results. */
+    long getBytesMaterialized();
+
+    long getPollAttempts();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    long getCreatedConnections();
+
+    long getConnectionTimeouts();
+
+    long getConnectionAcquisitions();
+
+    /** Returns the number of times an operation had to wait for a connection, because all connections of the pool were in use,
+     * e.g. by concurrent threads or open transactions.
+     * 
+     * @return The number of times an operation had to wait for a connection. */
+    long getConnectionWaits();
+
+    /** Returns the total time operations have waited for a connection.
+     * 
+     * @return The total time operations have waited for a connection, in milliseconds. */
+    double getConnectionWaitTime();
+
+    double getMaxConnectionWaitTime();
+
+    /** Returns the number of open transactions, of all threads using the service.
+     * 
+     * @return The number of open transactions. */
+    int getActiveTransactions();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    /** Returns the number of queries answered from the query result cache. 0 if the cache is disabled.
+     * 
+     * @return The number of queries answered from the query result cache. */
+    long getResultCacheHits();
+
+    long getResultCacheMisses();
+
+    int getResultCacheSize();
+
+    /** Returns the number of statements which have been logged as slow, as configured by <code>slowStatement.threshold</code>.
+     * 
+     * @return The number of statements which have been logged as slow. */
+    long getSlowStatements();
+
+    /** Returns the number of execution plans of slow statements which have been captured, as configured by
+     * <code>slowStatement.capturePlans</code>.
+     * 
+     * @return The number of captured execution plans. */
+    long getCapturedPlans();
+
+    /** Resets all operation statistics and counters. Connection pool, cache and slow statement statistics are not affected. */
+    void reset();
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Collects the statistics of a database service instance, and exposes them via JMX. Counters are updated without locking, so
+ * the statistics can be recorded by concurrent operations cheaply. */
+public class DatabaseServiceMetrics implements DatabaseServiceMXBean {
+
+    /** Kind of a recorded operation. */
+    public enum Operation {
+        QUERY, INSERT, UPDATE, DELETE, POLL, TRANSACTION, CHECKSUM
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseServiceMetrics.class);
+
+    private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger();
+
+    private final String jdbcUrl;
+
+    private final ConnectionPool pool;
+
+    private final QueryResultCache resultCache;
+
+    private final SlowStatementLog slowStatementLog;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+
+    private final AtomicLong rowsFetched = new AtomicLong();
+
+    private final AtomicLong bytesMaterialized = new AtomicLong();
+
+    private final AtomicLong pollAttempts = new AtomicLong();
+
+    private final AtomicInteger activeTransactions = new AtomicInteger();
+
+    private ObjectName objectName;
+
+    /** Creates a new metrics object.
+     * 
+     * @param jdbcUrl JDBC URL of the service. Only the URL without properties and user information is exposed.
+     * @param pool Connection pool of the service.
+     * @param resultCache Query result cache of the service, or <code>null</code> if results are not cached.
+     * @param slowStatementLog Slow statement log of the service. */
+    public DatabaseServiceMetrics(String jdbcUrl, ConnectionPool pool, QueryResultCache resultCache,
+            SlowStatementLog slowStatementLog) {
+        this.jdbcUrl = stripCredentials(jdbcUrl);
+        this.pool = pool;
+        this.resultCache = resultCache;
+        this.slowStatementLog = slowStatementLog;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Removes everything from a JDBC URL which may contain credentials, i.e. all properties following a <code>;</code> or
+     * <code>?</code>, e.g. <code>;password=secret</code>, and the user information preceding an <code>@</code>, e.g.
+     * <code>scott/tiger@</code> or <code>//user:secret@</code>.
+     * 
+     * @param jdbcUrl JDBC URL to strip.
+     * 
+     * @return The JDBC URL without properties and user information. */
+    static String stripCredentials(String jdbcUrl) {
+        String url = jdbcUrl;
+        for (char separator : new char[] { ';', '?' }) {
+            int index = url.indexOf(separator);
+            if (index >= 0) {
+                url = url.substring(0, index);
+            }
+        }
+        int at = url.lastIndexOf('@');
+        if (at < 0) {
+            return url;
+        }
+        int start = url.indexOf("//");
+        if (start >= 0 && start < at) {
+            return url.substring(0, start + 2) + url.substring(at + 1);
+        }
+        // e.g. jdbc:oracle:thin:scott/tiger@host, which keeps the @. The password may contain colons, but not the user name.
+        int slash = url.indexOf('/');
+        start = url.lastIndexOf(':', slash >= 0 && slash < at ? slash : at) + 1;
+        return url.substring(0, start) + url.substring(at);
+    }
+
+    /** Registers this object in the platform MBean server. Failures are logged only, as the service works without JMX. */
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("org.aludratest.service.database:type=DatabaseService,url="
+                    + ObjectName.quote(jdbcUrl) + ",id=" + INSTANCE_COUNTER.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        }
+        catch (JMException e) {
+            LOG.warn("Could not register database service MBean", e);
+        }
+    }
+
+    /** Removes this object from the platform MBean server, if it has been registered. */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        }
+        catch (JMException e) {
+            LOG.warn("Could not unregister database service MBean", e);
+        }
+        objectName = null;
+    }
+
+    /** Returns the name this object is registered with.
+     * 
+     * @return The name this object is registered with, or <code>null</code> if it is not registered. */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /** Records a finished operation.
+     * 
+     * @param operation Kind of the operation.
+     * @param startNanos Start time of the operation, as returned by {@link System#nanoTime()}.
+     * @param success <code>false</code> if the operation has failed. */
+    public void record(Operation operation, long startNanos, boolean success) {
+        histograms[operation.ordinal()].record(System.nanoTime() - startNanos, success);
+    }
+
+    /** Records a materialized query result.
+     * 
+     * @param rows Number of fetched rows.
+     * @param bytes Estimated size of the rows, in bytes. */
+    public void recordResult(long rows, long bytes) {
+        rowsFetched.addAndGet(rows);
+        bytesMaterialized.addAndGet(bytes);
+    }
+
+    public void transactionBegun() {
+        activeTransactions.incrementAndGet();
+    }
+
+    /** Records a finished transaction.
+     * 
+     * @param startNanos Start time of the transaction, as returned by {@link System#nanoTime()}.
+     * @param committed <code>true</code> if the transaction has been committed, <code>false</code> if it has been rolled
+     *            back. */
+    public void transactionEnded(long startNanos, boolean committed) {
+        activeTransactions.decrementAndGet();
+        record(Operation.TRANSACTION, startNanos, committed);
+    }
+
+    public void recordPollAttempts(int attempts) {
+        pollAttempts.addAndGet(attempts);
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    @Override
+    public OperationStatistics getQueryStatistics() {
+        return getStatistics(Operation.QUERY);
+    }
+
+    @Override
+    public OperationStatistics getInsertStatistics() {
+        return getStatistics(Operation.INSERT);
+    }
+
+    @Override
+    public OperationStatistics getUpdateStatistics() {
+        return getStatistics(Operation.UPDATE);
+    }
+
+    @Override
+    public OperationStatistics getDeleteStatistics() {
+        return getStatistics(Operation.DELETE);
+    }
+
+    @Override
+    public OperationStatistics getPollStatistics() {
+        return getStatistics(Operation.POLL);
+    }
+
+    @Override
+    public OperationStatistics getTransactionStatistics() {
+        return getStatistics(Operation.TRANSACTION);
+    }
+
+    @Override
+    public OperationStatistics getChecksumStatistics() {
+        return getStatistics(Operation.CHECKSUM);
+    }
+
+    public OperationStatistics getStatistics(Operation operation) {
+        return histograms[operation.ordinal()].snapshot();
+    }
+
+    @Override
+    public long getRowsFetched() {
+        return rowsFetched.get();
+    }
+
+    @Override
+    public long getBytesMaterialized() {
+        return bytesMaterialized.get();
+    }
+
+    @Override
+    public long getPollAttempts() {
+        return pollAttempts.get();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return pool.getActiveCount();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return pool.getIdleCount();
+    }
+
+    @Override
+    public long getCreatedConnections() {
+        return pool.getCreatedCount();
+    }
+
+    @Override
+    public long getConnectionTimeouts() {
+        return pool.getTimeoutCount();
+    }
+
+    @Override
+    public long getConnectionAcquisitions() {
+        return pool.getAcquireCount();
+    }
+
+    @Override
+    public long getConnectionWaits() {
+        return pool.getWaitCount();
+    }
+
+    @Override
+    public double getConnectionWaitTime() {
+        return pool.getWaitNanos() / 1000000.0;
+    }
+
+    @Override
+    public double getMaxConnectionWaitTime() {
+        return pool.getMaxWaitNanos() / 1000000.0;
+    }
+
+    @Override
+    public int getActiveTransactions() {
+        return activeTransactions.get();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return pool.getStatementCacheCount(true);
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return pool.getStatementCacheCount(false);
+    }
+
+    @Override
+    public long getResultCacheHits() {
+        return resultCache == null ? 0 : resultCache.getHitCount();
+    }
+
+    @Override
+    public long getResultCacheMisses() {
+        return resultCache == null ? 0 : resultCache.getMissCount();
+    }
+
+    @Override
+    public int getResultCacheSize() {
+        return resultCache == null ? 0 : resultCache.size();
+    }
+
+    @Override
+    public long getSlowStatements() {
+        return slowStatementLog.getSlowStatementCount();
+    }
+
+    @Override
+    public long getCapturedPlans() {
+        return slowStatementLog.getCapturedPlanCount();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        rowsFetched.set(0);
+        bytesMaterialized.set(0);
+        pollAttempts.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DatabaseServiceMetrics [");
+        for (Operation operation : Operation.values()) {
+            if (histograms[operation.ordinal()].getCount() > 0) {
+                sb.append(operation.name().toLowerCase(Locale.ENGLISH)).append(": ").append(getStatistics(operation)).append("; ");
+            }
+        }
+        sb.append("rowsFetched=").append(rowsFetched.get()).append(", bytesMaterialized=").append(bytesMaterialized.get())
+                .append(", pollAttempts=").append(pollAttempts.get()).append("]");
+        return sb.toString();
+    }
+
+}
@@ -15,11 +15,12 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.sql.Date;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.DateColumn;
 
 public class DateColumnImpl extends TableColumnImpl<Date> implements DateColumn {
@@ -29,8 +30,20 @@ public class DateColumnImpl extends TableColumnImpl<Date> implements DateColumn
     }
 
     @Override
-    public Date getValueFromRowSet(RowSet rs) throws SQLException {
-        return rs.getDate(getColumnName());
+    public Date getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        return rs.getDate(columnIndex);
+    }
+
+    @Override
+    public Date getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.getDate(row);
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        // the string representation does not depend on the time zone of the JVM
+        Date date = rs.getDate(columnIndex);
+        writeString(out, date == null ? null : date.toString());
     }
 
 }
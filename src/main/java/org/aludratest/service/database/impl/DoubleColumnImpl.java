@@ -15,10 +15,11 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.DoubleColumn;
 
 public class DoubleColumnImpl extends TableColumnImpl<Double> implements DoubleColumn {
@@ -28,9 +29,27 @@ public class DoubleColumnImpl extends TableColumnImpl<Double> implements DoubleC
     }
 
     @Override
-    public Double getValueFromRowSet(RowSet rs) throws SQLException {
-        double val = rs.getDouble(getColumnName());
+    public Double getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        double val = rs.getDouble(columnIndex);
         return rs.wasNull() ? null : Double.valueOf(val);
     }
 
+    @Override
+    public Double getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.isNull(row) ? null : Double.valueOf(values.getDouble(row));
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        double val = rs.getDouble(columnIndex);
+        if (rs.wasNull()) {
+            writeNull(out);
+        }
+        else {
+            out.writeByte(VALUE_TAG);
+            // collapses all NaN representations into one
+            out.writeLong(Double.doubleToLongBits(val));
+        }
+    }
+
 }
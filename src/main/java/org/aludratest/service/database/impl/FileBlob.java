@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/** Read-only BLOB whose content is held in a temporary file. Created by {@link LobStore}. */
+final class FileBlob implements Blob {
+
+    private final File file;
+
+    private final long length;
+
+    FileBlob(File file, long length) {
+        this.file = file;
+        this.length = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public byte[] getBytes(long pos, int len) throws SQLException {
+        checkRange(pos, len);
+        byte[] bytes = new byte[(int) Math.min(len, length - pos + 1)];
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                raf.seek(pos - 1);
+                raf.readFully(bytes);
+                return bytes;
+            }
+            finally {
+                raf.close();
+            }
+        }
+        catch (IOException e) {
+            throw contentNotAvailable(e);
+        }
+    }
+
+    @Override
+    public InputStream getBinaryStream() throws SQLException {
+        return getBinaryStream(1, length);
+    }
+
+    @Override
+    public InputStream getBinaryStream(long pos, long len) throws SQLException {
+        checkRange(pos, len);
+        try {
+            InputStream in = new FileInputStream(file);
+            FileClob.skipFully(in, pos - 1);
+            return new BoundedInputStream(new BufferedInputStream(in), Math.min(len, length - pos + 1));
+        }
+        catch (IOException e) {
+            throw contentNotAvailable(e);
+        }
+    }
+
+    @Override
+    public long position(byte[] pattern, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException("position() is not supported for BLOBs stored in temporary files");
+    }
+
+    @Override
+    public long position(Blob pattern, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException("position() is not supported for BLOBs stored in temporary files");
+    }
+
+    @Override
+    public int setBytes(long pos, byte[] bytes) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public OutputStream setBinaryStream(long pos) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void truncate(long len) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void free() {
+        // the file is owned by the LobStore
+    }
+
+    private void checkRange(long pos, long len) throws SQLException {
+        if (pos < 1 || len < 0 || (pos > length + 1)) {
+            throw new SQLException("Invalid BLOB range: position " + pos + ", length " + len + " (BLOB length is " + length
+                    + ")");
+        }
+    }
+
+    private SQLException contentNotAvailable(IOException e) {
+        return new SQLException("BLOB content is not available anymore, the database service may have been closed", e);
+    }
+
+    private static SQLException readOnly() {
+        return new SQLFeatureNotSupportedException("BLOBs read from the database service are read-only");
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/** Read-only CLOB whose content is held in a temporary file, two bytes (big endian) per character. Created by
+ * {@link LobStore}. */
+final class FileClob implements Clob {
+
+    private final File file;
+
+    private final long length;
+
+    FileClob(File file, long length) {
+        this.file = file;
+        this.length = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public String getSubString(long pos, int len) throws SQLException {
+        checkRange(pos, len);
+        int count = (int) Math.min(len, length - pos + 1);
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                raf.seek((pos - 1) * 2);
+                byte[] bytes = new byte[count * 2];
+                raf.readFully(bytes);
+                char[] chars = new char[count];
+                for (int i = 0; i < count; i++) {
+                    chars[i] = (char) (((bytes[i * 2] & 0xff) << 8) | (bytes[i * 2 + 1] & 0xff));
+                }
+                return new String(chars);
+            }
+            finally {
+                raf.close();
+            }
+        }
+        catch (IOException e) {
+            throw contentNotAvailable(e);
+        }
+    }
+
+    @Override
+    public Reader getCharacterStream() throws SQLException {
+        return getCharacterStream(1, length);
+    }
+
+    @Override
+    public Reader getCharacterStream(long pos, long len) throws SQLException {
+        checkRange(pos, len);
+        try {
+            InputStream in = new FileInputStream(file);
+            skipFully(in, (pos - 1) * 2);
+            return new CharFileReader(new DataInputStream(new BufferedInputStream(in)), Math.min(len, length - pos + 1));
+        }
+        catch (IOException e) {
+            throw contentNotAvailable(e);
+        }
+    }
+
+    @Override
+    public InputStream getAsciiStream() throws SQLException {
+        final Reader reader = getCharacterStream();
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                int c = reader.read();
+                return c < 0 ? -1 : (c < 128 ? c : '?');
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    @Override
+    public long position(String searchstr, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException("position() is not supported for CLOBs stored in temporary files");
+    }
+
+    @Override
+    public long position(Clob searchstr, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException("position() is not supported for CLOBs stored in temporary files");
+    }
+
+    @Override
+    public int setString(long pos, String str) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public int setString(long pos, String str, int offset, int len) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public OutputStream setAsciiStream(long pos) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public Writer setCharacterStream(long pos) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void truncate(long len) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void free() {
+        // the file is owned by the LobStore
+    }
+
+    private void checkRange(long pos, long len) throws SQLException {
+        if (pos < 1 || len < 0 || (pos > length + 1)) {
+            throw new SQLException("Invalid CLOB range: position " + pos + ", length " + len + " (CLOB length is " + length
+                    + ")");
+        }
+    }
+
+    private SQLException contentNotAvailable(IOException e) {
+        return new SQLException("CLOB content is not available anymore, the database service may have been closed", e);
+    }
+
+    private static SQLException readOnly() {
+        return new SQLFeatureNotSupportedException("CLOBs read from the database service are read-only");
+    }
+
+    static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of LOB file");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static final class CharFileReader extends Reader {
+
+        private final DataInputStream in;
+
+        private long remaining;
+
+        private CharFileReader(DataInputStream in, long remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(len, remaining);
+            for (int i = 0; i < count; i++) {
+                cbuf[off + i] = in.readChar();
+            }
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
@@ -15,10 +15,11 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.FloatColumn;
 
 public class FloatColumnImpl extends TableColumnImpl<Float> implements FloatColumn {
@@ -28,9 +29,26 @@ public class FloatColumnImpl extends TableColumnImpl<Float> implements FloatColu
     }
 
     @Override
-    public Float getValueFromRowSet(RowSet rs) throws SQLException {
-        float val = rs.getFloat(getColumnName());
+    public Float getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        float val = rs.getFloat(columnIndex);
         return rs.wasNull() ? null : Float.valueOf(val);
     }
 
+    @Override
+    public Float getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.isNull(row) ? null : Float.valueOf(values.getFloat(row));
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        float val = rs.getFloat(columnIndex);
+        if (rs.wasNull()) {
+            writeNull(out);
+        }
+        else {
+            out.writeByte(VALUE_TAG);
+            out.writeInt(Float.floatToIntBits(val));
+        }
+    }
+
 }
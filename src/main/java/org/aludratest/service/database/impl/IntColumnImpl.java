@@ -15,10 +15,11 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.IntColumn;
 
 public class IntColumnImpl extends TableColumnImpl<Integer> implements IntColumn {
@@ -28,9 +29,26 @@ public class IntColumnImpl extends TableColumnImpl<Integer> implements IntColumn
     }
 
     @Override
-    public Integer getValueFromRowSet(RowSet rs) throws SQLException {
-        int val = rs.getInt(getColumnName());
+    public Integer getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        int val = rs.getInt(columnIndex);
         return rs.wasNull() ? null : Integer.valueOf(val);
     }
 
+    @Override
+    public Integer getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.isNull(row) ? null : Integer.valueOf(values.getInt(row));
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        int val = rs.getInt(columnIndex);
+        if (rs.wasNull()) {
+            writeNull(out);
+        }
+        else {
+            out.writeByte(VALUE_TAG);
+            out.writeInt(val);
+        }
+    }
+
 }
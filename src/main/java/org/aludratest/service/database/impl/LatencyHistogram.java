@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Lock-free histogram of operation durations. Durations are counted in buckets of exponentially growing size: bucket
+ * <code>i</code> counts durations of less than <code>2<sup>i</sup></code> microseconds, which were not counted by bucket
+ * <code>i - 1</code>. Percentiles are therefore reported as the upper bound of their bucket, i.e. at most twice the exact
+ * value, but never more than the maximum duration. */
+final class LatencyHistogram {
+
+    /** Number of buckets; the last one counts all durations of more than about 3 days. */
+    private static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** Records an operation.
+     * 
+     * @param nanos Duration of the operation, in nanoseconds.
+     * @param success <code>false</code> if the operation has failed. */
+    void record(long nanos, boolean success) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        if (!success) {
+            errorCount.incrementAndGet();
+        }
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /** Creates a snapshot of the current statistics. As the counters are updated independently, the snapshot may be slightly
+     * inconsistent while operations are recorded concurrently.
+     * 
+     * @return A snapshot of the current statistics. */
+    OperationStatistics snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        double max = maxNanos.get() / 1000000.0;
+        return new OperationStatistics(total, errorCount.get(), totalNanos.get() / 1000000.0, max, Math.min(max,
+                percentile(counts, total, 0.5)), Math.min(max, percentile(counts, total, 0.9)), Math.min(max,
+                percentile(counts, total, 0.99)));
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        errorCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    /** Returns the upper bound, in milliseconds, of the bucket containing the given percentile. */
+    private static double percentile(long[] counts, long total, double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return (1L << (counts.length - 1)) / 1000.0;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+/** Copies LOB values out of a result set, so they remain accessible after the result set has been closed. LOBs up to a
+ * configurable size are copied into memory, larger ones into temporary files of the service. CLOB characters count as two bytes
+ * each. */
+public class LobStore {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long spillThreshold;
+
+    private final TempFiles tempFiles;
+
+    /** Creates a new LOB store.
+     * 
+     * @param spillThreshold Size, in bytes, above which LOBs are copied into temporary files. If negative, all LOBs are kept in
+     *            memory.
+     * @param tempFiles Registry to create temporary files with. */
+    public LobStore(long spillThreshold, TempFiles tempFiles) {
+        this.spillThreshold = spillThreshold;
+        this.tempFiles = tempFiles;
+    }
+
+    /** Creates a LOB store which keeps all LOBs in memory.
+     * 
+     * @return A LOB store which keeps all LOBs in memory. */
+    public static LobStore inMemory() {
+        return new LobStore(-1, null);
+    }
+
+    /** Copies the given CLOB.
+     * 
+     * @param clob CLOB to copy.
+     * 
+     * @return A copy of the CLOB, held in memory or in a temporary file.
+     * 
+     * @throws SQLException If the CLOB could not be read, or the temporary file could not be written. */
+    public Clob copy(Clob clob) throws SQLException {
+        if (spillThreshold < 0 || clob.length() * 2 <= spillThreshold) {
+            return new SerialClob(clob);
+        }
+
+        File file = createTempFile();
+        Reader reader = clob.getCharacterStream();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            long length = 0;
+            try {
+                char[] buf = new char[BUFFER_SIZE];
+                int read;
+                while ((read = reader.read(buf)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        out.writeChar(buf[i]);
+                    }
+                    length += read;
+                }
+            }
+            finally {
+                out.close();
+            }
+            return new FileClob(file, length);
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not copy CLOB to temporary file " + file, e);
+        }
+        finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /** Copies the given BLOB.
+     * 
+     * @param blob BLOB to copy.
+     * 
+     * @return A copy of the BLOB, held in memory or in a temporary file.
+     * 
+     * @throws SQLException If the BLOB could not be read, or the temporary file could not be written. */
+    public Blob copy(Blob blob) throws SQLException {
+        if (spillThreshold < 0 || blob.length() <= spillThreshold) {
+            return new SerialBlob(blob);
+        }
+
+        File file = createTempFile();
+        InputStream in = blob.getBinaryStream();
+        try {
+            OutputStream out = new FileOutputStream(file);
+            long length = 0;
+            try {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buf)) != -1) {
+                    out.write(buf, 0, read);
+                    length += read;
+                }
+            }
+            finally {
+                out.close();
+            }
+            return new FileBlob(file, length);
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not copy BLOB to temporary file " + file, e);
+        }
+        finally {
+            closeQuietly(in);
+        }
+    }
+
+    private File createTempFile() throws SQLException {
+        try {
+            return tempFiles.createTempFile("aludratest-lob-");
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not create temporary file for LOB", e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            }
+            catch (IOException e) { // NOPMD
+            }
+        }
+    }
+
+}
@@ -15,10 +15,11 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.LongColumn;
 
 public class LongColumnImpl extends TableColumnImpl<Long> implements LongColumn {
@@ -28,9 +29,26 @@ public class LongColumnImpl extends TableColumnImpl<Long> implements LongColumn
     }
 
     @Override
-    public Long getValueFromRowSet(RowSet rs) throws SQLException {
-        long value = rs.getLong(getColumnName());
+    public Long getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        long value = rs.getLong(columnIndex);
         return rs.wasNull() ? null : Long.valueOf(value);
     }
 
+    @Override
+    public Long getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.isNull(row) ? null : Long.valueOf(values.getLong(row));
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        long value = rs.getLong(columnIndex);
+        if (rs.wasNull()) {
+            writeNull(out);
+        }
+        else {
+            out.writeByte(VALUE_TAG);
+            out.writeLong(value);
+        }
+    }
+
 }
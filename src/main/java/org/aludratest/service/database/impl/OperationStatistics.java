@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.beans.ConstructorProperties;
+
+/** Snapshot of the statistics of one kind of database operation, as exposed by {@link DatabaseServiceMXBean}. All durations
+ * are in milliseconds; percentiles are approximated by the upper bound of a histogram bucket. */
+public class OperationStatistics {
+
+    private final long count;
+
+    private final long errorCount;
+
+    private final double totalTime;
+
+    private final double maxTime;
+
+    private final double medianTime;
+
+    private final double percentile90Time;
+
+    private final double percentile99Time;
+
+    @ConstructorProperties({ "count", "errorCount", "totalTime", "maxTime", "medianTime", "percentile90Time",
+            "percentile99Time" })
+    public OperationStatistics(long count, long errorCount, double totalTime, double maxTime, double medianTime,
+            double percentile90Time, double percentile99Time) {
+        this.count = count;
+        this.errorCount = errorCount;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+        this.medianTime = medianTime;
+        this.percentile90Time = percentile90Time;
+        this.percentile99Time = percentile99Time;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    public double getMeanTime() {
+        return count == 0 ? 0 : totalTime / count;
+    }
+
+    public double getMaxTime() {
+        return maxTime;
+    }
+
+    public double getMedianTime() {
+        return medianTime;
+    }
+
+    public double getPercentile90Time() {
+        return percentile90Time;
+    }
+
+    public double getPercentile99Time() {
+        return percentile99Time;
+    }
+
+    @Override
+    public String toString() {
+        return count + " operations (" + errorCount + " failed), mean " + getMeanTime() + " ms, p50 " + medianTime
+                + " ms, p90 " + percentile90Time + " ms, p99 " + percentile99Time + " ms, max " + maxTime + " ms";
+    }
+
+}
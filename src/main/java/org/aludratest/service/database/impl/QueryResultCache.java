@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.aludratest.service.database.DataRows;
+
+/** Cache of query results, keyed by SQL string and parameters. Entries are evicted when they are older than the configured
+ * time to live, or, least recently used first, when the cache is full. Entries are invalidated when a statement modifies one of
+ * the tables they have been read from. <br>
+ * Only modifications made through the database service are noticed, so results of queries on views, or on tables modified by
+ * triggers or other database clients, may be outdated until they expire. Instances are thread safe. */
+public class QueryResultCache {
+
+    private final int maxSize;
+
+    private final long timeToLive;
+
+    private final Map<Key, CachedResult> entries;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    private long invalidationCount;
+
+    /** Incremented on each invalidation, so results read while an invalidation happened are not cached. */
+    private long generation;
+
+    /** Creates a new result cache.
+     * 
+     * @param maxSize Maximum number of cached results.
+     * @param timeToLive Time, in milliseconds, after which a cached result expires. If 0 or less, results do not expire. */
+    public QueryResultCache(final int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                if (size() > QueryResultCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns the cached result of the given query.
+     * 
+     * @param sql SQL query.
+     * @param parameters Parameters of the query.
+     * 
+     * @return The cached result, or <code>null</code> if no result is cached, or the cached result has expired. */
+    public synchronized DataRows get(String sql, Object[] parameters) {
+        Key key = new Key(sql, parameters);
+        CachedResult entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            entries.remove(key);
+            evictionCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.rows;
+    }
+
+    /** Returns the current generation of the cache, which is to be passed to {@link #put(String, Object[], Set, DataRows, long)}
+     * and must be read before the query is executed.
+     * 
+     * @return The current generation of the cache. */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /** Caches the result of the given query, unless results have been invalidated since the given generation, as the result may
+     * have been read before the invalidating modification.
+     * 
+     * @param sql SQL query.
+     * @param parameters Parameters of the query.
+     * @param tables Tables the query reads from, as determined by {@link StatementClassifier#getReferencedTables(String)}, or
+     *            <code>null</code> if unknown.
+     * @param rows Result of the query. Must not be modifiable.
+     * @param generation Generation of the cache, as returned by {@link #getGeneration()} before the query was executed. */
+    public synchronized void put(String sql, Object[] parameters, Set<String> tables, DataRows rows, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        entries.put(new Key(sql, parameters), new CachedResult(rows, tables, System.currentTimeMillis()));
+    }
+
+    /** Removes all results which have been read from any of the given tables. Results whose tables are unknown are always
+     * removed.
+     * 
+     * @param tables Modified tables, or <code>null</code> if unknown, which removes all results. */
+    public synchronized void invalidate(Set<String> tables) {
+        if (tables == null) {
+            clear();
+            return;
+        }
+        generation++;
+        Iterator<CachedResult> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            Set<String> entryTables = iter.next().tables;
+            if (entryTables == null || !Collections.disjoint(entryTables, tables)) {
+                iter.remove();
+                invalidationCount++;
+            }
+        }
+    }
+
+    /** Removes all results. */
+    public synchronized void clear() {
+        generation++;
+        invalidationCount += entries.size();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /** Returns the number of results removed because they expired or the cache was full.
+     * 
+     * @return The number of results removed because they expired or the cache was full. */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /** Returns the number of results removed because their tables have been modified.
+     * 
+     * @return The number of results removed because their tables have been modified. */
+    public synchronized long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long requests = hitCount + missCount;
+        return "result cache: " + entries.size() + " of " + maxSize + " results, " + hitCount + " hits, " + missCount
+                + " misses (hit rate " + (requests == 0 ? 0 : hitCount * 100 / requests) + "%), " + evictionCount
+                + " evictions, " + invalidationCount + " invalidations";
+    }
+
+    private boolean isExpired(CachedResult entry) {
+        return timeToLive > 0 && System.currentTimeMillis() - entry.createdAt > timeToLive;
+    }
+
+    private static final class Key {
+
+        private final String sql;
+
+        private final Object[] parameters;
+
+        private final int hashCode;
+
+        private Key(String sql, Object[] parameters) {
+            this.sql = sql;
+            this.parameters = parameters == null ? new Object[0] : parameters.clone();
+            this.hashCode = sql.hashCode() * 31 + Arrays.deepHashCode(this.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return sql.equals(other.sql) && Arrays.deepEquals(parameters, other.parameters);
+        }
+    }
+
+    private static final class CachedResult {
+
+        private final DataRows rows;
+
+        private final Set<String> tables;
+
+        private final long createdAt;
+
+        private CachedResult(DataRows rows, Set<String> tables, long createdAt) {
+            this.rows = rows;
+            this.tables = tables;
+            this.createdAt = createdAt;
+        }
+    }
+
+}
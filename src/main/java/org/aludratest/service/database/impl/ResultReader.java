@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/** Reads complete query results. Rows are kept in memory as a {@link ColumnarResult} until their estimated size exceeds the
+ * memory budget; from then on, all rows are written to a temporary file and read back as {@link SpilledDataRowsImpl}. */
+public final class ResultReader {
+
+    private ResultReader() {
+    }
+
+    /** Reads all remaining rows of the given result set. The result set is not closed by this method.
+     * 
+     * @param rs Result set to read.
+     * @param lobStore Store to copy LOB values to.
+     * @param tempFiles Registry to create the temporary file with, if the memory budget is exceeded.
+     * @param memoryBudget Estimated number of bytes the rows may use in memory. If negative, all rows are kept in memory.
+     * 
+     * @return The rows of the result set.
+     * 
+     * @throws SQLException If the result set could not be read, or the temporary file could not be written. */
+    public static AbstractDataRows read(ResultSet rs, LobStore lobStore, TempFiles tempFiles, long memoryBudget)
+            throws SQLException {
+        if (memoryBudget < 0) {
+            // still estimate the size, for the service statistics
+            memoryBudget = Long.MAX_VALUE;
+        }
+
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        String[] labels = new String[columnCount];
+        String[] names = new String[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        ColumnValues[] columns = new ColumnValues[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = meta.getColumnLabel(i + 1);
+            names[i] = meta.getColumnName(i + 1);
+            sqlTypes[i] = meta.getColumnType(i + 1);
+            columns[i] = ColumnValues.forSqlType(sqlTypes[i], lobStore);
+        }
+
+        long estimatedSize = 0;
+        int rowCount = 0;
+        while (estimatedSize <= memoryBudget) {
+            if (!rs.next()) {
+                for (ColumnValues column : columns) {
+                    column.trimToSize();
+                }
+                return new DataRowsImpl(new ColumnarResult(labels, names, columns, rowCount), estimatedSize);
+            }
+            for (int i = 0; i < columnCount; i++) {
+                columns[i].read(rs, i + 1);
+                estimatedSize += columns[i].estimateSize(rowCount);
+            }
+            rowCount++;
+        }
+
+        // budget exceeded: move the rows read so far and all remaining rows to disk. Complete the current block first, as only
+        // the last block may be smaller than the block size.
+        boolean more = true;
+        while (rowCount % SpilledDataRowsImpl.BLOCK_SIZE != 0 && (more = rs.next())) {
+            for (int i = 0; i < columnCount; i++) {
+                columns[i].read(rs, i + 1);
+            }
+            rowCount++;
+        }
+
+        SpilledDataRowsImpl.Writer writer = null;
+        boolean success = false;
+        try {
+            writer = new SpilledDataRowsImpl.Writer(labels, names, sqlTypes, tempFiles);
+            for (int row = 0; row < rowCount; row += SpilledDataRowsImpl.BLOCK_SIZE) {
+                writer.writeBlock(columns, row, Math.min(SpilledDataRowsImpl.BLOCK_SIZE, rowCount - row));
+            }
+
+            while (more) {
+                for (int i = 0; i < columnCount; i++) {
+                    columns[i] = ColumnValues.forSqlType(sqlTypes[i], lobStore);
+                }
+                int blockRows = 0;
+                while (blockRows < SpilledDataRowsImpl.BLOCK_SIZE && (more = rs.next())) {
+                    for (int i = 0; i < columnCount; i++) {
+                        columns[i].read(rs, i + 1);
+                    }
+                    blockRows++;
+                }
+                if (blockRows > 0) {
+                    writer.writeBlock(columns, 0, blockRows);
+                }
+            }
+            SpilledDataRowsImpl rows = writer.finish();
+            success = true;
+            return rows;
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not write query result to temporary file", e);
+        }
+        finally {
+            if (!success && writer != null) {
+                writer.abort();
+            }
+        }
+    }
+
+}
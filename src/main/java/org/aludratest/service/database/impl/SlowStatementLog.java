@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Logs statements whose execution takes longer than the configured threshold, together with their parameters, the number of
+ * affected rows and the calling test code. If plan capturing is enabled, the execution plan of each slow statement is captured
+ * once, on the next execution of the same SQL, via {@link SqlDialect#startPlanCapture(java.sql.Connection)}. Instances are
+ * thread safe. */
+public class SlowStatementLog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SlowStatementLog.class);
+
+    /** Maximum number of SQL strings to remember the plan capture state of. */
+    private static final int MAX_PLAN_ENTRIES = 1000;
+
+    /** Maximum number of characters of a string parameter to log. */
+    private static final int MAX_PARAMETER_LENGTH = 100;
+
+    private final long thresholdNanos;
+
+    private final boolean capturePlans;
+
+    private final AtomicLong slowCount = new AtomicLong();
+
+    private final AtomicLong capturedPlanCount = new AtomicLong();
+
+    /** Plan capture state per SQL string: <code>false</code> if the plan should be captured on the next execution,
+     * <code>true</code> if it has been captured already. */
+    private final Map<String, Boolean> plans = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_PLAN_ENTRIES;
+        }
+    };
+
+    /** Creates a new slow statement log.
+     * 
+     * @param thresholdMillis Execution time, in milliseconds, from which on statements are logged. If negative, no statements
+     *            are logged.
+     * @param capturePlans If <code>true</code>, the execution plans of slow statements are captured. */
+    public SlowStatementLog(long thresholdMillis, boolean capturePlans) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.capturePlans = capturePlans;
+    }
+
+    /** Records an executed statement, and logs it if it has been slow.
+     * 
+     * @param sql SQL of the statement.
+     * @param parameters Parameters of the statement, or <code>null</code> if they are not available, e.g. for batches.
+     * @param startNanos Start time of the execution, as returned by {@link System#nanoTime()}.
+     * @param rows Number of fetched or affected rows, or -1 if the statement has failed or the number is unknown.
+     * 
+     * @return <code>true</code> if the statement has been slow, <code>false</code> otherwise. */
+    public boolean record(String sql, Object[] parameters, long startNanos, long rows) {
+        long elapsed = System.nanoTime() - startNanos;
+        if (thresholdNanos < 0 || elapsed < thresholdNanos) {
+            return false;
+        }
+        slowCount.incrementAndGet();
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Slow statement (" + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, "
+                    + (rows < 0 ? "row count unknown" : rows + " row(s)") + ", called from " + findCaller() + "): " + sql
+                    + " with parameters " + formatParameters(parameters));
+        }
+        if (capturePlans) {
+            synchronized (plans) {
+                if (!plans.containsKey(sql)) {
+                    plans.put(sql, Boolean.FALSE);
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Checks if the execution plan of the given SQL should be captured on its current execution.
+     * 
+     * @param sql SQL about to be executed.
+     * 
+     * @return <code>true</code> if the plan should be captured, <code>false</code> otherwise. */
+    public boolean isPlanWanted(String sql) {
+        if (!capturePlans) {
+            return false;
+        }
+        synchronized (plans) {
+            return Boolean.FALSE.equals(plans.get(sql));
+        }
+    }
+
+    /** Logs the captured execution plan of the given SQL. The plan of this SQL is not captured again.
+     * 
+     * @param sql Executed SQL.
+     * @param plan Captured plan, or <code>null</code> if the plan could not be captured. */
+    public void planCaptured(String sql, String plan) {
+        synchronized (plans) {
+            plans.put(sql, Boolean.TRUE);
+        }
+        if (plan != null) {
+            capturedPlanCount.incrementAndGet();
+            LOG.info("Execution plan of slow statement " + sql + ":\n" + plan);
+        }
+    }
+
+    public long getSlowStatementCount() {
+        return slowCount.get();
+    }
+
+    /** Returns the number of execution plans which have been captured and logged.
+     * 
+     * @return The number of execution plans which have been captured and logged. */
+    public long getCapturedPlanCount() {
+        return capturedPlanCount.get();
+    }
+
+    /** Determines the test code calling the database service, i.e. the innermost stack frame outside of the JDK and AludraTest,
+     * where classes named <code>...Test</code> are not considered part of AludraTest. */
+    static String findCaller() {
+        StackTraceElement[] trace = new Throwable().getStackTrace();
+        for (StackTraceElement element : trace) {
+            String className = element.getClassName();
+            if (className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("sun.")
+                    || className.startsWith("com.sun.") || className.startsWith("jdk.") || className.contains("$Proxy")) {
+                continue;
+            }
+            if (className.startsWith("org.aludratest.") && !className.endsWith("Test")) {
+                continue;
+            }
+            return element.toString();
+        }
+        return "unknown";
+    }
+
+    static String formatParameters(Object[] parameters) {
+        if (parameters == null) {
+            return "(not available)";
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            Object value = parameters[i];
+            if (value == null) {
+                sb.append("NULL");
+            }
+            else if (value instanceof String) {
+                String s = (String) value;
+                if (s.length() > MAX_PARAMETER_LENGTH) {
+                    s = s.substring(0, MAX_PARAMETER_LENGTH) + "...";
+                }
+                sb.append('\'').append(s).append('\'');
+            }
+            else if (value instanceof Clob || value instanceof Blob || value instanceof byte[]
+                    || value instanceof InputStream || value instanceof Reader) {
+                sb.append('<').append(value.getClass().getSimpleName()).append('>');
+            }
+            else {
+                sb.append(value);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.aludratest.exception.AutomationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Compares two sequences of rows which are both sorted by their key columns, by merging them like a sort-merge join. Only the
+ * current row of each sequence is held in memory, so arbitrarily large tables can be compared, e.g. the source and target of a
+ * data migration. Differences are logged as they are found, and the comparison stops after a maximum number of mismatches. <br>
+ * Key values are compared by their natural Java ordering, with <code>NULL</code> values last. The rows must be sorted
+ * consistently with this ordering, which e.g. requires a binary collation for string keys. Values are normalized as by
+ * {@link DataRowsComparison}. */
+final class SortedRowsComparison {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SortedRowsComparison.class);
+
+    private final String[] columnNames;
+
+    private final int[] keyIndexes;
+
+    private final int maxMismatches;
+
+    private int expectedCount;
+
+    private int actualCount;
+
+    private int missingCount;
+
+    private int extraCount;
+
+    private int changedCount;
+
+    private boolean stopped;
+
+    private long elapsedNanos;
+
+    private final List<String> missingRows = new ArrayList<String>();
+
+    private final List<String> extraRows = new ArrayList<String>();
+
+    private final List<String> changedRows = new ArrayList<String>();
+
+    /** Creates a new comparison.
+     * 
+     * @param columnNames Names of the compared columns, in the order of the values returned by the row sources.
+     * @param keyIndexes Indexes of the columns identifying a row, which both row sources are sorted by. Must not be empty.
+     * @param maxMismatches Number of mismatching rows after which the comparison stops. If 0, the comparison never stops
+     *            early. */
+    SortedRowsComparison(String[] columnNames, int[] keyIndexes, int maxMismatches) {
+        if (keyIndexes.length == 0) {
+            throw new IllegalArgumentException("Sorted rows can only be compared by key columns");
+        }
+        this.columnNames = columnNames;
+        this.keyIndexes = keyIndexes;
+        this.maxMismatches = maxMismatches;
+    }
+
+    /** Merges the rows of both sources until both are exhausted, or the maximum number of mismatches has been reached.
+     * 
+     * @param expected Source of the expected rows.
+     * @param actual Source of the actual rows.
+     * 
+     * @throws SQLException If a row could not be read.
+     * @throws AutomationException If the rows of a source are not sorted by their key columns. */
+    void run(RowSource expected, RowSource actual) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Object[] expectedRow = nextRow(expected, null, true);
+            Object[] actualRow = nextRow(actual, null, false);
+            while ((expectedRow != null || actualRow != null) && !stopped) {
+                int cmp = expectedRow == null ? 1 : actualRow == null ? -1 : compareKeys(expectedRow, actualRow);
+                if (cmp < 0) {
+                    missingCount++;
+                    mismatch(missingRows, "Missing row " + expectedCount + ": "
+                            + DataRowsComparison.formatRow(columnNames, expectedRow));
+                }
+                else if (cmp > 0) {
+                    extraCount++;
+                    mismatch(extraRows, "Extra row " + actualCount + ": " + DataRowsComparison.formatRow(columnNames, actualRow));
+                }
+                else if (!Arrays.equals(expectedRow, actualRow)) {
+                    changedCount++;
+                    mismatch(changedRows, DataRowsComparison.describeChange(columnNames, actualCount, expectedCount, expectedRow,
+                            actualRow));
+                }
+                // no further rows are read once the comparison has stopped
+                if (!stopped && cmp <= 0) {
+                    expectedRow = nextRow(expected, expectedRow, true);
+                }
+                if (!stopped && cmp >= 0) {
+                    actualRow = nextRow(actual, actualRow, false);
+                }
+            }
+        }
+        finally {
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /** Returns whether all rows compared match.
+     * 
+     * @return <code>true</code> if no differences have been found, <code>false</code> otherwise. */
+    boolean isEqual() {
+        return missingCount == 0 && extraCount == 0 && changedCount == 0;
+    }
+
+    /** Describes the differences found.
+     * 
+     * @return A description of the differences, or <code>null</code> if the rows are equal. */
+    String getReport() {
+        if (isEqual()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Data rows differ: ").append(missingCount).append(" missing, ").append(extraCount).append(" extra, ")
+                .append(changedCount).append(" changed row(s)");
+        if (stopped) {
+            sb.append("; comparison stopped after ").append(maxMismatches).append(" mismatches");
+        }
+        DataRowsComparison.appendRows(sb, missingRows, missingCount);
+        DataRowsComparison.appendRows(sb, extraRows, extraCount);
+        DataRowsComparison.appendRows(sb, changedRows, changedCount);
+        sb.append('\n').append(getThroughput());
+        return sb.toString();
+    }
+
+    /** Describes the number of rows compared, and the time taken.
+     * 
+     * @return A description of the throughput of the comparison. */
+    String getThroughput() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        long rowsPerSecond = elapsedNanos == 0 ? 0 : (long) ((expectedCount + actualCount) * 1e9 / elapsedNanos);
+        return "Compared " + expectedCount + " expected and " + actualCount + " actual rows in " + millis + " ms ("
+                + rowsPerSecond + " rows/s)";
+    }
+
+    int getExpectedCount() {
+        return expectedCount;
+    }
+
+    int getActualCount() {
+        return actualCount;
+    }
+
+    private Object[] nextRow(RowSource source, Object[] previous, boolean expected) throws SQLException {
+        Object[] row = source.nextRow();
+        if (row == null) {
+            return null;
+        }
+        DataRowsComparison.normalize(row);
+        int rowNum = expected ? ++expectedCount : ++actualCount;
+        if (previous != null && compareKeys(previous, row) > 0) {
+            throw new AutomationException((expected ? "Expected" : "Actual") + " rows are not sorted by their key columns: row "
+                    + rowNum + " " + DataRowsComparison.formatRow(columnNames, row) + " follows "
+                    + DataRowsComparison.formatRow(columnNames, previous));
+        }
+        return row;
+    }
+
+    private void mismatch(List<String> rows, String description) {
+        LOG.info(description);
+        DataRowsComparison.report(rows, description);
+        if (maxMismatches > 0 && missingCount + extraCount + changedCount >= maxMismatches) {
+            stopped = true;
+        }
+    }
+
+    private int compareKeys(Object[] row1, Object[] row2) {
+        for (int index : keyIndexes) {
+            int cmp = compareValues(row1[index], row2[index]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Compares two normalized key values by their natural ordering, with <code>null</code> values last.
+     * 
+     * @param value1 First value.
+     * @param value2 Second value.
+     * 
+     * @return A negative number, zero, or a positive number if the first value is less than, equal to, or greater than the
+     *         second. */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static int compareValues(Object value1, Object value2) {
+        if (value1 == null) {
+            return value2 == null ? 0 : 1;
+        }
+        if (value2 == null) {
+            return -1;
+        }
+        if (value1 instanceof Number && value2 instanceof Number && value1.getClass() != value2.getClass()) {
+            // only infinite and NaN values are still floating point numbers after normalization
+            if (value1 instanceof Double || value2 instanceof Double) {
+                return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+            }
+            return toBigDecimal((Number) value1).compareTo(toBigDecimal((Number) value2));
+        }
+        if (!(value1 instanceof Comparable)) {
+            throw new AutomationException("Key values of type " + value1.getClass().getName() + " cannot be sorted");
+        }
+        try {
+            return ((Comparable) value1).compareTo(value2);
+        }
+        catch (ClassCastException e) {
+            throw new AutomationException("Key values " + DataRowsComparison.formatValue(value1) + " and "
+                    + DataRowsComparison.formatValue(value2) + " cannot be compared", e);
+        }
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        if (number instanceof Double || number instanceof Float) {
+            return new BigDecimal(number.doubleValue());
+        }
+        return BigDecimal.valueOf(number.longValue());
+    }
+
+    /** Source of rows which are sorted by their key columns. */
+    interface RowSource {
+
+        /** Reads the next row.
+         * 
+         * @return The values of the next row, in the order of the compared columns, or <code>null</code> if there are no more
+         *         rows. The array is normalized in place.
+         * 
+         * @throws SQLException If the row could not be read. */
+        Object[] nextRow() throws SQLException;
+
+    }
+
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.service.database.DataRow;
+
+/** Query result which has been written to a temporary file because it exceeded the configured memory budget. Rows are stored
+ * in blocks of {@value #BLOCK_SIZE}, using the binary encoding of {@link ColumnValues}, and read back through memory-mapped
+ * segments of the file. Random access decodes the block containing the requested row; the most recently decoded block is kept,
+ * so sequential access decodes each block only once. <br>
+ * LOB values and other values without binary encoding stay in memory, LOBs may have been moved to temporary files of their own
+ * by the {@link LobStore}. The file is deleted when the database service is closed. */
+public class SpilledDataRowsImpl extends AbstractDataRows {
+
+    /** Number of rows per block. */
+    static final int BLOCK_SIZE = 64;
+
+    /** Maximum size of a memory-mapped segment. Blocks never span two segments. */
+    static final int SEGMENT_SIZE = 1 << 28;
+
+    private final String[] columnLabels;
+
+    private final ColumnIndexMap columnIndexes;
+
+    private final int[] sqlTypes;
+
+    private final ByteBuffer[] segments;
+
+    private final int[] blockSegments;
+
+    private final int[] blockOffsets;
+
+    private final List<Object> references;
+
+    private final int rowCount;
+
+    private int cachedBlock = -1;
+
+    private ColumnValues[] cachedColumns;
+
+    private SpilledDataRowsImpl(String[] columnLabels, String[] columnNames, int[] sqlTypes, ByteBuffer[] segments,
+            int[] blockSegments, int[] blockOffsets, List<Object> references, int rowCount) {
+        this.columnLabels = columnLabels;
+        this.columnIndexes = new ColumnIndexMap(columnLabels, columnNames);
+        this.sqlTypes = sqlTypes;
+        this.segments = segments;
+        this.blockSegments = blockSegments;
+        this.blockOffsets = blockOffsets;
+        this.references = references;
+        this.rowCount = rowCount;
+    }
+
+    @Override
+    public Iterator<DataRow> iterator() {
+        return new Iterator<DataRow>() {
+            private int rowNum;
+
+            @Override
+            public boolean hasNext() {
+                return rowNum < rowCount;
+            }
+
+            @Override
+            public DataRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new DataRowImpl(++rowNum);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public long getMaterializedSize() {
+        long size = 0;
+        for (ByteBuffer segment : segments) {
+            size += segment.capacity();
+        }
+        return size;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public <T> T getValue(int rowNum, TableColumnImpl<T> column) throws SQLException {
+        if (!isAccessible(rowNum)) {
+            throw new AutomationException("Row number out of bounds: " + rowNum + " (only " + rowCount
+                    + " row(s) in query result)");
+        }
+        int columnIndex = columnIndexes.getColumnIndex(column);
+        ColumnValues values;
+        synchronized (this) {
+            values = getBlock((rowNum - 1) / BLOCK_SIZE)[columnIndex - 1];
+        }
+        return column.getValueFromColumn(values, (rowNum - 1) % BLOCK_SIZE);
+    }
+
+    @Override
+    protected boolean isAccessible(int rowNum) {
+        return rowNum >= 1 && rowNum <= rowCount;
+    }
+
+    /** Returns all values of the given column as <code>int</code>s, <code>NULL</code> values as <code>0</code>. The blocks are
+     * decoded in order, and their values copied into the returned array.
+     * 
+     * @param column Column to return the values of.
+     * 
+     * @return All values of the column, the value of row 1 at index 0.
+     * 
+     * @throws SQLException If a value cannot be converted to an <code>int</code>. */
+    public synchronized int[] getInts(TableColumnImpl<?> column) throws SQLException {
+        int columnIndex = columnIndexes.getColumnIndex(column);
+        int[] result = new int[rowCount];
+        for (int block = 0; block * BLOCK_SIZE < rowCount; block++) {
+            int[] values = getBlock(block)[columnIndex - 1].getInts();
+            System.arraycopy(values, 0, result, block * BLOCK_SIZE, values.length);
+        }
+        return result;
+    }
+
+    /** Returns all values of the given column as <code>long</code>s, <code>NULL</code> values as <code>0</code>. See
+     * {@link #getInts(TableColumnImpl)} for details.
+     * 
+     * @param column Column to return the values of.
+     * 
+     * @return All values of the column, the value of row 1 at index 0.
+     * 
+     * @throws SQLException If a value cannot be converted to a <code>long</code>. */
+    public synchronized long[] getLongs(TableColumnImpl<?> column) throws SQLException {
+        int columnIndex = columnIndexes.getColumnIndex(column);
+        long[] result = new long[rowCount];
+        for (int block = 0; block * BLOCK_SIZE < rowCount; block++) {
+            long[] values = getBlock(block)[columnIndex - 1].getLongs();
+            System.arraycopy(values, 0, result, block * BLOCK_SIZE, values.length);
+        }
+        return result;
+    }
+
+    /** Returns all values of the given column as <code>double</code>s, <code>NULL</code> values as <code>0</code>. See
+     * {@link #getInts(TableColumnImpl)} for details.
+     * 
+     * @param column Column to return the values of.
+     * 
+     * @return All values of the column, the value of row 1 at index 0.
+     * 
+     * @throws SQLException If a value cannot be converted to a <code>double</code>. */
+    public synchronized double[] getDoubles(TableColumnImpl<?> column) throws SQLException {
+        int columnIndex = columnIndexes.getColumnIndex(column);
+        double[] result = new double[rowCount];
+        for (int block = 0; block * BLOCK_SIZE < rowCount; block++) {
+            double[] values = getBlock(block)[columnIndex - 1].getDoubles();
+            System.arraycopy(values, 0, result, block * BLOCK_SIZE, values.length);
+        }
+        return result;
+    }
+
+    /** Returns which values of the given column are <code>NULL</code>.
+     * 
+     * @param column Column to check.
+     * 
+     * @return A bit set with the bits of all <code>NULL</code> values set, using 0-based row indexes. */
+    public synchronized BitSet getNullMask(TableColumnImpl<?> column) {
+        int columnIndex = columnIndexes.getColumnIndex(column);
+        BitSet result = new BitSet(rowCount);
+        for (int block = 0; block * BLOCK_SIZE < rowCount; block++) {
+            BitSet nulls = getBlock(block)[columnIndex - 1].getNullMask();
+            for (int i = nulls.nextSetBit(0); i >= 0; i = nulls.nextSetBit(i + 1)) {
+                result.set(block * BLOCK_SIZE + i);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return rowCount + " data row(s) with columns " + Arrays.toString(columnLabels) + " (spilled to disk)";
+    }
+
+    private ColumnValues[] getBlock(int block) {
+        if (block != cachedBlock) {
+            ByteBuffer buf = segments[blockSegments[block]].duplicate();
+            buf.position(blockOffsets[block]);
+            int rows = Math.min(BLOCK_SIZE, rowCount - block * BLOCK_SIZE);
+            int nullMaskSize = nullMaskSize(sqlTypes.length);
+            byte[] nullMask = new byte[nullMaskSize];
+
+            ColumnValues[] columns = new ColumnValues[sqlTypes.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = ColumnValues.forSqlType(sqlTypes[i]);
+            }
+            for (int r = 0; r < rows; r++) {
+                buf.get(nullMask);
+                for (int i = 0; i < columns.length; i++) {
+                    if ((nullMask[i >> 3] & (1 << (i & 7))) != 0) {
+                        columns[i].appendNull();
+                    }
+                    else {
+                        columns[i].appendEncoded(buf, references);
+                    }
+                }
+            }
+            cachedColumns = columns;
+            cachedBlock = block;
+        }
+        return cachedColumns;
+    }
+
+    private static int nullMaskSize(int columnCount) {
+        return (columnCount + 7) >> 3;
+    }
+
+    /** Writes rows into a temporary file, and creates the {@link SpilledDataRowsImpl} reading them. */
+    static final class Writer {
+
+        private final String[] columnLabels;
+
+        private final String[] columnNames;
+
+        private final int[] sqlTypes;
+
+        private final File file;
+
+        private final OutputStream out;
+
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream blockOut = new DataOutputStream(blockBytes);
+
+        private final List<Object> references = new ArrayList<Object>();
+
+        private final List<Long> segmentStarts = new ArrayList<Long>();
+
+        private int[] blockSegments = new int[16];
+
+        private int[] blockOffsets = new int[16];
+
+        private int blockCount;
+
+        private int rowCount;
+
+        private long filePos;
+
+        Writer(String[] columnLabels, String[] columnNames, int[] sqlTypes, TempFiles tempFiles) throws IOException {
+            this.columnLabels = columnLabels;
+            this.columnNames = columnNames;
+            this.sqlTypes = sqlTypes;
+            this.file = tempFiles.createTempFile("aludratest-rows-");
+            this.out = new BufferedOutputStream(new FileOutputStream(file), 65536);
+            segmentStarts.add(Long.valueOf(0));
+        }
+
+        /** Writes the given rows of the given columns as one block. Only the last block may have less than
+         * {@value SpilledDataRowsImpl#BLOCK_SIZE} rows.
+         * 
+         * @param columns Columns to write.
+         * @param fromRow 0-based index of the first row to write.
+         * @param count Number of rows to write, at most {@value SpilledDataRowsImpl#BLOCK_SIZE}. */
+        void writeBlock(ColumnValues[] columns, int fromRow, int count) throws IOException {
+            blockBytes.reset();
+            byte[] nullMask = new byte[nullMaskSize(columns.length)];
+            for (int r = fromRow; r < fromRow + count; r++) {
+                Arrays.fill(nullMask, (byte) 0);
+                for (int i = 0; i < columns.length; i++) {
+                    if (columns[i].isNull(r)) {
+                        nullMask[i >> 3] |= 1 << (i & 7);
+                    }
+                }
+                blockOut.write(nullMask);
+                for (int i = 0; i < columns.length; i++) {
+                    if (!columns[i].isNull(r)) {
+                        columns[i].encodeValue(r, blockOut, references);
+                    }
+                }
+            }
+            blockOut.flush();
+
+            int length = blockBytes.size();
+            long segmentStart = segmentStarts.get(segmentStarts.size() - 1).longValue();
+            if (filePos > segmentStart && filePos - segmentStart + length > SEGMENT_SIZE) {
+                segmentStart = filePos;
+                segmentStarts.add(Long.valueOf(segmentStart));
+            }
+            if (blockCount == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                blockSegments = Arrays.copyOf(blockSegments, blockCount * 2);
+            }
+            blockSegments[blockCount] = segmentStarts.size() - 1;
+            blockOffsets[blockCount] = (int) (filePos - segmentStart);
+            blockCount++;
+            blockBytes.writeTo(out);
+            filePos += length;
+            rowCount += count;
+        }
+
+        /** Finishes writing, and maps the written file into memory.
+         * 
+         * @return Data rows reading the written file. */
+        SpilledDataRowsImpl finish() throws IOException {
+            out.close();
+            ByteBuffer[] segments = new ByteBuffer[segmentStarts.size()];
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                for (int i = 0; i < segments.length; i++) {
+                    long start = segmentStarts.get(i).longValue();
+                    long end = i + 1 < segments.length ? segmentStarts.get(i + 1).longValue() : filePos;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                }
+            }
+            finally {
+                // mappings stay valid after the channel has been closed
+                raf.close();
+            }
+            return new SpilledDataRowsImpl(columnLabels, columnNames, sqlTypes, segments, Arrays.copyOf(blockSegments,
+                    blockCount), Arrays.copyOf(blockOffsets, blockCount), references, rowCount);
+        }
+
+        /** Closes the file without creating data rows, e.g. after an error. The file is deleted with the other temporary files
+         * of the service. */
+        void abort() {
+            try {
+                out.close();
+            }
+            catch (IOException e) { // NOPMD
+            }
+        }
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.File;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/** Database specific SQL syntax which cannot be expressed through plain JDBC. The dialect is detected from the JDBC URL, unless
+ * configured explicitly via the <code>sql.dialect</code> property. */
+public enum SqlDialect {
+
+    /** Unknown database. No SQL rewriting is performed. */
+    GENERIC("") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            return null;
+        }
+    },
+
+    DERBY("jdbc:derby:") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            return fetchFirst(query, maxRows);
+        }
+
+        @Override
+        boolean startPlanCapture(Connection connection) throws SQLException {
+            execute(connection, "CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+            return true;
+        }
+
+        @Override
+        String finishPlanCapture(Connection connection) throws SQLException {
+            Statement stmt = connection.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()");
+                return rs.next() ? rs.getString(1) : null;
+            }
+            finally {
+                stmt.close();
+                execute(connection, "CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(0)");
+            }
+        }
+
+        @Override
+        boolean backupDatabase(Connection connection, File directory) throws SQLException {
+            // creates a copy of the database directory, named like the database, within the given directory
+            CallableStatement stmt = connection.prepareCall("CALL SYSCS_UTIL.SYSCS_BACKUP_DATABASE(?)");
+            try {
+                stmt.setString(1, directory.getAbsolutePath());
+                stmt.execute();
+            }
+            finally {
+                stmt.close();
+            }
+            return true;
+        }
+
+        @Override
+        boolean restoreDatabase(DatabaseConfiguration config, File directory) throws SQLException {
+            File[] backups = directory.listFiles();
+            if (backups == null || backups.length != 1 || !backups[0].isDirectory()) {
+                throw new SQLException("No database backup found in " + directory);
+            }
+            // strip connection attributes like create=true
+            String url = config.getJdbcUrl();
+            if (url.indexOf(';') > 0) {
+                url = url.substring(0, url.indexOf(';'));
+            }
+            try {
+                ConnectionPool.openConnection(config, url + ";shutdown=true").close();
+            }
+            catch (SQLException e) {
+                // Derby signals a successful shutdown by 08006, and a database which has not been booted by XJ004
+                if (!"08006".equals(e.getSQLState()) && !"XJ004".equals(e.getSQLState())) {
+                    throw e;
+                }
+            }
+            // replaces the database by the backup, also for in-memory databases
+            ConnectionPool.openConnection(config, url + ";restoreFrom=" + backups[0].getAbsolutePath()).close();
+            return true;
+        }
+    },
+
+    DB2("jdbc:db2:") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            return fetchFirst(query, maxRows);
+        }
+    },
+
+    POSTGRESQL("jdbc:postgresql:") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            return limit(query, maxRows);
+        }
+    },
+
+    MYSQL("jdbc:mysql:") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            return limit(query, maxRows);
+        }
+    },
+
+    H2("jdbc:h2:") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            return limit(query, maxRows);
+        }
+    },
+
+    HSQLDB("jdbc:hsqldb:") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            return limit(query, maxRows);
+        }
+    },
+
+    ORACLE("jdbc:oracle:") {
+        @Override
+        String limitRows(String query, int maxRows) {
+            // ROWNUM works on all Oracle versions, FETCH FIRST only since 12c
+            return "SELECT 1 FROM (" + query + ") WHERE ROWNUM <= " + maxRows;
+        }
+    };
+
+    private static final String PROBE_ALIAS = "probe_rows";
+
+    private final String urlPrefix;
+
+    private SqlDialect(String urlPrefix) {
+        this.urlPrefix = urlPrefix;
+    }
+
+    /** Wraps the given query into a statement which returns at most the given number of rows, and allows the database to stop
+     * executing the query once these rows have been found.
+     * 
+     * @param query Query to wrap. Must be a single SELECT statement.
+     * @param maxRows Maximum number of rows to return, at least 1.
+     * 
+     * @return The wrapping statement, or <code>null</code> if this dialect does not support row limiting. */
+    abstract String limitRows(String query, int maxRows);
+
+    /** Prepares the given connection for capturing the execution plan of the next statement executed on it.
+     * 
+     * @param connection Connection to prepare.
+     * 
+     * @return <code>true</code> if the plan will be captured, <code>false</code> if this dialect does not support capturing
+     *         plans.
+     * 
+     * @throws SQLException If the connection could not be prepared. */
+    boolean startPlanCapture(Connection connection) throws SQLException {
+        return false;
+    }
+
+    /** Returns the execution plan of the statement executed last on the given connection, and stops capturing plans. Is only
+     * called if {@link #startPlanCapture(Connection)} has returned <code>true</code>.
+     * 
+     * @param connection Connection the statement has been executed on.
+     * 
+     * @return A textual representation of the execution plan, or <code>null</code> if none is available.
+     * 
+     * @throws SQLException If the plan could not be retrieved. */
+    String finishPlanCapture(Connection connection) throws SQLException {
+        return null;
+    }
+
+    /** Copies the complete database the given connection belongs to into the given directory, while it stays online.
+     * 
+     * @param connection Connection to the database, in auto-commit mode.
+     * @param directory Empty directory to store the copy in.
+     * 
+     * @return <code>true</code> if the database has been copied, <code>false</code> if this dialect does not support copying
+     *         databases.
+     * 
+     * @throws SQLException If the database could not be copied. */
+    boolean backupDatabase(Connection connection, File directory) throws SQLException {
+        return false;
+    }
+
+    /** Replaces the configured database by a copy created via {@link #backupDatabase(Connection, File)}. The database may be
+     * shut down for this, so all connections to it must have been closed before.
+     * 
+     * @param config Configuration of the database service, providing the JDBC URL and credentials.
+     * @param directory Directory the copy has been stored in.
+     * 
+     * @return <code>true</code> if the database has been replaced, <code>false</code> if this dialect does not support copying
+     *         databases.
+     * 
+     * @throws SQLException If the database could not be replaced. */
+    boolean restoreDatabase(DatabaseConfiguration config, File directory) throws SQLException {
+        return false;
+    }
+
+    /** Determines the dialect to use for the given configuration.
+     * 
+     * @param config Configuration of the database service.
+     * 
+     * @return The explicitly configured dialect, or the dialect detected from the JDBC URL, or {@link #GENERIC}.
+     * 
+     * @throws IllegalArgumentException If an unknown dialect has been configured explicitly. */
+    public static SqlDialect forConfiguration(DatabaseConfiguration config) {
+        String name = config.getSqlDialect();
+        if (name != null && !"".equals(name.trim())) {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        }
+        return forJdbcUrl(config.getJdbcUrl());
+    }
+
+    /** Detects the dialect from the given JDBC URL.
+     * 
+     * @param jdbcUrl JDBC URL of the database.
+     * 
+     * @return The detected dialect, or {@link #GENERIC} if the database is unknown. */
+    public static SqlDialect forJdbcUrl(String jdbcUrl) {
+        String url = jdbcUrl.toLowerCase(Locale.ENGLISH);
+        for (SqlDialect dialect : values()) {
+            if (dialect != GENERIC && url.startsWith(dialect.urlPrefix)) {
+                return dialect;
+            }
+        }
+        return GENERIC;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute(sql);
+        }
+        finally {
+            stmt.close();
+        }
+    }
+
+    private static String fetchFirst(String query, int maxRows) {
+        return "SELECT 1 FROM (" + query + ") " + PROBE_ALIAS + " FETCH FIRST " + maxRows + " ROWS ONLY";
+    }
+
+    private static String limit(String query, int maxRows) {
+        return "SELECT 1 FROM (" + query + ") " + PROBE_ALIAS + " LIMIT " + maxRows;
+    }
+
+}
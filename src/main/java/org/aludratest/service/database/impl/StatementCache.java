@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Bounded cache of prepared statements of a single connection, keyed by their SQL text. When the cache is full, the least
+ * recently used statement is closed. Statements are obtained via {@link #prepare(String, boolean)} and must be handed back via
+ * {@link #release(PreparedStatement, boolean)} after use, which either keeps them for reuse or closes them. <br>
+ * A cache with a maximum size of 0 prepares a new statement for every request, which is closed on release. */
+public class StatementCache {
+
+    private final Connection connection;
+
+    private final int maxSize;
+
+    private final Map<String, PreparedStatement> statements;
+
+    private final Map<PreparedStatement, String> cachedSql = new IdentityHashMap<PreparedStatement, String>();
+
+    private final Set<PreparedStatement> inUse = Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    evictionCount++;
+                    cachedSql.remove(eldest.getValue());
+                    closeUnlessInUse(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns a prepared statement for the given SQL. If a matching statement is cached and not in use, it is reused.
+     * 
+     * @param sql SQL statement to prepare.
+     * @param cacheable If <code>false</code>, a new statement is prepared which is not added to the cache.
+     * 
+     * @return A prepared statement for the given SQL, to be handed back via {@link #release(PreparedStatement, boolean)}.
+     * 
+     * @throws SQLException If the statement could not be prepared. */
+    public synchronized PreparedStatement prepare(String sql, boolean cacheable) throws SQLException {
+        if (!cacheable || maxSize <= 0) {
+            return connection.prepareStatement(sql);
+        }
+
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null && !inUse.contains(ps)) {
+            hitCount++;
+        }
+        else {
+            missCount++;
+            ps = connection.prepareStatement(sql);
+            // do not replace a statement currently in use; the new one will be closed on release
+            if (!statements.containsKey(sql)) {
+                cachedSql.put(ps, sql);
+                statements.put(sql, ps);
+            }
+        }
+        inUse.add(ps);
+        return ps;
+    }
+
+    /** Hands back a statement obtained from {@link #prepare(String, boolean)}. Cached statements are kept for reuse, unless
+     * <code>reusable</code> is <code>false</code>, e.g. because the execution failed. All other statements are closed.
+     * 
+     * @param ps Statement to hand back. <code>null</code> is ignored.
+     * @param reusable <code>false</code> to remove the statement from the cache and close it. */
+    public synchronized void release(PreparedStatement ps, boolean reusable) {
+        if (ps == null) {
+            return;
+        }
+        inUse.remove(ps);
+        if (reusable && cachedSql.containsKey(ps)) {
+            try {
+                ps.clearParameters();
+                return;
+            }
+            catch (SQLException e) {
+                // fall through and discard statement
+            }
+        }
+        String sql = cachedSql.remove(ps);
+        if (sql != null) {
+            statements.remove(sql);
+        }
+        closeQuietly(ps);
+    }
+
+    /** Closes all cached statements which are not in use, and removes all statements from the cache. Statements in use are closed
+     * when they are released. */
+    public synchronized void clear() {
+        List<PreparedStatement> toClose = new ArrayList<PreparedStatement>(statements.values());
+        statements.clear();
+        cachedSql.clear();
+        for (PreparedStatement ps : toClose) {
+            closeUnlessInUse(ps);
+        }
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache [size=" + statements.size() + ", maxSize=" + maxSize + ", hits=" + hitCount + ", misses="
+                + missCount + ", evictions=" + evictionCount + "]";
+    }
+
+    private void closeUnlessInUse(PreparedStatement ps) {
+        if (!inUse.contains(ps)) {
+            closeQuietly(ps);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        }
+        catch (Throwable t) { // NOPMD
+        }
+    }
+
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/** Determines the {@link StatementType} of SQL strings, using a lightweight lexer which ignores comments, string literals and
+ * quoted identifiers. Common constructs preceding the actual statement are understood, i.e. common table expressions (
+ * <code>WITH ... AS (...) SELECT</code>), Teradata lock modifiers (<code>LOCKING ROW FOR ACCESS SELECT</code>) and opening
+ * parentheses. If the string contains multiple statements separated by semicolons, the most privileged type of these is
+ * returned. <br>
+ * Results are cached per SQL string, with the least recently used entries being evicted when the cache is full. Instances are
+ * thread safe. */
+public class StatementClassifier {
+
+    private static final Set<String> QUERY_KEYWORDS = new HashSet<String>(Arrays.asList("SELECT", "SEL", "VALUES"));
+
+    private static final Set<String> DML_KEYWORDS = new HashSet<String>(Arrays.asList("INSERT", "INS", "UPDATE", "UPD",
+            "DELETE", "DEL", "MERGE", "UPSERT"));
+
+    private static final Set<String> LOCK_MODES = new HashSet<String>(Arrays.asList("ACCESS", "READ", "WRITE", "EXCLUSIVE",
+            "SHARE"));
+
+    /** Keywords which are followed by a table name. */
+    private static final Set<String> TABLE_PREFIXES = new HashSet<String>(Arrays.asList("FROM", "JOIN", "INTO", "UPDATE",
+            "UPD", "TABLE", "USING"));
+
+    /** Keywords which end a list of tables, and therefore are never table aliases. */
+    private static final Set<String> CLAUSE_KEYWORDS = new HashSet<String>(Arrays.asList("WHERE", "GROUP", "ORDER", "HAVING",
+            "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "NATURAL", "ON", "UNION", "EXCEPT", "INTERSECT",
+            "MINUS", "SET", "VALUES", "SELECT", "FETCH", "LIMIT", "OFFSET", "FOR", "OF", "WITH", "USING", "WHEN", "START",
+            "CONNECT", "QUALIFY", "SAMPLE", "WINDOW", "RETURNING", "NOWAIT"));
+
+    /** Token for parts of the SQL which are never keywords, e.g. quoted identifiers. */
+    private static final String OTHER = "\"";
+
+    private final Map<String, Analysis> cache;
+
+    public StatementClassifier(final int maxSize) {
+        cache = new LinkedHashMap<String, Analysis>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Analysis> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /** Returns the type of the given SQL string.
+     * 
+     * @param sql SQL string, possibly consisting of multiple statements.
+     * 
+     * @return The type of the statement, or the most privileged type if the string contains multiple statements. Strings
+     *         without any recognizable statement are treated as {@link StatementType#DDL}. */
+    public StatementType classify(String sql) {
+        return analyze(sql).type;
+    }
+
+    /** Returns the names of the tables referenced by the given SQL string, e.g. in <code>FROM</code>, <code>JOIN</code>,
+     * <code>INTO</code> or <code>UPDATE</code> clauses. Names are returned in upper case and without schema. The result may
+     * contain names which are no tables, e.g. aliases of common table expressions, but never misses a table which is
+     * referenced directly. Tables accessed indirectly, e.g. through views or triggers, are not detected.
+     * 
+     * @param sql SQL string, possibly consisting of multiple statements.
+     * 
+     * @return The names of the referenced tables, or <code>null</code> if they could not be determined, e.g. because of quoted
+     *         identifiers. */
+    public Set<String> getReferencedTables(String sql) {
+        return analyze(sql).tables;
+    }
+
+    /** Returns the number of currently cached classifications.
+     * 
+     * @return The number of currently cached classifications. */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private Analysis analyze(String sql) {
+        synchronized (cache) {
+            Analysis analysis = cache.get(sql);
+            if (analysis != null) {
+                return analysis;
+            }
+        }
+        Analysis analysis = analyzeUncached(sql);
+        synchronized (cache) {
+            cache.put(sql, analysis);
+        }
+        return analysis;
+    }
+
+    static Analysis analyzeUncached(String sql) {
+        StatementType result = null;
+        Set<String> tables = new HashSet<String>();
+        for (List<String> statement : tokenize(sql)) {
+            StatementType type = classifyStatement(statement, 0);
+            if (type != null && (result == null || type.compareTo(result) > 0)) {
+                result = type;
+            }
+            if (tables != null && !collectTables(statement, tables)) {
+                tables = null;
+            }
+        }
+        return new Analysis(result == null ? StatementType.DDL : result,
+                tables == null ? null : Collections.unmodifiableSet(tables));
+    }
+
+    private static StatementType classifyStatement(List<String> tokens, int start) {
+        int i = start;
+        while (i < tokens.size() && "(".equals(tokens.get(i))) {
+            i++;
+        }
+        if (i == tokens.size()) {
+            return null;
+        }
+
+        String keyword = tokens.get(i);
+        if (QUERY_KEYWORDS.contains(keyword)) {
+            return StatementType.QUERY;
+        }
+        if (DML_KEYWORDS.contains(keyword)) {
+            return StatementType.DML;
+        }
+        if ("WITH".equals(keyword)) {
+            return classifyAfterCommonTableExpressions(tokens, i + 1);
+        }
+        if ("LOCK".equals(keyword) || "LOCKING".equals(keyword)) {
+            return classifyAfterLockModifier(tokens, i + 1);
+        }
+        return StatementType.DDL;
+    }
+
+    /** Classifies the queries of <code>name [(columns)] AS (query) [, ...]</code> and the statement following them. As some
+     * databases allow data modifying statements in common table expressions, the most privileged type of these is returned. */
+    private static StatementType classifyAfterCommonTableExpressions(List<String> tokens, int start) {
+        StatementType result = null;
+        int depth = 0;
+        int bodyStart = -1;
+        for (int i = start; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if ("(".equals(token)) {
+                if (depth == 0 && i > start && ("AS".equals(tokens.get(i - 1)) || "MATERIALIZED".equals(tokens.get(i - 1)))) {
+                    bodyStart = i + 1;
+                }
+                depth++;
+            }
+            else if (")".equals(token)) {
+                depth--;
+                if (depth == 0) {
+                    if (bodyStart >= 0) {
+                        result = mostPrivileged(result, classifyStatement(tokens.subList(bodyStart, i), 0));
+                        bodyStart = -1;
+                    }
+                    if (i + 1 < tokens.size()) {
+                        String next = tokens.get(i + 1);
+                        if (!",".equals(next) && !"AS".equals(next)) {
+                            return mostPrivileged(result, classifyStatement(tokens, i + 1));
+                        }
+                    }
+                }
+            }
+        }
+        return StatementType.DDL;
+    }
+
+    /** Returns the more privileged of two types, treating <code>null</code> (no recognizable statement) as
+     * {@link StatementType#DDL}. */
+    private static StatementType mostPrivileged(StatementType result, StatementType type) {
+        if (type == null) {
+            type = StatementType.DDL;
+        }
+        return result == null || type.compareTo(result) > 0 ? type : result;
+    }
+
+    /** Skips a Teradata lock modifier, e.g. <code>LOCKING TABLE x FOR ACCESS [MODE] [NOWAIT]</code>, and classifies the statement
+     * following it. A lock statement without a following statement is treated as DDL. */
+    private static StatementType classifyAfterLockModifier(List<String> tokens, int start) {
+        for (int i = start; i < tokens.size(); i++) {
+            if (LOCK_MODES.contains(tokens.get(i))) {
+                i++;
+                while (i < tokens.size() && ("MODE".equals(tokens.get(i)) || "NOWAIT".equals(tokens.get(i)))) {
+                    i++;
+                }
+                StatementType type = classifyStatement(tokens, i);
+                return type == null ? StatementType.DDL : type;
+            }
+        }
+        return StatementType.DDL;
+    }
+
+    /** Adds the tables referenced by the given statement to the given set.
+     * 
+     * @return <code>false</code> if the referenced tables could not be determined. */
+    private static boolean collectTables(List<String> tokens, Set<String> tables) {
+        int n = tokens.size();
+        for (int i = 0; i < n; i++) {
+            if (!TABLE_PREFIXES.contains(tokens.get(i))) {
+                continue;
+            }
+            int j = i + 1;
+            while (j < n) {
+                String token = tokens.get(j);
+                if (OTHER.equals(token)) {
+                    return false;
+                }
+                if (!isWord(token) || CLAUSE_KEYWORDS.contains(token)) {
+                    // e.g. a sub query, or the end of the statement
+                    break;
+                }
+                String name = token;
+                j++;
+                while (j + 1 < n && ".".equals(tokens.get(j))) {
+                    name = tokens.get(j + 1);
+                    if (OTHER.equals(name)) {
+                        return false;
+                    }
+                    j += 2;
+                }
+                tables.add(name);
+
+                // skip the alias, and continue with the next table of a comma separated list
+                if (j < n && "AS".equals(tokens.get(j))) {
+                    j++;
+                }
+                if (j < n && isWord(tokens.get(j)) && !CLAUSE_KEYWORDS.contains(tokens.get(j))) {
+                    j++;
+                }
+                if (j < n && ",".equals(tokens.get(j))) {
+                    j++;
+                }
+                else {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWord(String token) {
+        char c = token.charAt(0);
+        return Character.isLetter(c) || c == '_';
+    }
+
+    /** Splits the SQL string into statements, and these into upper case words, parentheses, commas and dots. Comments, literals and
+     * other characters are dropped, quoted identifiers are replaced by a placeholder token. */
+    static List<List<String>> tokenize(String sql) {
+        List<List<String>> statements = new ArrayList<List<String>>();
+        List<String> tokens = new ArrayList<String>();
+        int len = sql.length();
+        int i = 0;
+        while (i < len) {
+            char c = sql.charAt(i);
+            if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                while (i < len && sql.charAt(i) != '\n' && sql.charAt(i) != '\r') {
+                    i++;
+                }
+            }
+            else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? len : end + 2;
+            }
+            else if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+                if (c != '\'') {
+                    tokens.add(OTHER);
+                }
+            }
+            else if (Character.isLetter(c) || c == '_') {
+                int end = i + 1;
+                while (end < len && isWordPart(sql.charAt(end))) {
+                    end++;
+                }
+                tokens.add(sql.substring(i, end).toUpperCase(Locale.ENGLISH));
+                i = end;
+            }
+            else if (c == '(' || c == ')' || c == ',' || c == '.') {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+            else if (c == ';') {
+                statements.add(tokens);
+                tokens = new ArrayList<String>();
+                i++;
+            }
+            else {
+                i++;
+            }
+        }
+        statements.add(tokens);
+        return statements;
+    }
+
+    /** Returns the index after the closing quote of the literal or identifier starting at <code>start</code>. Doubled quotes
+     * are treated as escaped quote characters. */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    /** Result of the analysis of an SQL string. */
+    static final class Analysis {
+
+        private final StatementType type;
+
+        private final Set<String> tables;
+
+        private Analysis(StatementType type, Set<String> tables) {
+            this.type = type;
+            this.tables = tables;
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+/** Categories of SQL statements, as distinguished by the permission checks of the database service. */
+public enum StatementType {
+
+    /** A plain query, e.g. a <code>SELECT</code> statement. */
+    QUERY,
+
+    /** A data manipulation statement, i.e. <code>INSERT</code>, <code>UPDATE</code>, or <code>DELETE</code>. */
+    DML,
+
+    /** Any other statement, e.g. table creation and dropping, truncations etc. */
+    DDL;
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.service.database.DataRow;
+
+/** Forward-only data rows which are read from the live database cursor while being iterated, instead of being copied into memory
+ * first. The current row of the cursor can be accessed any number of times, and accessing a following row moves the cursor
+ * forward to it. Preceding rows are no longer available, so an iteration fails if rows have been skipped this way. The underlying statement is closed as soon as the iteration has
+ * finished. */
+public class StreamingDataRowsImpl extends AbstractDataRows {
+
+    private Statement statement;
+
+    private ResultSet resultSet;
+
+    private PooledConnection connection;
+
+    private String columnNames;
+
+    private ColumnIndexMap columnIndexes;
+
+    /** Number of the row the cursor is positioned on; 0 means before the first row. */
+    private int cursorRow;
+
+    private boolean iterated;
+
+    /** Indicates if the cursor has been moved beyond the last row. */
+    private boolean exhausted;
+
+    private boolean closed;
+
+    /** Creates new streamed data rows.
+     * 
+     * @param statement Statement which has produced the result set.
+     * @param resultSet Result set to read the rows from.
+     * @param connection Pooled connection to release when the rows are closed, or <code>null</code> if the connection is kept
+     *            by its owner, e.g. by an active transaction.
+     * 
+     * @throws SQLException If the result set meta data could not be read. */
+    public StreamingDataRowsImpl(Statement statement, ResultSet resultSet, PooledConnection connection) throws SQLException {
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.connection = connection;
+        this.columnNames = buildColumnNamesString(resultSet.getMetaData());
+        this.columnIndexes = ColumnIndexMap.of(resultSet.getMetaData());
+    }
+
+    @Override
+    public synchronized Iterator<DataRow> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Streamed data rows can only be iterated once");
+        }
+        iterated = true;
+        return new DataRowIterator();
+    }
+
+    /** Returns the total number of rows. This is only known after all rows have been read from the cursor.
+     * 
+     * @return The total number of rows.
+     * 
+     * @throws AutomationException If not all rows have been read from the cursor yet. */
+    @Override
+    public synchronized int getRowCount() {
+        if (!exhausted) {
+            throw new AutomationException("The number of rows of a streamed query result is only known after it has been "
+                    + "iterated completely (" + cursorRow + " row(s) read so far)");
+        }
+        return cursorRow;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized <T> T getValue(int rowNum, TableColumnImpl<T> column) throws SQLException {
+        int columnIndex = columnIndexes.getColumnIndex(column);
+        if (!isAccessible(rowNum)) {
+            throw new AutomationException("Row " + rowNum + " is not available. Streamed query results can only be accessed "
+                    + "at or after the current row " + cursorRow + " of their iteration.");
+        }
+        // skip forward to requested row; current row needs no positioning at all
+        while (cursorRow < rowNum) {
+            if (!advance()) {
+                throw new AutomationException("Row number out of bounds: " + rowNum + " (only " + cursorRow
+                        + " row(s) in query result)");
+            }
+        }
+        return column.getValueFromResultSet(resultSet, columnIndex);
+    }
+
+    @Override
+    protected synchronized boolean isAccessible(int rowNum) {
+        return !closed && rowNum >= 1 && rowNum >= cursorRow;
+    }
+
+    /** Closes the underlying statement and releases its connection, if not yet done. Following row accesses will fail. */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            resultSet.close();
+        }
+        catch (Throwable t) { // NOPMD
+        }
+        try {
+            statement.close();
+        }
+        catch (Throwable t) { // NOPMD
+        }
+        if (connection != null) {
+            connection.release();
+        }
+    }
+
+    private synchronized boolean advance() {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (resultSet.next()) {
+                cursorRow++;
+                return true;
+            }
+        }
+        catch (SQLException e) {
+            close();
+            throw new AutomationException("Could not read next row of streamed query result", e);
+        }
+        exhausted = true;
+        close();
+        return false;
+    }
+
+	@Override
+	public String toString() {
+		return "Streamed data rows (" + cursorRow + " row(s) read so far) with columns " + columnNames;
+	}
+
+	private static String buildColumnNamesString(ResultSetMetaData meta) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			for (int i = 1; i <= meta.getColumnCount(); i++) {
+				if (i > 1) {
+					sb.append(", ");
+				}
+				sb.append(meta.getColumnName(i));
+			}
+			return sb.toString();
+		}
+		catch (SQLException e) {
+			return "(unknown)";
+		}
+	}
+
+    private class DataRowIterator implements Iterator<DataRow> {
+
+        private int lastReturned;
+
+        @Override
+        public boolean hasNext() {
+            synchronized (StreamingDataRowsImpl.this) {
+                // cursor may already have been moved beyond the last returned row, e.g. by a row access
+                if (!closed && cursorRow > lastReturned) {
+                    return true;
+                }
+                return advance();
+            }
+        }
+
+        @Override
+        public DataRow next() {
+            synchronized (StreamingDataRowsImpl.this) {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                // the rows in between cannot be returned anymore, and must not be passed over silently
+                if (cursorRow > lastReturned + 1) {
+                    String skipped = cursorRow == lastReturned + 2 ? "Row " + (lastReturned + 1) + " has" : "Rows "
+                            + (lastReturned + 1) + " to " + (cursorRow - 1) + " have";
+                    throw new IllegalStateException(skipped + " been skipped by accessing row " + cursorRow
+                            + " of the streamed data rows during their iteration");
+                }
+                lastReturned = cursorRow;
+                return new DataRowImpl(cursorRow);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -15,10 +15,11 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.StringColumn;
 
 public class StringColumnImpl extends TableColumnImpl<String> implements StringColumn {
@@ -28,8 +29,18 @@ public class StringColumnImpl extends TableColumnImpl<String> implements StringC
     }
 
     @Override
-    public String getValueFromRowSet(RowSet rs) throws SQLException {
-        return rs.getString(getColumnName());
+    public String getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        return rs.getString(columnIndex);
+    }
+
+    @Override
+    public String getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.getString(row);
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        writeString(out, rs.getString(columnIndex));
     }
 
 }
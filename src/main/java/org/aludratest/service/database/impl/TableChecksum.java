@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aludratest.exception.AutomationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Computes a SHA-256 based checksum over the rows of a table without holding them in memory. The table is split into
+ * partitions by ranges of a numeric key column, which are read concurrently on separate pooled connections. Each row is hashed
+ * while it is streamed, using the canonical encoding of the {@link TableColumnImpl} types, and the digest of a partition is the
+ * sum of its row digests, modulo 2<sup>256</sup>. The checksum of the table is the SHA-256 hash of the row count and the sum of
+ * the partition digests, so it neither depends on the order of the rows, nor on the number of partitions. <br>
+ * The key ranges are aligned to multiples of their width, which is a power of two, so tables with similar key ranges are split
+ * into equal partitions, even if rows are missing at either end, and the partition digests, which are logged, narrow down where
+ * two tables differ. */
+final class TableChecksum {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TableChecksum.class);
+
+    static final String ALGORITHM = "SHA-256";
+
+    /** Number of 64 bit words of a SHA-256 digest. */
+    private static final int SUM_WORDS = 4;
+
+    private static final AtomicInteger CHECKSUM_COUNTER = new AtomicInteger();
+
+    private final ConnectionPool pool;
+
+    private final String table;
+
+    private final TableColumnImpl<?> keyColumn;
+
+    private final TableColumnImpl<?>[] columns;
+
+    private final int fetchSize;
+
+    private final List<Partition> partitions = new ArrayList<Partition>();
+
+    /** Creates a new checksum computation. Table and column names are inserted into SQL statements as they are, so they must have
+     * been validated by the caller.
+     * 
+     * @param pool Pool to take the connections from.
+     * @param table Name of the table.
+     * @param keyColumn Column to partition the rows by. Rows with a <code>NULL</code> key are read as a partition of their own.
+     * @param columns Columns to hash, in this order.
+     * @param fetchSize Number of rows to fetch at once, or 0 to use the default of the JDBC driver. */
+    TableChecksum(ConnectionPool pool, String table, TableColumnImpl<?> keyColumn, TableColumnImpl<?>[] columns, int fetchSize) {
+        this.pool = pool;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = columns.clone();
+        this.fetchSize = fetchSize;
+    }
+
+    /** Computes the checksum of the table.
+     * 
+     * @param maxPartitions Maximum number of key ranges. Fewer ranges may be used, see {@link #keyRanges(long, long, int)}. If
+     *            the key column is neither an int nor a long column, the table is read as a single partition.
+     * @param threads Maximum number of partitions to read concurrently.
+     * 
+     * @return The checksum, as a hexadecimal string.
+     * 
+     * @throws SQLException If the table could not be read. */
+    String compute(int maxPartitions, int threads) throws SQLException {
+        createPartitions(maxPartitions);
+        if (partitions.size() == 1 || threads <= 1) {
+            for (Partition partition : partitions) {
+                hash(partition);
+            }
+        }
+        else {
+            hashConcurrently(Math.min(threads, partitions.size()));
+        }
+
+        long[] sum = new long[SUM_WORDS];
+        long rowCount = 0;
+        for (Partition partition : partitions) {
+            LOG.info("Checksum of " + table + " " + partition);
+            add(sum, partition.sum);
+            rowCount += partition.rowCount;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(8 + SUM_WORDS * 8);
+        buf.putLong(rowCount);
+        for (long word : sum) {
+            buf.putLong(word);
+        }
+        String checksum = toHex(newDigest().digest(buf.array()));
+        LOG.info("Checksum of " + table + " (" + rowCount + " row(s) in " + partitions.size() + " partition(s)): " + checksum);
+        return checksum;
+    }
+
+    List<Partition> getPartitions() {
+        return Collections.unmodifiableList(partitions);
+    }
+
+    private void createPartitions(int maxPartitions) throws SQLException {
+        partitions.clear();
+        if (!(keyColumn instanceof IntColumnImpl) && !(keyColumn instanceof LongColumnImpl)) {
+            partitions.add(new Partition(1, null, null, false));
+            return;
+        }
+
+        Long min = null;
+        Long max = null;
+        PooledConnection pc = pool.acquire();
+        try {
+            Statement stmt = pc.getConnection().createStatement();
+            try {
+                String key = keyColumn.getColumnName();
+                ResultSet rs = stmt.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + table);
+                if (rs.next()) {
+                    long value = rs.getLong(1);
+                    min = rs.wasNull() ? null : Long.valueOf(value);
+                    value = rs.getLong(2);
+                    max = rs.wasNull() ? null : Long.valueOf(value);
+                }
+                rs.close();
+            }
+            finally {
+                stmt.close();
+            }
+        }
+        finally {
+            pc.release();
+        }
+        if (min == null || max == null) {
+            // empty table, or NULL keys only
+            partitions.add(new Partition(1, null, null, false));
+            return;
+        }
+
+        List<long[]> ranges = keyRanges(min.longValue(), max.longValue(), maxPartitions);
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            partitions.add(new Partition(i + 1, Long.valueOf(range[0]), Long.valueOf(range[1]), false));
+        }
+        // not covered by any key range, but included if the table is not partitioned
+        partitions.add(new Partition(ranges.size() + 1, null, null, true));
+    }
+
+    /** Splits the keys between the given minimum and maximum into ranges which do not depend on the actual keys. All ranges
+     * have the same width, which is a power of two, and start at a multiple of their width. The smallest width resulting in at
+     * most the given number of ranges is used. So a few more or fewer rows at either end of the key range of a table change the
+     * ranges only if the width changes, and even then, each range of the larger width consists of two ranges of the smaller
+     * width.
+     * 
+     * @param min Minimum key.
+     * @param max Maximum key.
+     * @param maxRanges Maximum number of ranges.
+     * 
+     * @return The lowest and highest key of each range, in ascending order. The first range may start below the minimum key,
+     *         and the last range may end above the maximum key. */
+    static List<long[]> keyRanges(long min, long max, int maxRanges) {
+        // computed with big integers, as the key range may exceed the range of long
+        BigInteger lowest = BigInteger.valueOf(min);
+        BigInteger highest = BigInteger.valueOf(max);
+        BigInteger limit = BigInteger.valueOf(Math.max(1, maxRanges));
+        int shift = 0;
+        while (highest.shiftRight(shift).subtract(lowest.shiftRight(shift)).add(BigInteger.ONE).compareTo(limit) > 0) {
+            if (++shift == Long.SIZE) {
+                // negative and positive keys with a single range only
+                return Collections.singletonList(new long[] { Long.MIN_VALUE, Long.MAX_VALUE });
+            }
+        }
+
+        List<long[]> ranges = new ArrayList<long[]>();
+        BigInteger last = highest.shiftRight(shift);
+        for (BigInteger bucket = lowest.shiftRight(shift); bucket.compareTo(last) <= 0; bucket = bucket.add(BigInteger.ONE)) {
+            BigInteger lower = bucket.shiftLeft(shift);
+            BigInteger upper = bucket.add(BigInteger.ONE).shiftLeft(shift).subtract(BigInteger.ONE);
+            ranges.add(new long[] { toLong(lower), toLong(upper) });
+        }
+        return ranges;
+    }
+
+    private static long toLong(BigInteger value) {
+        if (value.compareTo(BigInteger.valueOf(Long.MIN_VALUE)) < 0) {
+            return Long.MIN_VALUE;
+        }
+        if (value.compareTo(BigInteger.valueOf(Long.MAX_VALUE)) > 0) {
+            return Long.MAX_VALUE;
+        }
+        return value.longValue();
+    }
+
+    private void hashConcurrently(int threads) throws SQLException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new AsyncDatabaseInteractionImpl.DaemonThreadFactory(
+                "aludratest-db-checksum-" + CHECKSUM_COUNTER.incrementAndGet() + "-"));
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final Partition partition : partitions) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws SQLException {
+                        hash(partition);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AutomationException("Could not compute checksum of " + table, cause);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AutomationException("Interrupted while computing checksum of " + table, e);
+        }
+        finally {
+            // cancels the remaining partitions if one has failed
+            executor.shutdownNow();
+        }
+    }
+
+    private void hash(Partition partition) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns[i].getColumnName());
+        }
+        String key = keyColumn.getColumnName();
+        sql.append(" FROM ").append(table);
+        if (partition.lower != null) {
+            sql.append(" WHERE ").append(key).append(" >= ? AND ").append(key).append(" <= ?");
+        }
+        else if (partition.nullKey) {
+            sql.append(" WHERE ").append(key).append(" IS NULL");
+        }
+
+        // the order of the rows does not matter, so the database does not have to sort them
+        MessageDigest digest = newDigest();
+        long[] sum = new long[SUM_WORDS];
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DigestingOutputStream(digest)));
+        long rowCount = 0;
+        PooledConnection pc = pool.acquire();
+        try {
+            PreparedStatement ps = pc.getConnection().prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            try {
+                if (fetchSize > 0) {
+                    ps.setFetchSize(fetchSize);
+                }
+                if (partition.lower != null) {
+                    ps.setLong(1, partition.lower.longValue());
+                    ps.setLong(2, partition.upper.longValue());
+                }
+                ResultSet rs = ps.executeQuery();
+                try {
+                    while (rs.next()) {
+                        for (int i = 0; i < columns.length; i++) {
+                            columns[i].writeCanonicalValue(rs, i + 1, out);
+                        }
+                        out.flush();
+                        add(sum, digest.digest());
+                        rowCount++;
+                    }
+                }
+                finally {
+                    rs.close();
+                }
+            }
+            finally {
+                ps.close();
+            }
+        }
+        catch (IOException e) {
+            // only thrown by LOB streams, as the digest itself never fails
+            throw new SQLException("Could not read LOB value", e);
+        }
+        finally {
+            pc.release();
+        }
+        partition.rowCount = rowCount;
+        partition.sum = sum;
+    }
+
+    /** Adds a SHA-256 digest to a sum, modulo 2<sup>256</sup>.
+     * 
+     * @param sum Sum, as big-endian 64 bit words, which is updated.
+     * @param digest Digest to add, interpreted as a big-endian number. */
+    static void add(long[] sum, byte[] digest) {
+        ByteBuffer buf = ByteBuffer.wrap(digest);
+        long[] value = new long[SUM_WORDS];
+        for (int i = 0; i < SUM_WORDS; i++) {
+            value[i] = buf.getLong();
+        }
+        add(sum, value);
+    }
+
+    /** Adds a 256 bit number to a sum, modulo 2<sup>256</sup>.
+     * 
+     * @param sum Sum, as big-endian 64 bit words, which is updated.
+     * @param value Value to add, as big-endian 64 bit words. */
+    static void add(long[] sum, long[] value) {
+        long carry = 0;
+        for (int i = SUM_WORDS - 1; i >= 0; i--) {
+            long result = sum[i] + value[i] + carry;
+            // unsigned overflow, detected by comparing with the sign bit flipped
+            carry = (result ^ Long.MIN_VALUE) < (sum[i] ^ Long.MIN_VALUE) || (carry != 0 && result == sum[i]) ? 1 : 0;
+            sum[i] = result;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /** A range of keys of the table, and the digest of its rows once computed. */
+    final class Partition {
+
+        private final int number;
+
+        /** Lowest key of the partition, or <code>null</code> if the partition is no key range. */
+        private final Long lower;
+
+        /** Highest key of the partition, or <code>null</code> if the partition is no key range. */
+        private final Long upper;
+
+        /** If the partition consists of the rows with a <code>NULL</code> key. */
+        private final boolean nullKey;
+
+        private volatile long rowCount;
+
+        /** Sum of the row digests, as big-endian 64 bit words. */
+        private volatile long[] sum;
+
+        private Partition(int number, Long lower, Long upper, boolean nullKey) {
+            this.number = number;
+            this.lower = lower;
+            this.upper = upper;
+            this.nullKey = nullKey;
+        }
+
+        long getRowCount() {
+            return rowCount;
+        }
+
+        String getDigest() {
+            if (sum == null) {
+                return null;
+            }
+            ByteBuffer buf = ByteBuffer.allocate(SUM_WORDS * 8);
+            for (long word : sum) {
+                buf.putLong(word);
+            }
+            return toHex(buf.array());
+        }
+
+        @Override
+        public String toString() {
+            String range;
+            if (lower != null) {
+                range = keyColumn.getColumnName() + " " + lower + " to " + upper;
+            }
+            else {
+                range = nullKey ? keyColumn.getColumnName() + " NULL" : "all rows";
+            }
+            return "partition " + number + " (" + range + "): " + rowCount + " row(s), digest " + getDigest();
+        }
+    }
+
+    /** Feeds all bytes written into a message digest. */
+    private static final class DigestingOutputStream extends OutputStream {
+
+        private final MessageDigest digest;
+
+        private DigestingOutputStream(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.aludratest.service.database.impl;
 
+import org.aludratest.service.database.tablecolumn.BlobColumn;
 import org.aludratest.service.database.tablecolumn.ClobColumn;
 import org.aludratest.service.database.tablecolumn.DateColumn;
 import org.aludratest.service.database.tablecolumn.DoubleColumn;
@@ -91,4 +92,10 @@ public class TableColumnFactoryImpl implements TableColumnFactory {
 	     return new ClobColumnImpl(columnName);
 	}
 
+    @Override
+    public BlobColumn createBlobColumn(String columnName) {
+        assertNotNull(columnName);
+        return new BlobColumnImpl(columnName);
+    }
+
 }
@@ -15,21 +15,84 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.TableColumn;
 
 public abstract class TableColumnImpl<T> implements TableColumn<T> {
 
+    /** Tag preceding the canonical encoding of a <code>NULL</code> value. */
+    protected static final int NULL_TAG = 0;
+
+    /** Tag preceding the canonical encoding of a non-<code>NULL</code> value. */
+    protected static final int VALUE_TAG = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private String columnName;
 
+    private String lookupKey;
+
     public TableColumnImpl(String columnName) {
         this.columnName = columnName;
+        this.lookupKey = ColumnIndexMap.toLookupKey(columnName);
     }
 
-    public abstract T getValueFromRowSet(RowSet rs) throws SQLException;
+    /** Reads the value of this column from the current row of the given result set.
+     * 
+     * @param rs Result set, positioned on the row to read.
+     * @param columnIndex 1-based index of this column in the result set, as resolved by a {@link ColumnIndexMap}.
+     * 
+     * @return The value of this column, possibly <code>null</code>.
+     * 
+     * @throws SQLException If the value could not be read or converted. */
+    public abstract T getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException;
+
+    /** Reads the value of this column from the given column storage of a {@link ColumnarResult}.
+     * 
+     * @param values Storage holding the values of this column.
+     * @param row 0-based index of the row to read.
+     * 
+     * @return The value of this column, possibly <code>null</code>.
+     * 
+     * @throws SQLException If the value could not be converted. */
+    public abstract T getValueFromColumn(ColumnValues values, int row) throws SQLException;
+
+    /** Writes the value of this column in the current row of the given result set in a canonical binary form, which is the same
+     * for equal values regardless of the database, JDBC driver and JVM time zone, e.g. to compute checksums of tables. Each value
+     * starts with {@link #NULL_TAG} or {@link #VALUE_TAG}, followed by a fixed-length or length-prefixed encoding of the value,
+     * so consecutive values can never be confused.
+     * 
+     * @param rs Result set, positioned on the row to read.
+     * @param columnIndex 1-based index of this column in the result set.
+     * @param out Output to write the encoded value to.
+     * 
+     * @throws SQLException If the value could not be read.
+     * @throws IOException If the value could not be written. */
+    public abstract void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException;
+
+    protected static void writeNull(DataOutput out) throws IOException {
+        out.writeByte(NULL_TAG);
+    }
+
+    protected static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeNull(out);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeByte(VALUE_TAG);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    String getLookupKey() {
+        return lookupKey;
+    }
 
     @Override
     public final String getColumnName() {
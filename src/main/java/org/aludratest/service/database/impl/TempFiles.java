@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Temporary files of a database service, e.g. for LOB values or query results which do not fit into memory. All files are
+ * deleted when the service is closed. Instances are thread safe. */
+public class TempFiles {
+
+    private final List<File> files = new ArrayList<File>();
+
+    private boolean closed;
+
+    /** Creates a new temporary file, which is deleted when this registry is closed, or when the JVM exits.
+     * 
+     * @param prefix Prefix of the file name.
+     * 
+     * @return The new, empty file.
+     * 
+     * @throws IOException If the file could not be created, or this registry has already been closed. */
+    public synchronized File createTempFile(String prefix) throws IOException {
+        if (closed) {
+            throw new IOException("Temporary files of the database service have already been deleted");
+        }
+        File file = File.createTempFile(prefix, ".tmp");
+        file.deleteOnExit();
+        files.add(file);
+        return file;
+    }
+
+    /** Returns the number of temporary files currently held by this registry.
+     * 
+     * @return The number of temporary files currently held by this registry. */
+    public synchronized int getFileCount() {
+        return files.size();
+    }
+
+    /** Deletes all temporary files. Data stored in these files cannot be read anymore afterwards. Files which cannot be deleted
+     * yet, e.g. because they are still memory-mapped on some platforms, are deleted when the JVM exits. */
+    public synchronized void close() {
+        closed = true;
+        for (File file : files) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        files.clear();
+    }
+
+}
@@ -15,11 +15,12 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.TimeColumn;
 
 public class TimeColumnImpl extends TableColumnImpl<Time> implements TimeColumn {
@@ -29,8 +30,19 @@ public class TimeColumnImpl extends TableColumnImpl<Time> implements TimeColumn
     }
 
     @Override
-    public Time getValueFromRowSet(RowSet rs) throws SQLException {
-        return rs.getTime(getColumnName());
+    public Time getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        return rs.getTime(columnIndex);
+    }
+
+    @Override
+    public Time getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        return values.getTime(row);
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        Time time = rs.getTime(columnIndex);
+        writeString(out, time == null ? null : time.toString());
     }
 
 }
@@ -15,12 +15,13 @@
  */
 package org.aludratest.service.database.impl;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Date;
 
-import javax.sql.RowSet;
-
 import org.aludratest.service.database.tablecolumn.TimestampColumn;
 
 public class TimestampColumnImpl extends TableColumnImpl<Date> implements TimestampColumn {
@@ -30,9 +31,22 @@ public class TimestampColumnImpl extends TableColumnImpl<Date> implements Timest
     }
 
     @Override
-    public Date getValueFromRowSet(RowSet rs) throws SQLException {
-        Timestamp ts = rs.getTimestamp(getColumnName());
-        return new Date(ts.getTime());
+    public Date getValueFromResultSet(ResultSet rs, int columnIndex) throws SQLException {
+        Timestamp ts = rs.getTimestamp(columnIndex);
+        return ts == null ? null : new Date(ts.getTime());
+    }
+
+    @Override
+    public Date getValueFromColumn(ColumnValues values, int row) throws SQLException {
+        Timestamp ts = values.getTimestamp(row);
+        return ts == null ? null : new Date(ts.getTime());
+    }
+
+    @Override
+    public void writeCanonicalValue(ResultSet rs, int columnIndex, DataOutput out) throws SQLException, IOException {
+        // unlike the values returned by this column, the string representation includes nanoseconds
+        Timestamp ts = rs.getTimestamp(columnIndex);
+        writeString(out, ts == null ? null : ts.toString());
     }
 
 }
@@ -85,4 +85,11 @@ public interface TableColumnFactory {
      * @return A new ClobColumn object identifying the given column. */
     public ClobColumn createClobColumn(String columnName);
 
+    /** Creates a new BlobColumn object for the column with the given name.
+     * 
+     * @param columnName Name of the column.
+     * 
+     * @return A new BlobColumn object identifying the given column. */
+    public BlobColumn createBlobColumn(String columnName);
+
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.validator;
+
+/** Validator for primitive <code>int</code> values, which can be used instead of a <code>Validator&lt;Integer&gt;</code> to check
+ * int column values without boxing them.
+ * 
+ * @see org.aludratest.service.database.DatabaseCondition#valueMatches(org.aludratest.service.database.DataRows, int,
+ *      org.aludratest.service.database.tablecolumn.IntColumn, IntValidator) */
+public interface IntValidator {
+
+    /** Checks the given value.
+     * 
+     * @param value Value to check. <code>NULL</code> values are never passed to validators.
+     * 
+     * @return <code>true</code> if the value is valid, <code>false</code> otherwise. */
+    boolean valid(int value);
+
+}
@@ -30,6 +30,14 @@ import org.junit.Before;
 
 public abstract class AbstractDatabaseServiceTest extends AbstractAludraServiceTest {
 
+	protected static final byte[] BINARY_CONTENT = new byte[20000];
+
+	static {
+		for (int i = 0; i < BINARY_CONTENT.length; i++) {
+			BINARY_CONTENT[i] = (byte) i;
+		}
+	}
+
 	protected DatabaseService service;
 
 	@Before
@@ -63,6 +71,14 @@ public abstract class AbstractDatabaseServiceTest extends AbstractAludraServiceT
 		executeStatement(conn, sql);
 		sql="INSERT INTO documents VALUES (?, ?)";
 		executePreparedStatement(conn, sql);		
+
+		sql = "CREATE TABLE binaries (id INT, data BLOB(64 K))";
+		executeStatement(conn, sql);
+		PreparedStatement ps = conn.prepareStatement("INSERT INTO binaries VALUES (?, ?)");
+		ps.setInt(1, 1);
+		ps.setBytes(2, BINARY_CONTENT);
+		ps.execute();
+		ps.close();
 		conn.close();
 
 		this.service = getLoggingService(DatabaseService.class, "dbtest");
@@ -38,6 +38,18 @@ public class DatabaseServicePermissionTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
 	}
 
+	@Test
+	public void testNoPermissions3() {
+		this.service = getLoggingService(DatabaseService.class, "dbtestp1");
+		service.perform().query("/* DELETE FROM test1 */ SELECT * FROM test1 -- DROP TABLE test1");
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		// a query followed by a harmful statement must not pass the check
+		service.perform().query("SELECT * FROM test1; DROP TABLE test1");
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+		service.perform().query("SELECT * FROM test1");
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+	}
+
 	@Test
 	public void testDmlPermissions() {
 		this.service = getLoggingService(DatabaseService.class, "dbtestp2");
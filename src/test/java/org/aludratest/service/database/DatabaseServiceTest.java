@@ -15,22 +15,58 @@
  */
 package org.aludratest.service.database;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.service.database.impl.SpilledDataRowsImpl;
+import org.aludratest.service.database.tablecolumn.BlobColumn;
 import org.aludratest.service.database.tablecolumn.ClobColumn;
 import org.aludratest.service.database.tablecolumn.DoubleColumn;
 import org.aludratest.service.database.tablecolumn.FloatColumn;
 import org.aludratest.service.database.tablecolumn.IntColumn;
 import org.aludratest.service.database.tablecolumn.LongColumn;
 import org.aludratest.service.database.tablecolumn.StringColumn;
+import org.aludratest.service.database.tablecolumn.TableColumn;
+import org.aludratest.service.database.validator.DoubleValidator;
+import org.aludratest.service.database.validator.IntValidator;
 import org.aludratest.testcase.TestStatus;
 import org.aludratest.util.validator.EqualsValidator;
+import org.databene.commons.FileUtil;
 import org.junit.Test;
 
 /** Tests the {@link DatabaseService}.
@@ -45,6 +81,9 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
         service.verify().assertValidQuery("ELECT * FROM test1");
 		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+        // fails only when the rows are fetched
+        service.verify().assertValidQuery("SELECT 1 / (test_id - test_id) FROM test1");
+		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
     }
 
     @Test
@@ -120,6 +159,32 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
 	}
 
+	@Test
+	public void testAssertNonEmptyQuery_withBackoff() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pattern = new ObjectName("org.aludratest.service.database:type=DatabaseService,*");
+		Set<ObjectName> existingNames = server.queryNames(pattern, null);
+
+		DatabaseService waitService = getLoggingService(DatabaseService.class, "dbtestbackoff");
+		try {
+			Set<ObjectName> names = server.queryNames(pattern, null);
+			names.removeAll(existingNames);
+			ObjectName name = names.iterator().next();
+
+			long start = System.currentTimeMillis();
+			waitService.verify().assertNonEmptyQuery("SELECT * FROM test1 WHERE test_id = 102");
+			assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+			assertTrue(System.currentTimeMillis() - start >= 1000);
+
+			// intervals of about 100, 200, 400 and 400 ms, where a fixed interval of 100 ms would take 11 attempts
+			long attempts = ((Long) server.getAttribute(name, "PollAttempts")).longValue();
+			assertTrue("Unexpected number of attempts: " + attempts, attempts >= 4 && attempts <= 6);
+		}
+		finally {
+			waitService.close();
+		}
+	}
+
 	@Test
 	public void testAssertValueMatches() {
 		DataRows rows = service.perform().query("SELECT * FROM test1 WHERE test_id = ?", Integer.valueOf(1));
@@ -137,6 +202,8 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
         assertFalse(service.check().isValidQuery("ELECT * FROM test1"));
 		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+        assertFalse(service.check().isValidQuery("SELECT 1 / (test_id - test_id) FROM test1"));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
     }
 
     @Test
@@ -159,6 +226,35 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
     }
 
+    @Test
+    public void testRowLimitedProbes() {
+        DatabaseService probeService = getLoggingService(DatabaseService.class, "dbtestprobe");
+        try {
+            assertFalse(probeService.check().isEmptyQuery("SELECT * FROM test1"));
+            assertTrue(probeService.check().isEmptyQuery("SELECT * FROM test1 WHERE test_id = ?", Integer.valueOf(-1)));
+            probeService.verify().assertSingleRowQuery("SELECT * FROM test1 ORDER BY test_id FETCH FIRST 1 ROWS ONLY");
+            assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+            probeService.verify().assertSingleRowQuery("SELECT * FROM test1");
+            assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+
+            // validations are not rewritten, so errors which only occur when fetching are still detected
+            assertTrue(probeService.check().isValidQuery("SELECT * FROM test1"));
+            assertFalse(probeService.check().isValidQuery("SELECT 1 / (test_id - test_id) FROM test1"));
+
+            // duplicate column names cannot be wrapped, so the original query is used
+            assertTrue(probeService.check().isNonEmptyQuery("SELECT * FROM test1 a, test1 b"));
+
+            // limits of probes must not leak into regular queries using the same statement
+            assertTrue(probeService.check().isNonEmptyQuery("SELECT * FROM test1 a, test1 b"));
+            assertEquals(4, probeService.perform().query("SELECT * FROM test1 a, test1 b").getRowCount());
+            assertTrue(service.check().isNonEmptyQuery("SELECT * FROM test1 WHERE test_id > ?", Integer.valueOf(0)));
+            assertEquals(2, service.perform().query("SELECT * FROM test1 WHERE test_id > ?", Integer.valueOf(0)).getRowCount());
+        }
+        finally {
+            probeService.close();
+        }
+    }
+
     @Test
     public void testSimpleQuery() {
         DataRows rows = service.perform().query("SELECT * FROM test1");
@@ -181,6 +277,45 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
     }
 
+	@Test
+	public void testRandomRowAccess() {
+		DataRows rows = service.perform().query("SELECT * FROM test1 ORDER BY test_id");
+		StringColumn sc = service.getTableColumnFactory().createStringColumn("test_value1");
+		assertEquals("A test", rows.getRow(2).getValue(service, sc));
+		assertEquals("Hello World", rows.getRow(1).getValue(service, sc));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		try {
+			rows.getRow(3);
+			fail("NoSuchElementException expected");
+		}
+		catch (NoSuchElementException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testStreamQuerySkipForward() {
+		DataRows rows = service.perform().streamQuery("SELECT * FROM test1 ORDER BY test_id");
+		StringColumn sc = service.getTableColumnFactory().createStringColumn("test_value1");
+		assertEquals("A test", rows.getRow(2).getValue(service, sc));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		try {
+			rows.getRow(1);
+			fail("NoSuchElementException expected");
+		}
+		catch (NoSuchElementException e) {
+			// expected
+		}
+		// the iteration must not silently pass over the skipped first row
+		try {
+			rows.iterator().next();
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testParameterizedQuery() {
 		DataRows rows = service.perform().query("SELECT * FROM test1 WHERE test_value1 = ? AND test_id = ?", "Hello World", 1);
@@ -192,6 +327,54 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertNull(rows);
 	}
 
+	@Test
+	public void testStreamQuery() {
+		DataRows rows = service.perform().streamQuery("SELECT * FROM test1 ORDER BY test_id");
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		IntColumn ic = service.getTableColumnFactory().createIntColumn("test_id");
+		try {
+			rows.getRowCount();
+			fail("AutomationException expected");
+		}
+		catch (AutomationException e) {
+			// expected, as not all rows have been read yet
+		}
+		Iterator<DataRow> iter = rows.iterator();
+		DataRow first = iter.next();
+		assertEquals(1, first.getValue(service, ic).intValue());
+		assertEquals(1, service.perform().getColumnValue(rows, 1, ic).intValue());
+		DataRow second = iter.next();
+		assertEquals(2, second.getValue(service, ic).intValue());
+		assertFalse(iter.hasNext());
+		assertEquals(2, rows.getRowCount());
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		// cursor has moved on, so first row is no longer available
+		assertNull(first.getValue(service, ic));
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testRepeatedStatements() {
+		StringColumn sc = service.getTableColumnFactory().createStringColumn("test_value1");
+		for (int i = 0; i < 3; i++) {
+			DataRows rows = service.perform().query("SELECT * FROM test1 WHERE test_id = ?", Integer.valueOf(1));
+			assertEquals("Hello World", service.perform().getColumnValue(rows, 1, sc));
+			rows = service.perform().query("SELECT * FROM test1 WHERE test_id = ?", Integer.valueOf(2));
+			assertEquals("A test", service.perform().getColumnValue(rows, 1, sc));
+		}
+
+		// cached statements must survive a DDL change of the queried table
+		assertEquals(0, service.perform().query("SELECT * FROM test2").getRowCount());
+		service.perform().update("DROP TABLE test2");
+		service.perform().update("CREATE TABLE test2 (test_id INTEGER NOT NULL PRIMARY KEY, test_value1 VARCHAR(100))");
+		service.perform().insert("INSERT INTO test2 (test_id, test_value1) VALUES (?, ?)", Integer.valueOf(1), "New");
+		DataRows rows = service.perform().query("SELECT * FROM test2");
+		assertEquals("New", service.perform().getColumnValue(rows, 1, sc));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+	}
+
     @Test
     public void testInvalidQuery() {
         DataRows rows = service.perform().query("SELECT * FROM nosuchtable");
@@ -229,6 +412,72 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
         assertEquals(23.1234, row.getValue(service, dc).doubleValue(), 0.000001);
     }
 
+	@Test
+	public void testQueryNullValues() {
+		DataRows rows = service.perform().query("SELECT * FROM test1 WHERE test_id = 2");
+
+		FloatColumn fc = service.getTableColumnFactory().createFloatColumn("test_value4");
+		assertNull(service.perform().getColumnValue(rows, 1, fc));
+		StringColumn sc = service.getTableColumnFactory().createStringColumn("test_value2");
+		assertNull(service.perform().getColumnValue(rows, 1, sc));
+		LongColumn lc = service.getTableColumnFactory().createLongColumn("test_value3");
+		assertEquals(Integer.MIN_VALUE - 2l, service.perform().getColumnValue(rows, 1, lc).longValue());
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testPrimitiveColumnAccess() {
+		DataRows rows = service.perform().query("SELECT * FROM test1 ORDER BY test_id");
+		IntColumn ic = service.getTableColumnFactory().createIntColumn("test_id");
+		LongColumn lc = service.getTableColumnFactory().createLongColumn("test_value3");
+		DoubleColumn dc = service.getTableColumnFactory().createDoubleColumn("test_value4");
+
+		assertArrayEquals(new int[] { 1, 2 }, service.perform().getInts(rows, ic));
+		assertArrayEquals(new long[] { Integer.MAX_VALUE + 2l, Integer.MIN_VALUE - 2l }, service.perform().getLongs(rows, lc));
+		assertArrayEquals(new double[] { 17.5, 0 }, service.perform().getDoubles(rows, dc), 0.0001);
+		BitSet nulls = service.perform().getNullMask(rows, dc);
+		assertFalse(nulls.get(0));
+		assertTrue(nulls.get(1));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		IntValidator positive = new IntValidator() {
+			@Override
+			public boolean valid(int value) {
+				return value > 0;
+			}
+		};
+		assertTrue(service.check().valueMatches(rows, 2, ic, positive));
+		service.verify().assertValueMatches(rows, 1, ic, positive);
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		// NULL never matches
+		DoubleValidator any = new DoubleValidator() {
+			@Override
+			public boolean valid(double value) {
+				return true;
+			}
+		};
+		assertTrue(service.check().valueMatches(rows, 1, dc, any));
+		service.verify().assertValueMatches(rows, 2, dc, any);
+		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testQueryUnknownColumn() {
+		DataRows rows = service.perform().query("SELECT test_id AS id, test_value1 FROM test1 ORDER BY test_id");
+
+		// column labels and names are resolved case-insensitively
+		IntColumn ic = service.getTableColumnFactory().createIntColumn("ID");
+		assertEquals(1, service.perform().getColumnValue(rows, 1, ic).intValue());
+		StringColumn sc = service.getTableColumnFactory().createStringColumn("Test_Value1");
+		assertEquals("Hello World", service.perform().getColumnValue(rows, 1, sc));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		StringColumn unknown = service.getTableColumnFactory().createStringColumn("test_value2");
+		assertNull(service.perform().getColumnValue(rows, 1, unknown));
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+	}
+
     @Test
     public void testQueryInvalidDatatype() {
         DataRows rows = service.perform().query("SELECT * FROM test1");
@@ -289,6 +538,39 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
     }
 
+	@Test
+	public void testInsertBatch() {
+		List<Object[]> parameterSets = new ArrayList<Object[]>();
+		for (int i = 1; i <= 5; i++) {
+			parameterSets.add(new Object[] { Integer.valueOf(i), "Row " + i });
+		}
+		int[] counts = service.perform().insertBatch("INSERT INTO test2 (test_id, test_value1) VALUES (?, ?)",
+				parameterSets.iterator());
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		assertEquals(1, counts.length);
+		assertEquals(5, counts[0]);
+		assertEquals(5, service.perform().query("SELECT * FROM test2").getRowCount());
+
+		counts = service.perform().updateBatch("UPDATE test2 SET test_value1 = ? WHERE test_id = ?",
+				Arrays.asList(new Object[] { "Updated", Integer.valueOf(1) }, new Object[] { "Updated", Integer.valueOf(2) })
+						.iterator());
+		assertEquals(2, counts[0]);
+		assertEquals(2, service.perform().query("SELECT * FROM test2 WHERE test_value1 = 'Updated'").getRowCount());
+
+		// duplicate key fails, and the complete batch is rolled back
+		parameterSets.clear();
+		parameterSets.add(new Object[] { Integer.valueOf(6), "Row 6" });
+		parameterSets.add(new Object[] { Integer.valueOf(1), "Duplicate" });
+		service.perform().insertBatch("INSERT INTO test2 (test_id, test_value1) VALUES (?, ?)", parameterSets.iterator());
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+		assertEquals(0, service.perform().query("SELECT * FROM test2 WHERE test_id = 6").getRowCount());
+
+		counts = service.perform().deleteBatch("DELETE FROM test2 WHERE test_id = ?",
+				Collections.singletonList(new Object[] { Integer.valueOf(5) }).iterator());
+		assertEquals(1, counts[0]);
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+	}
+
 	@Test
 	public void testTransaction() {
 		service.perform().beginTransaction();
@@ -312,6 +594,616 @@ public class DatabaseServiceTest extends AbstractDatabaseServiceTest {
 		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
 	}
 	
+
+	@Test
+	public void testNestedTransactions() {
+		service.perform().beginTransaction();
+		service.perform().insert("INSERT INTO test2 (test_id) VALUES (1)");
+		service.perform().beginTransaction();
+		service.perform().insert("INSERT INTO test2 (test_id) VALUES (2)");
+		service.perform().rollbackTransaction();
+		assertEquals(1, service.perform().query("SELECT * FROM test2").getRowCount());
+
+		service.perform().beginTransaction();
+		service.perform().insert("INSERT INTO test2 (test_id) VALUES (3)");
+		service.perform().commitTransaction();
+		assertEquals(2, service.perform().query("SELECT * FROM test2").getRowCount());
+
+		// the outer transaction is still active
+		service.perform().rollbackTransaction();
+		assertEquals(0, service.perform().query("SELECT * FROM test2").getRowCount());
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testSavepoints() {
+		service.perform().beginTransaction();
+		service.perform().insert("INSERT INTO test2 (test_id) VALUES (1)");
+		service.perform().setSavepoint("fixture");
+
+		// each "test" starts with the fixture
+		for (int i = 2; i <= 4; i++) {
+			service.perform().insert("INSERT INTO test2 (test_id) VALUES (?)", Integer.valueOf(i));
+			service.perform().setSavepoint("test");
+			service.perform().delete("DELETE FROM test2");
+			service.perform().rollbackToSavepoint("test");
+			assertEquals(2, service.perform().query("SELECT * FROM test2").getRowCount());
+			service.perform().rollbackToSavepoint("fixture");
+			assertEquals(1, service.perform().query("SELECT * FROM test2").getRowCount());
+		}
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		// savepoints set after the fixture have been discarded
+		service.perform().rollbackToSavepoint("test");
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+
+		service.perform().releaseSavepoint("fixture");
+		service.perform().commitTransaction();
+		assertEquals(1, service.perform().query("SELECT * FROM test2").getRowCount());
+
+		// no transaction active
+		service.perform().setSavepoint("fixture");
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testSavepointsOutsideNestedTransaction() {
+		service.perform().beginTransaction();
+		service.perform().insert("INSERT INTO test2 (test_id) VALUES (1)");
+		service.perform().setSavepoint("outer");
+		service.perform().beginTransaction();
+		service.perform().insert("INSERT INTO test2 (test_id) VALUES (2)");
+
+		// must not discard the savepoint of the nested transaction
+		service.perform().rollbackToSavepoint("outer");
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+		service.perform().releaseSavepoint("outer");
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+
+		// only the nested transaction is committed, so the outer one can still be rolled back
+		service.perform().commitTransaction();
+		service.perform().rollbackToSavepoint("outer");
+		assertEquals(1, service.perform().query("SELECT * FROM test2").getRowCount());
+		service.perform().rollbackTransaction();
+		assertEquals(0, service.perform().query("SELECT * FROM test2").getRowCount());
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testSavepointsKeepStatementCache() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pattern = new ObjectName("org.aludratest.service.database:type=DatabaseService,*");
+		Set<ObjectName> existingNames = server.queryNames(pattern, null);
+
+		DatabaseService cacheService = getLoggingService(DatabaseService.class, "dbtest");
+		try {
+			Set<ObjectName> names = server.queryNames(pattern, null);
+			names.removeAll(existingNames);
+			ObjectName name = names.iterator().next();
+
+			cacheService.perform().beginTransaction();
+			cacheService.perform().setSavepoint("fixture");
+			cacheService.perform().query("SELECT * FROM test1");
+			long misses = ((Long) server.getAttribute(name, "StatementCacheMisses")).longValue();
+
+			// without DDL since the savepoint, the prepared statements stay valid
+			cacheService.perform().rollbackToSavepoint("fixture");
+			cacheService.perform().query("SELECT * FROM test1");
+			assertEquals(Long.valueOf(misses), server.getAttribute(name, "StatementCacheMisses"));
+
+			// statements prepared after DDL may refer to objects which are rolled back
+			cacheService.perform().update("CREATE TABLE test_rollback (test_id INTEGER)");
+			cacheService.perform().query("SELECT * FROM test_rollback");
+			cacheService.perform().query("SELECT * FROM test1");
+			misses = ((Long) server.getAttribute(name, "StatementCacheMisses")).longValue();
+			cacheService.perform().rollbackToSavepoint("fixture");
+			cacheService.perform().query("SELECT * FROM test1");
+			assertEquals(Long.valueOf(misses + 1), server.getAttribute(name, "StatementCacheMisses"));
+			cacheService.perform().rollbackTransaction();
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		}
+		finally {
+			cacheService.close();
+		}
+	}
+
+	@Test
+	public void testConcurrentTransactions() throws Exception {
+		final CountDownLatch inserted = new CountDownLatch(2);
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i++) {
+			final int testId = i + 1;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					service.perform().beginTransaction();
+					service.perform().insert("INSERT INTO test2 (test_id) VALUES (?)", Integer.valueOf(testId));
+					// keep both transactions open at the same time
+					inserted.countDown();
+					try {
+						inserted.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+					if (testId == 1) {
+						service.perform().commitTransaction();
+					}
+					else {
+						service.perform().rollbackTransaction();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join(30000);
+		}
+
+		// each thread has ended its own transaction only
+		DataRows rows = service.perform().query("SELECT test_id FROM test2");
+		assertEquals(1, rows.getRowCount());
+		IntColumn id = service.getTableColumnFactory().createIntColumn("test_id");
+		assertEquals(Integer.valueOf(1), service.perform().getColumnValue(rows, 1, id));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testConnectionPool() {
+		DatabaseService poolService = getLoggingService(DatabaseService.class, "dbtestpool");
+		try {
+			// each unfinished stream keeps its connection
+			DataRows stream1 = poolService.perform().streamQuery("SELECT * FROM test1");
+			DataRows stream2 = poolService.perform().streamQuery("SELECT * FROM test1");
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+			assertNull(poolService.perform().query("SELECT * FROM test1"));
+			assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+
+			// finishing a stream returns its connection to the pool
+			Iterator<DataRow> iter = stream1.iterator();
+			while (iter.hasNext()) {
+				iter.next();
+			}
+			assertEquals(2, poolService.perform().query("SELECT * FROM test1").getRowCount());
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+			// transaction keeps its connection for all operations
+			poolService.perform().beginTransaction();
+			poolService.perform().insert("INSERT INTO test1 (test_id, test_value1) VALUES(79, 'TA test')");
+			assertEquals(1, poolService.perform().query("SELECT 1 FROM test1 WHERE test_id = 79").getRowCount());
+			poolService.perform().rollbackTransaction();
+			assertEquals(0, poolService.perform().query("SELECT 1 FROM test1 WHERE test_id = 79").getRowCount());
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+			assertNotNull(stream2);
+		}
+		finally {
+			poolService.close();
+		}
+	}
+
+	@Test
+	public void testAsyncQueries() throws Exception {
+		Future<Integer> insert = service.async().insert("INSERT INTO test2 (test_id, test_value1) VALUES (?, ?)",
+				Integer.valueOf(81), "Async");
+		assertEquals(1, insert.get().intValue());
+
+		Future<DataRows> rows1 = service.async().query("SELECT * FROM test1");
+		Future<DataRows> rows2 = service.async().query("SELECT * FROM test2 WHERE test_id = ?", Integer.valueOf(81));
+		Future<Boolean> empty = service.async().isEmptyQuery("SELECT * FROM test2 WHERE test_id = 82");
+		assertEquals(2, rows1.get().getRowCount());
+		assertEquals(1, rows2.get().getRowCount());
+		assertTrue(empty.get().booleanValue());
+
+		try {
+			service.async().query("SELECT * FROM no_such_table").get();
+			fail("ExecutionException expected");
+		}
+		catch (ExecutionException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testAsyncQueriesOnClose() throws Exception {
+		DatabaseService asyncService = getLoggingService(DatabaseService.class, "dbtest");
+		List<Future<DataRows>> results = new ArrayList<Future<DataRows>>();
+		try {
+			for (int i = 0; i < 10; i++) {
+				results.add(asyncService.async().query("SELECT * FROM test1 a, test1 b, test1 c"));
+			}
+		}
+		finally {
+			asyncService.close();
+		}
+		// operations submitted before closing are still executed with open connections
+		for (Future<DataRows> result : results) {
+			assertEquals(8, result.get().getRowCount());
+		}
+	}
+
+	@Test
+	public void testLobStreams() throws Exception {
+		DatabaseService lobService = getLoggingService(DatabaseService.class, "dbtestlob");
+		try {
+			Reader fileReader = new FileReader("LICENSE");
+			String license = readFully(fileReader);
+
+			DataRows rows = lobService.perform().query("SELECT * FROM documents");
+			ClobColumn cc = lobService.getTableColumnFactory().createClobColumn("text");
+			Reader reader = lobService.perform().getCharacterStream(rows, 1, cc);
+			assertEquals(license, readFully(reader));
+			Clob clob = lobService.perform().getColumnValue(rows, 1, cc);
+			assertEquals(license.length(), clob.length());
+			assertEquals(license.substring(10, 30), clob.getSubString(11, 20));
+
+			rows = lobService.perform().query("SELECT * FROM binaries");
+			BlobColumn bc = lobService.getTableColumnFactory().createBlobColumn("data");
+			InputStream in = lobService.perform().getBinaryStream(rows, 1, bc);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] bytes = new byte[1024];
+			int read;
+			while ((read = in.read(bytes)) != -1) {
+				out.write(bytes, 0, read);
+			}
+			in.close();
+			assertArrayEquals(BINARY_CONTENT, out.toByteArray());
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+			// streamed rows read LOBs directly from the database
+			rows = lobService.perform().streamQuery("SELECT * FROM binaries");
+			Iterator<DataRow> iter = rows.iterator();
+			Blob blob = iter.next().getValue(lobService, bc);
+			assertArrayEquals(BINARY_CONTENT, blob.getBytes(1, (int) blob.length()));
+			assertFalse(iter.hasNext());
+		}
+		finally {
+			lobService.close();
+		}
+	}
+
+	private static String readFully(Reader reader) throws IOException {
+		try {
+			StringBuilder sb = new StringBuilder();
+			char[] buf = new char[1024];
+			int read;
+			while ((read = reader.read(buf)) != -1) {
+				sb.append(buf, 0, read);
+			}
+			return sb.toString();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testSpilledQueryResult() {
+		List<Object[]> parameterSets = new ArrayList<Object[]>();
+		for (int i = 1; i <= 150; i++) {
+			parameterSets.add(new Object[] { Integer.valueOf(i), "Row " + i, Long.valueOf(i * 1000L) });
+		}
+		service.perform().insertBatch("INSERT INTO test2 (test_id, test_value1, test_value3) VALUES (?, ?, ?)",
+				parameterSets.iterator());
+		// Derby does not accept NULL parameters without a type, so add the NULL values separately
+		assertEquals(50, service.perform().update("UPDATE test2 SET test_value3 = NULL WHERE MOD(test_id, 3) = 0"));
+
+		int existingFiles = countTempFiles("aludratest-rows-");
+		DatabaseService spillService = getLoggingService(DatabaseService.class, "dbtestspill");
+		try {
+			DataRows rows = spillService.perform().query("SELECT * FROM test2 ORDER BY test_id");
+			assertTrue(rows instanceof SpilledDataRowsImpl);
+			assertEquals(existingFiles + 1, countTempFiles("aludratest-rows-"));
+			assertEquals(150, rows.getRowCount());
+			StringColumn sc = spillService.getTableColumnFactory().createStringColumn("test_value1");
+			LongColumn lc = spillService.getTableColumnFactory().createLongColumn("test_value3");
+			assertEquals("Row 100", spillService.perform().getColumnValue(rows, 100, sc));
+			assertEquals("Row 1", spillService.perform().getColumnValue(rows, 1, sc));
+			assertEquals(Long.valueOf(149000L), spillService.perform().getColumnValue(rows, 149, lc));
+			assertNull(spillService.perform().getColumnValue(rows, 150, lc));
+
+			// bulk access reads all blocks of the spilled result
+			long[] values = spillService.perform().getLongs(rows, lc);
+			assertEquals(150, values.length);
+			assertEquals(1000L, values[0]);
+			assertEquals(149000L, values[148]);
+			BitSet nulls = spillService.perform().getNullMask(rows, lc);
+			assertEquals(50, nulls.cardinality());
+			assertTrue(nulls.get(149));
+			assertFalse(nulls.get(148));
+
+			int count = 0;
+			for (DataRow row : rows) {
+				count++;
+				assertEquals("Row " + count, row.getValue(spillService, sc));
+			}
+			assertEquals(150, count);
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		}
+		finally {
+			spillService.close();
+		}
+		// the temporary files are deleted when the service is closed
+		assertEquals(existingFiles, countTempFiles("aludratest-rows-"));
+	}
+
+	private static int countTempFiles(String prefix) {
+		int count = 0;
+		for (String fileName : new File(System.getProperty("java.io.tmpdir")).list()) {
+			if (fileName.startsWith(prefix)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testMetricsMBean() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pattern = new ObjectName("org.aludratest.service.database:type=DatabaseService,*");
+		Set<ObjectName> existingNames = server.queryNames(pattern, null);
+
+		DatabaseService metricsService = getLoggingService(DatabaseService.class, "dbtest");
+		ObjectName name;
+		try {
+			Set<ObjectName> names = server.queryNames(pattern, null);
+			names.removeAll(existingNames);
+			assertEquals(1, names.size());
+			name = names.iterator().next();
+
+			metricsService.perform().query("SELECT * FROM test1");
+			metricsService.perform().insert("INSERT INTO test2 (test_id) VALUES (1)");
+			metricsService.verify().assertNonEmptyQuery("SELECT * FROM test2");
+			metricsService.perform().beginTransaction();
+			metricsService.perform().rollbackTransaction();
+
+			CompositeData queries = (CompositeData) server.getAttribute(name, "QueryStatistics");
+			assertEquals(Long.valueOf(1), queries.get("count"));
+			assertEquals(Long.valueOf(0), queries.get("errorCount"));
+			assertEquals(Long.valueOf(1), ((CompositeData) server.getAttribute(name, "InsertStatistics")).get("count"));
+			assertEquals(Long.valueOf(1), ((CompositeData) server.getAttribute(name, "PollStatistics")).get("count"));
+			assertEquals(Long.valueOf(1), ((CompositeData) server.getAttribute(name, "TransactionStatistics")).get("errorCount"));
+			assertEquals(Long.valueOf(2), server.getAttribute(name, "RowsFetched"));
+			assertTrue(((Long) server.getAttribute(name, "BytesMaterialized")).longValue() > 0);
+			assertEquals(Long.valueOf(1), server.getAttribute(name, "PollAttempts"));
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		}
+		finally {
+			metricsService.close();
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testSlowStatementLog() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pattern = new ObjectName("org.aludratest.service.database:type=DatabaseService,*");
+		Set<ObjectName> existingNames = server.queryNames(pattern, null);
+
+		DatabaseService slowService = getLoggingService(DatabaseService.class, "dbtestslow");
+		try {
+			Set<ObjectName> names = server.queryNames(pattern, null);
+			names.removeAll(existingNames);
+			ObjectName name = names.iterator().next();
+
+			// every statement is slow, and the second execution captures the execution plan
+			for (int i = 0; i < 2; i++) {
+				assertEquals(2, slowService.perform().query("SELECT * FROM test1 WHERE test_id > ?", Integer.valueOf(0))
+						.getRowCount());
+				slowService.perform().update("UPDATE test1 SET test_value2 = ? WHERE test_id = 1", "Slow");
+			}
+			assertEquals(Long.valueOf(4), server.getAttribute(name, "SlowStatements"));
+			long capturedPlans = ((Long) server.getAttribute(name, "CapturedPlans")).longValue();
+			assertTrue(capturedPlans > 0);
+
+			// plans are captured only once per statement
+			slowService.perform().query("SELECT * FROM test1 WHERE test_id > ?", Integer.valueOf(0));
+			slowService.perform().update("UPDATE test1 SET test_value2 = ? WHERE test_id = 1", "Slow");
+			assertEquals(Long.valueOf(capturedPlans), server.getAttribute(name, "CapturedPlans"));
+
+			assertEquals(1, slowService.perform().query("SELECT * FROM test1 WHERE test_value2 = ?", "Slow").getRowCount());
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		}
+		finally {
+			slowService.close();
+		}
+	}
+
+	@Test
+	public void testQueryResultCache() {
+		DatabaseService cacheService = getLoggingService(DatabaseService.class, "dbtestcache");
+		try {
+			String query = "SELECT * FROM test1 WHERE test_id > ?";
+			DataRows rows = cacheService.perform().query(query, Integer.valueOf(0));
+			assertEquals(2, rows.getRowCount());
+			assertSame(rows, cacheService.perform().query(query, Integer.valueOf(0)));
+			assertNotSame(rows, cacheService.perform().query(query, Integer.valueOf(1)));
+
+			// modifications of other tables keep the result
+			DataRows otherRows = cacheService.perform().query("SELECT * FROM test2");
+			cacheService.perform().insert("INSERT INTO test2 (test_id) VALUES (1)");
+			assertSame(rows, cacheService.perform().query(query, Integer.valueOf(0)));
+			assertNotSame(otherRows, cacheService.perform().query("SELECT * FROM test2"));
+
+			cacheService.perform().insert("INSERT INTO test1 (test_id, test_value1) VALUES (3, 'Cached')");
+			rows = cacheService.perform().query(query, Integer.valueOf(0));
+			assertEquals(3, rows.getRowCount());
+
+			// results within a transaction are neither cached nor taken from the cache
+			cacheService.perform().beginTransaction();
+			cacheService.perform().delete("DELETE FROM test1 WHERE test_id = 3");
+			DataRows transactionRows = cacheService.perform().query(query, Integer.valueOf(0));
+			assertEquals(2, transactionRows.getRowCount());
+			assertNotSame(transactionRows, cacheService.perform().query(query, Integer.valueOf(0)));
+			cacheService.perform().rollbackTransaction();
+
+			assertEquals(3, cacheService.perform().query(query, Integer.valueOf(0)).getRowCount());
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		}
+		finally {
+			cacheService.close();
+		}
+	}
+
+	@Test
+	public void testTemplates() {
+		DatabaseService templateService = getLoggingService(DatabaseService.class, "dbtesttemplate");
+		try {
+			assertFalse(templateService.check().isTemplateAvailable("seeded"));
+			templateService.perform().insert("INSERT INTO test2 (test_id, test_value1) VALUES (1, 'Seeded')");
+			templateService.perform().createTemplate("seeded");
+			assertTrue(templateService.check().isTemplateAvailable("seeded"));
+
+			// each restore discards the changes made since
+			for (int i = 0; i < 2; i++) {
+				templateService.perform().delete("DELETE FROM test2");
+				templateService.perform().insert("INSERT INTO test1 (test_id) VALUES (" + (3 + i) + ")");
+				templateService.perform().restoreTemplate("seeded");
+				assertEquals(1, templateService.perform().query("SELECT * FROM test2").getRowCount());
+				assertEquals(2, templateService.perform().query("SELECT * FROM test1").getRowCount());
+			}
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+			templateService.perform().restoreTemplate("unknown");
+			assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+
+			templateService.perform().beginTransaction();
+			templateService.perform().restoreTemplate("seeded");
+			assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+			templateService.perform().rollbackTransaction();
+		}
+		finally {
+			templateService.close();
+			FileUtil.deleteDirectory(new File("target/test-templates"));
+		}
+	}
+
+	@Test
+	public void testAssertDataRowsEqual() {
+		IntColumn id = service.getTableColumnFactory().createIntColumn("test_id");
+		StringColumn value1 = service.getTableColumnFactory().createStringColumn("test_value1");
+		TableColumn<?>[] key = new TableColumn<?>[] { id };
+		DataRows rows = service.perform().query("SELECT * FROM test1 ORDER BY test_id");
+
+		service.verify().assertDataRowsEqual(new Object[][] { { 2, "A test" }, { 1, "Hello World" } }, rows, false, key, id,
+				value1);
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		service.verify().assertDataRowsEqual(new Object[][] { { 2, "A test" }, { 1, "Hello World" } }, rows, true, key, id,
+				value1);
+		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+		service.verify().assertDataRowsEqual(new Object[][] { { 1, "Hello" } }, rows, false, key, id, value1);
+		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+
+		service.perform().insert("INSERT INTO test2 SELECT * FROM test1");
+		service.verify().assertQueryResultsEqual("SELECT * FROM test1", "SELECT * FROM test2", false, key, id, value1);
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		service.verify().assertDataRowsEqual(service.perform().query("SELECT * FROM test1"),
+				service.perform().query("SELECT * FROM test2 WHERE test_id = 1"), false, new TableColumn<?>[0], id, value1);
+		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+
+		// key columns must be compared
+		service.verify().assertDataRowsEqual(rows, rows, false, key, value1);
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testAssertSortedQueryResultsEqual() {
+		IntColumn id = service.getTableColumnFactory().createIntColumn("test_id");
+		StringColumn value1 = service.getTableColumnFactory().createStringColumn("test_value1");
+		TableColumn<?>[] key = new TableColumn<?>[] { id };
+		service.perform().insert("INSERT INTO test2 SELECT * FROM test1");
+
+		DatabaseService sourceService = getLoggingService(DatabaseService.class, "dbtest");
+		try {
+			service.verify().assertSortedQueryResultsEqual(sourceService, "SELECT * FROM test1 ORDER BY test_id",
+					"SELECT * FROM test2 ORDER BY test_id", key, id, value1);
+			assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+			service.perform().update("UPDATE test2 SET test_value1 = 'Migrated' WHERE test_id = 2");
+			service.verify().assertSortedQueryResultsEqual(sourceService, "SELECT * FROM test1 ORDER BY test_id",
+					"SELECT * FROM test2 ORDER BY test_id", key, id, value1);
+			assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+
+			// descending order cannot be merged
+			service.verify().assertSortedQueryResultsEqual(null, "SELECT * FROM test1 ORDER BY test_id DESC",
+					"SELECT * FROM test2 ORDER BY test_id DESC", key, id, value1);
+			assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+
+			// streamed rows have been closed, so the pool is not exhausted
+			assertEquals(2, service.perform().query("SELECT * FROM test2").getRowCount());
+		}
+		finally {
+			sourceService.close();
+		}
+	}
+
+	@Test
+	public void testAggregateAssertions() {
+		service.verify().assertRowCount("SELECT * FROM test1", 2);
+		service.verify().assertRowCount("SELECT * FROM test1 WHERE test_id > ?", 1, Integer.valueOf(1));
+		service.verify().assertSum("SELECT * FROM test1", "test_id", Integer.valueOf(3));
+		service.verify().assertSum("SELECT * FROM test1", "test_value5", new BigDecimal("46.2468"));
+		service.verify().assertSum("SELECT * FROM test2", "test_id", null);
+		service.verify().assertMinMax("SELECT * FROM test1", "test_value3", Long.valueOf(Integer.MIN_VALUE - 2l),
+				Long.valueOf(Integer.MAX_VALUE + 2l));
+		service.verify().assertDistinctCount("SELECT * FROM test1", "test_value5", 1);
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		assertTrue(service.check().hasRowCount("SELECT * FROM test1", 2));
+		assertFalse(service.check().hasRowCount("SELECT * FROM test1", 3));
+		assertFalse(service.check().hasRowCount("SELECT * FROM nonexisting", 0));
+		assertTrue(service.check().hasDistinctCount("SELECT * FROM test1", "test_value4", 1));
+
+		service.verify().assertRowCount("SELECT * FROM test1", 3);
+		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+		service.verify().assertMinMax("SELECT * FROM test1", "test_id", Integer.valueOf(1), Integer.valueOf(3));
+		assertEquals(TestStatus.FAILED, getLastTestStep().getTestStatus());
+
+		// column names are inserted into the generated query
+		service.verify().assertSum("SELECT * FROM test1", "test_id) FROM test1; --", Integer.valueOf(3));
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+	}
+
+	@Test
+	public void testTableChecksum() {
+		IntColumn id = service.getTableColumnFactory().createIntColumn("test_id");
+		StringColumn value1 = service.getTableColumnFactory().createStringColumn("test_value1");
+		service.perform().insert("INSERT INTO test2 SELECT * FROM test1");
+
+		String checksum = service.perform().getTableChecksum("test1", 2, id, id, value1);
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+		assertNotNull(checksum);
+		assertEquals(checksum, service.perform().getTableChecksum("test2", 2, id, id, value1));
+		// the checksum does not depend on the partitioning
+		assertEquals(checksum, service.perform().getTableChecksum("test2", 1, id, id, value1));
+		assertEquals(checksum, service.perform().getTableChecksum("test2", 8, id, id, value1));
+
+		service.perform().update("UPDATE test2 SET test_value1 = 'Migrated' WHERE test_id = 2");
+		assertFalse(checksum.equals(service.perform().getTableChecksum("test2", 2, id, id, value1)));
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		// rows with a NULL key are included in partitioned checksums, too
+		LongColumn value3 = service.getTableColumnFactory().createLongColumn("test_value3");
+		service.perform().update("UPDATE test2 SET test_value3 = NULL WHERE test_id = 1");
+		String nullKeyChecksum = service.perform().getTableChecksum("test2", 1, value3, id, value3);
+		assertEquals(nullKeyChecksum, service.perform().getTableChecksum("test2", 4, value3, id, value3));
+
+		// the partitions do not wait for the connection of the transaction
+		service.perform().beginTransaction();
+		try {
+			assertEquals(nullKeyChecksum, service.perform().getTableChecksum("test2", 8, value3, id, value3));
+		}
+		finally {
+			service.perform().rollbackTransaction();
+		}
+		assertEquals(TestStatus.PASSED, getLastTestStep().getTestStatus());
+
+		// table names are inserted into the generated queries
+		service.perform().getTableChecksum("test1; DROP TABLE test1", 2, id, id, value1);
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+		service.perform().getTableChecksum("test1", 0, id, id, value1);
+		assertEquals(TestStatus.FAILEDAUTOMATION, getLastTestStep().getTestStatus());
+	}
+
 	@Test
 	public void testClob() {
 		DataRows rows = service.perform().query("SELECT * FROM documents");
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aludratest.util.poll.PolledTask;
+import org.junit.Test;
+
+public class BackoffPollerTest {
+
+	@Test
+	public void testGrowingIntervals() {
+		BackoffPoller poller = new BackoffPoller(700, 50, 2.0, 200, 0.0);
+		final List<Long> runs = new ArrayList<Long>();
+		String result = poller.poll(new PolledTask<String>() {
+			@Override
+			public String run() {
+				runs.add(Long.valueOf(System.nanoTime()));
+				return null;
+			}
+
+			@Override
+			public String timedOut() {
+				return "timeout";
+			}
+		});
+		assertEquals("timeout", result);
+		assertEquals(runs.size(), poller.getAttempts());
+
+		// 50, 100, 200, 200, ... ms
+		long[] minIntervals = { 50, 100, 200, 200 };
+		assertTrue("Too few attempts: " + runs.size(), runs.size() > minIntervals.length);
+		for (int i = 0; i < minIntervals.length; i++) {
+			long interval = (runs.get(i + 1).longValue() - runs.get(i).longValue()) / 1000000L;
+			assertTrue("Interval " + i + " is " + interval + " ms", interval >= minIntervals[i] - 5);
+		}
+		assertTrue(runs.size() <= 6);
+	}
+
+	@Test
+	public void testFirstResult() {
+		BackoffPoller poller = new BackoffPoller(10000, 1000, 2.0, 5000, 0.5);
+		String result = poller.poll(new PolledTask<String>() {
+			@Override
+			public String run() {
+				return "found";
+			}
+
+			@Override
+			public String timedOut() {
+				return null;
+			}
+		});
+		assertEquals("found", result);
+		assertEquals(1, poller.getAttempts());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMultiplier() {
+		new BackoffPoller(1000, 100, 0.5, 1000, 0.0);
+	}
+
+}
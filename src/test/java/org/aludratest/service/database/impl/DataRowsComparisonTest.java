@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class DataRowsComparisonTest {
+
+	private static final String[] COLUMNS = { "ID", "NAME", "AMOUNT" };
+
+	@Test
+	public void testUnorderedEqual() throws SQLException {
+		DataRowsComparison comparison = new DataRowsComparison(COLUMNS, new int[] { 0 }, false);
+		comparison.addExpected(1, row(1, "a", new BigDecimal("1.50")));
+		comparison.addExpected(2, row(2, "b", null));
+		// numbers are compared by value, regardless of their type and scale
+		comparison.addActual(1, row(Long.valueOf(2), "b", null));
+		comparison.addActual(2, row(1, "a", new BigDecimal("1.5")));
+		assertTrue(comparison.isEqual());
+		assertNull(comparison.getReport());
+	}
+
+	@Test
+	public void testFloatingPointEqual() throws SQLException {
+		DataRowsComparison comparison = new DataRowsComparison(COLUMNS, new int[] { 0 }, false);
+		comparison.addExpected(1, row(1, "a", Integer.valueOf(2)));
+		comparison.addExpected(2, row(2, "b", new BigDecimal("2.50")));
+		comparison.addExpected(3, row(3, "c", new BigDecimal("0.1")));
+		// DOUBLE and REAL columns match integer and DECIMAL values
+		comparison.addActual(1, row(Double.valueOf(1.0), "a", Double.valueOf(2.0)));
+		comparison.addActual(2, row(Long.valueOf(2), "b", Double.valueOf(2.5)));
+		comparison.addActual(3, row(3, "c", Float.valueOf(0.1f)));
+		assertTrue(comparison.getReport(), comparison.isEqual());
+	}
+
+	@Test
+	public void testMissingExtraChanged() throws SQLException {
+		DataRowsComparison comparison = new DataRowsComparison(COLUMNS, new int[] { 0 }, false);
+		comparison.addExpected(1, row(1, "a", 10));
+		comparison.addExpected(2, row(2, "b", 20));
+		comparison.addExpected(3, row(3, "c", 30));
+		comparison.addActual(1, row(1, "a", 10));
+		comparison.addActual(2, row(3, "x", 30));
+		comparison.addActual(3, row(4, "d", 40));
+		assertFalse(comparison.isEqual());
+		assertEquals("Data rows differ: 1 missing, 1 extra, 1 changed row(s)\n"
+				+ "Missing row 2: [ID=2, NAME='b', AMOUNT=20]\n"
+				+ "Extra row 3: [ID=4, NAME='d', AMOUNT=40]\n"
+				+ "Changed row 2 (expected row 3): NAME is 'x' instead of 'c'", comparison.getReport());
+	}
+
+	@Test
+	public void testWithoutKey() throws SQLException {
+		DataRowsComparison comparison = new DataRowsComparison(COLUMNS, new int[0], false);
+		comparison.addExpected(1, row(1, "a", 10));
+		comparison.addExpected(2, row(1, "a", 10));
+		comparison.addActual(1, row(1, "a", 10));
+		comparison.addActual(2, row(1, "b", 10));
+		// duplicates are matched once each, and differing rows cannot be related
+		assertEquals("Data rows differ: 1 missing, 1 extra, 0 changed row(s)\n"
+				+ "Missing row 2: [ID=1, NAME='a', AMOUNT=10]\n"
+				+ "Extra row 2: [ID=1, NAME='b', AMOUNT=10]", comparison.getReport());
+	}
+
+	@Test
+	public void testOrdered() throws SQLException {
+		DataRowsComparison comparison = new DataRowsComparison(COLUMNS, new int[] { 0 }, true);
+		for (int i = 1; i <= 3; i++) {
+			comparison.addExpected(i, row(i, "x", i));
+		}
+		comparison.addActual(1, row(1, "x", 1));
+		comparison.addActual(2, row(3, "x", 3));
+		comparison.addActual(3, row(2, "x", 2));
+		assertEquals("Data rows differ: 0 missing, 0 extra, 0 changed, 1 out of order row(s)\n"
+				+ "Row 3 is out of order: it matches expected row 2, but expected row 3 has been matched before",
+				comparison.getReport());
+
+		comparison = new DataRowsComparison(COLUMNS, new int[] { 0 }, false);
+		comparison.addExpected(1, row(1, "x", 1));
+		comparison.addExpected(2, row(2, "x", 2));
+		comparison.addActual(1, row(2, "x", 2));
+		comparison.addActual(2, row(1, "x", 1));
+		assertTrue(comparison.isEqual());
+	}
+
+	@Test
+	public void testReportLimit() throws SQLException {
+		DataRowsComparison comparison = new DataRowsComparison(COLUMNS, new int[] { 0 }, false);
+		for (int i = 1; i <= DataRowsComparison.MAX_REPORTED_ROWS + 5; i++) {
+			comparison.addActual(i, row(i, "x", i));
+		}
+		String report = comparison.getReport();
+		assertTrue(report.startsWith("Data rows differ: 0 missing, 15 extra, 0 changed row(s)\n"));
+		assertTrue(report.endsWith("\n... and 5 more"));
+	}
+
+	@Test
+	public void testNormalize() throws SQLException {
+		assertEquals(Long.valueOf(5), DataRowsComparison.normalize(Integer.valueOf(5)));
+		assertEquals(Long.valueOf(0), DataRowsComparison.normalize(new BigDecimal("0.000")));
+		assertEquals(Long.valueOf(1200), DataRowsComparison.normalize(new BigDecimal("1200.00")));
+		assertEquals(new BigDecimal("23.1234"), DataRowsComparison.normalize(new BigDecimal("23.12340")));
+		assertEquals(new BigDecimal("0.1"), DataRowsComparison.normalize(Float.valueOf(0.1f)));
+		assertEquals(Long.valueOf(2), DataRowsComparison.normalize(Double.valueOf(2.0)));
+		assertEquals(Double.valueOf(Double.NaN), DataRowsComparison.normalize(Double.valueOf(Double.NaN)));
+		assertEquals(DataRowsComparison.normalize(new byte[] { 1, 2 }), DataRowsComparison.normalize(new byte[] { 1, 2 }));
+	}
+
+	private static Object[] row(Object... values) {
+		return values;
+	}
+
+}
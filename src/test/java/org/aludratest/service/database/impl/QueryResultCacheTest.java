@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class QueryResultCacheTest {
+
+	private static final Set<String> TEST1 = Collections.singleton("TEST1");
+
+	private static final Object[] NO_PARAMETERS = new Object[0];
+
+	@Test
+	public void testInvalidate() {
+		QueryResultCache cache = new QueryResultCache(10, 0);
+		cache.put("SELECT * FROM test1", NO_PARAMETERS, TEST1, null, cache.getGeneration());
+		cache.put("SELECT * FROM test2", NO_PARAMETERS, Collections.singleton("TEST2"), null, cache.getGeneration());
+		assertEquals(2, cache.size());
+		cache.invalidate(TEST1);
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getInvalidationCount());
+	}
+
+	@Test
+	public void testInvalidatedWhileQuerying() {
+		QueryResultCache cache = new QueryResultCache(10, 0);
+		long generation = cache.getGeneration();
+		// a modification is made while the query is executed, so its result may be outdated
+		cache.invalidate(TEST1);
+		cache.put("SELECT * FROM test1", NO_PARAMETERS, TEST1, null, generation);
+		assertEquals(0, cache.size());
+
+		cache.put("SELECT * FROM test1", NO_PARAMETERS, TEST1, null, cache.getGeneration());
+		assertEquals(1, cache.size());
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SlowStatementLogTest {
+
+	@Test
+	public void testThreshold() {
+		SlowStatementLog log = new SlowStatementLog(1000, false);
+		assertFalse(log.record("SELECT 1 FROM test1", new Object[0], System.nanoTime(), 1));
+		assertTrue(log.record("SELECT 1 FROM test1", new Object[0], System.nanoTime() - 2000000000L, 1));
+		assertEquals(1, log.getSlowStatementCount());
+
+		assertFalse(new SlowStatementLog(-1, false).record("SELECT 1 FROM test1", null, System.nanoTime() - 2000000000L, 1));
+	}
+
+	@Test
+	public void testPlanCapture() {
+		SlowStatementLog log = new SlowStatementLog(0, true);
+		assertFalse(log.isPlanWanted("SELECT 1 FROM test1"));
+		log.record("SELECT 1 FROM test1", null, System.nanoTime(), -1);
+		assertTrue(log.isPlanWanted("SELECT 1 FROM test1"));
+		log.planCaptured("SELECT 1 FROM test1", "plan");
+		assertFalse(log.isPlanWanted("SELECT 1 FROM test1"));
+		assertEquals(1, log.getCapturedPlanCount());
+
+		// captured only once per SQL
+		log.record("SELECT 1 FROM test1", null, System.nanoTime(), -1);
+		assertFalse(log.isPlanWanted("SELECT 1 FROM test1"));
+	}
+
+	@Test
+	public void testFormatParameters() {
+		StringBuilder longValue = new StringBuilder();
+		for (int i = 0; i < 120; i++) {
+			longValue.append('x');
+		}
+		String formatted = SlowStatementLog.formatParameters(new Object[] { Integer.valueOf(1), null, "abc",
+				longValue.toString(), new byte[3] });
+		assertTrue(formatted.startsWith("[1, NULL, 'abc', 'xxx"));
+		assertTrue(formatted.endsWith("xxx...', <byte[]>]"));
+		assertEquals("(not available)", SlowStatementLog.formatParameters(null));
+	}
+
+	@Test
+	public void testFindCaller() {
+		assertTrue(SlowStatementLog.findCaller().startsWith(getClass().getName() + ".testFindCaller"));
+	}
+
+}
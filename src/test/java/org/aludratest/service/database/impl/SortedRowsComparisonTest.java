@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.aludratest.exception.AutomationException;
+import org.junit.Test;
+
+public class SortedRowsComparisonTest {
+
+	private static final String[] COLUMNS = { "ID", "NAME" };
+
+	@Test
+	public void testEqual() throws SQLException {
+		SortedRowsComparison comparison = new SortedRowsComparison(COLUMNS, new int[] { 0 }, 0);
+		comparison.run(rows(row(1, "a"), row(2, "b")), rows(row(Long.valueOf(1), "a"), row(new BigDecimal("2.0"), "b")));
+		assertTrue(comparison.isEqual());
+		assertNull(comparison.getReport());
+		assertEquals(2, comparison.getExpectedCount());
+		assertEquals(2, comparison.getActualCount());
+	}
+
+	@Test
+	public void testDifferences() throws SQLException {
+		SortedRowsComparison comparison = new SortedRowsComparison(COLUMNS, new int[] { 0 }, 0);
+		comparison.run(rows(row(1, "a"), row(2, "b"), row(4, "d")), rows(row(1, "a"), row(3, "c"), row(4, "x"), row(5, "e")));
+		String report = comparison.getReport();
+		assertTrue(report, report.startsWith("Data rows differ: 1 missing, 2 extra, 1 changed row(s)\n"
+				+ "Missing row 2: [ID=2, NAME='b']\n"
+				+ "Extra row 2: [ID=3, NAME='c']\n"
+				+ "Extra row 4: [ID=5, NAME='e']\n"
+				+ "Changed row 3 (expected row 3): NAME is 'x' instead of 'd'\n"
+				+ "Compared 3 expected and 4 actual rows in "));
+	}
+
+	@Test
+	public void testMaxMismatches() throws SQLException {
+		SortedRowsComparison comparison = new SortedRowsComparison(COLUMNS, new int[] { 0 }, 2);
+		comparison.run(rows(row(1, "a"), row(2, "b"), row(3, "c"), row(4, "d")), rows());
+		assertEquals(2, comparison.getExpectedCount());
+		assertTrue(comparison.getReport().startsWith(
+				"Data rows differ: 2 missing, 0 extra, 0 changed row(s); comparison stopped after 2 mismatches\n"));
+	}
+
+	@Test
+	public void testUnsorted() throws SQLException {
+		SortedRowsComparison comparison = new SortedRowsComparison(COLUMNS, new int[] { 0 }, 0);
+		try {
+			comparison.run(rows(row(2, "b"), row(1, "a")), rows(row(2, "b"), row(1, "a")));
+			fail("AutomationException expected");
+		}
+		catch (AutomationException e) {
+			assertEquals("Expected rows are not sorted by their key columns: row 2 [ID=1, NAME='a'] follows [ID=2, NAME='b']",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCompareValues() {
+		assertTrue(SortedRowsComparison.compareValues(Long.valueOf(1), new BigDecimal("1.5")) < 0);
+		assertTrue(SortedRowsComparison.compareValues("b", "a") > 0);
+		// NULL values last
+		assertTrue(SortedRowsComparison.compareValues(null, Long.valueOf(1)) > 0);
+		assertEquals(0, SortedRowsComparison.compareValues(null, null));
+	}
+
+	private static Object[] row(Object... values) {
+		return values;
+	}
+
+	private static SortedRowsComparison.RowSource rows(Object[]... rows) {
+		final Iterator<Object[]> iterator = Arrays.asList(rows).iterator();
+		return new SortedRowsComparison.RowSource() {
+			@Override
+			public Object[] nextRow() {
+				return iterator.hasNext() ? iterator.next() : null;
+			}
+		};
+	}
+
+}
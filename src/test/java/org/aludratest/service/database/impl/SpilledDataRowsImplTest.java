@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.sql.Types;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class SpilledDataRowsImplTest {
+
+	private static final int ROWS = 150;
+
+	@Test
+	public void testBulkAccess() throws Exception {
+		ColumnValues ids = ColumnValues.forSqlType(Types.INTEGER);
+		ColumnValues values = ColumnValues.forSqlType(Types.BIGINT);
+		ByteBuffer buf = ByteBuffer.allocate(12);
+		for (int i = 1; i <= ROWS; i++) {
+			buf.clear();
+			buf.putInt(i).putLong(i * 1000L).flip();
+			ids.appendEncoded(buf, null);
+			if (i % 3 == 0) {
+				values.appendNull();
+			}
+			else {
+				values.appendEncoded(buf, null);
+			}
+		}
+
+		TempFiles tempFiles = new TempFiles();
+		try {
+			SpilledDataRowsImpl.Writer writer = new SpilledDataRowsImpl.Writer(new String[] { "ID", "VAL" }, new String[] {
+					"ID", "VAL" }, new int[] { Types.INTEGER, Types.BIGINT }, tempFiles);
+			ColumnValues[] columns = new ColumnValues[] { ids, values };
+			for (int row = 0; row < ROWS; row += SpilledDataRowsImpl.BLOCK_SIZE) {
+				writer.writeBlock(columns, row, Math.min(SpilledDataRowsImpl.BLOCK_SIZE, ROWS - row));
+			}
+			SpilledDataRowsImpl rows = writer.finish();
+
+			int[] intValues = rows.getInts(new IntColumnImpl("id"));
+			long[] longValues = rows.getLongs(new LongColumnImpl("val"));
+			double[] doubleValues = rows.getDoubles(new LongColumnImpl("val"));
+			BitSet nulls = rows.getNullMask(new LongColumnImpl("val"));
+			assertEquals(ROWS, intValues.length);
+			assertEquals(ROWS, longValues.length);
+			assertEquals(ROWS / 3, nulls.cardinality());
+			for (int i = 1; i <= ROWS; i++) {
+				assertEquals(i, intValues[i - 1]);
+				long expected = i % 3 == 0 ? 0 : i * 1000L;
+				assertEquals(expected, longValues[i - 1]);
+				assertEquals(expected, doubleValues[i - 1], 0);
+				assertEquals(i % 3 == 0, nulls.get(i - 1));
+			}
+		}
+		finally {
+			tempFiles.close();
+		}
+	}
+
+}
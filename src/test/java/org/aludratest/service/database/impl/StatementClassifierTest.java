@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class StatementClassifierTest {
+
+	private StatementClassifier classifier = new StatementClassifier(2);
+
+	@Test
+	public void testSimpleStatements() {
+		assertEquals(StatementType.QUERY, classifier.classify("select * from test1"));
+		assertEquals(StatementType.QUERY, classifier.classify("  (SELECT 1 FROM test1) UNION (SELECT 2 FROM test1)"));
+		assertEquals(StatementType.QUERY, classifier.classify("VALUES 1"));
+		assertEquals(StatementType.DML, classifier.classify("INSERT INTO test1 VALUES (1)"));
+		assertEquals(StatementType.DML, classifier.classify("update\ttest1 SET x = 1"));
+		assertEquals(StatementType.DML, classifier.classify("DELETE FROM test1"));
+		assertEquals(StatementType.DDL, classifier.classify("DROP TABLE test1"));
+		assertEquals(StatementType.DDL, classifier.classify(""));
+	}
+
+	@Test
+	public void testCommentsAndLiterals() {
+		assertEquals(StatementType.QUERY, classifier.classify("-- DELETE FROM test1\nSELECT * FROM test1"));
+		assertEquals(StatementType.QUERY, classifier.classify("/* drop; */ SELECT 'x; DROP TABLE test1' FROM test1"));
+		assertEquals(StatementType.QUERY, classifier.classify("SELECT \"delete\" FROM test1 WHERE a = 'it''s; DROP'"));
+		assertEquals(StatementType.DDL, classifier.classify("/* SELECT */ CREATE TABLE test3 (id INT)"));
+	}
+
+	@Test
+	public void testPrefixedStatements() {
+		assertEquals(StatementType.QUERY,
+				classifier.classify("WITH a (x) AS (SELECT 1 FROM t), b AS (SELECT 2 FROM t) SELECT * FROM a, b"));
+		assertEquals(StatementType.DML, classifier.classify("WITH a AS (SELECT 1 FROM t) INSERT INTO x SELECT * FROM a"));
+		// data modifying common table expressions, e.g. in PostgreSQL
+		assertEquals(StatementType.DML, classifier.classify("WITH d AS (DELETE FROM t RETURNING *) SELECT * FROM d"));
+		assertEquals(StatementType.DML, classifier.classify(
+				"WITH a AS (SELECT 1 FROM t), u AS MATERIALIZED ((UPDATE t SET x = 1 RETURNING x)) SELECT * FROM a, u"));
+		assertEquals(StatementType.DDL, classifier.classify("WITH a AS () SELECT * FROM a"));
+		assertEquals(StatementType.QUERY, classifier.classify("LOCK ROW FOR ACCESS SELECT * FROM test1"));
+		assertEquals(StatementType.QUERY, classifier.classify("LOCKING TABLE test1 FOR ACCESS MODE NOWAIT SEL * FROM test1"));
+		assertEquals(StatementType.DML, classifier.classify("LOCKING TABLE test1 FOR WRITE UPDATE test1 SET x = 1"));
+		assertEquals(StatementType.DDL, classifier.classify("LOCK TABLE test1 IN EXCLUSIVE MODE"));
+	}
+
+	@Test
+	public void testMultipleStatements() {
+		assertEquals(StatementType.QUERY, classifier.classify("SELECT 1 FROM t;"));
+		assertEquals(StatementType.DML, classifier.classify("SELECT 1 FROM t; DELETE FROM t"));
+		assertEquals(StatementType.DDL, classifier.classify("SELECT 1 FROM t; DROP TABLE t; SELECT 2 FROM t"));
+	}
+
+	@Test
+	public void testReferencedTables() {
+		assertEquals(new HashSet<String>(Arrays.asList("TEST1")), classifier.getReferencedTables("SELECT * FROM test1"));
+		assertEquals(new HashSet<String>(Arrays.asList("TEST1", "TEST2")),
+				classifier.getReferencedTables("SELECT a.x FROM app.test1 a JOIN test2 b ON a.id = b.id"));
+		assertEquals(new HashSet<String>(Arrays.asList("TEST1", "TEST2")),
+				classifier.getReferencedTables("INSERT INTO test1 (id) SELECT id FROM test2"));
+		assertEquals(new HashSet<String>(Arrays.asList("TEST1", "TEST2")),
+				classifier.getReferencedTables("UPDATE test1 SET x = (SELECT MAX(x) FROM test2)"));
+		assertEquals(new HashSet<String>(Arrays.asList("TEST1")), classifier.getReferencedTables("DELETE FROM test1 WHERE x = 1"));
+		// quoted identifiers are not resolved
+		assertNull(classifier.getReferencedTables("SELECT * FROM \"Test1\""));
+	}
+
+	@Test
+	public void testCacheBounds() {
+		classifier.classify("SELECT 1 FROM t");
+		classifier.classify("SELECT 2 FROM t");
+		classifier.classify("SELECT 3 FROM t");
+		assertEquals(2, classifier.size());
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.database.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TableChecksumTest {
+
+	@Test
+	public void testAddCarries() {
+		long[] sum = { 0, 0, -1, -1 };
+		TableChecksum.add(sum, new long[] { 0, 0, 0, 1 });
+		assertArrayEquals(new long[] { 0, 1, 0, 0 }, sum);
+	}
+
+	@Test
+	public void testAddWrapsAround() {
+		long[] sum = { -1, -1, -1, -1 };
+		TableChecksum.add(sum, new long[] { 0, 0, 0, 2 });
+		assertArrayEquals(new long[] { 0, 0, 0, 1 }, sum);
+	}
+
+	@Test
+	public void testAddIsOrderIndependent() {
+		byte[] first = new byte[32];
+		byte[] second = new byte[32];
+		for (int i = 0; i < 32; i++) {
+			first[i] = (byte) (i * 37 + 200);
+			second[i] = (byte) (255 - i * 11);
+		}
+		long[] sum1 = new long[4];
+		TableChecksum.add(sum1, first);
+		TableChecksum.add(sum1, second);
+		long[] sum2 = new long[4];
+		TableChecksum.add(sum2, second);
+		TableChecksum.add(sum2, first);
+		assertArrayEquals(sum1, sum2);
+	}
+
+	@Test
+	public void testKeyRangesAreAligned() {
+		List<long[]> ranges = TableChecksum.keyRanges(1, 1000, 4);
+		assertEquals(4, ranges.size());
+		assertArrayEquals(new long[] { 0, 255 }, ranges.get(0));
+		assertArrayEquals(new long[] { 768, 1023 }, ranges.get(3));
+
+		// a row more or less at either end of the key range does not move the boundaries
+		assertRangesEqual(ranges, TableChecksum.keyRanges(2, 1000, 4));
+		assertRangesEqual(ranges, TableChecksum.keyRanges(0, 1001, 4));
+		assertRangesEqual(ranges.subList(0, 3), TableChecksum.keyRanges(1, 767, 4));
+	}
+
+	@Test
+	public void testKeyRangesCoverAllKeys() {
+		List<long[]> ranges = TableChecksum.keyRanges(-5, 17, 3);
+		assertEquals(3, ranges.size());
+		assertTrue(ranges.get(0)[0] <= -5);
+		assertTrue(ranges.get(2)[1] >= 17);
+		for (int i = 1; i < ranges.size(); i++) {
+			assertEquals(ranges.get(i - 1)[1] + 1, ranges.get(i)[0]);
+		}
+
+		assertEquals(1, TableChecksum.keyRanges(42, 42, 8).size());
+		ranges = TableChecksum.keyRanges(Long.MIN_VALUE, Long.MAX_VALUE, 1);
+		assertEquals(1, ranges.size());
+		assertArrayEquals(new long[] { Long.MIN_VALUE, Long.MAX_VALUE }, ranges.get(0));
+		ranges = TableChecksum.keyRanges(Long.MIN_VALUE, Long.MAX_VALUE, 4);
+		assertEquals(4, ranges.size());
+		assertEquals(Long.MIN_VALUE, ranges.get(0)[0]);
+		assertEquals(Long.MAX_VALUE, ranges.get(3)[1]);
+	}
+
+	private static void assertRangesEqual(List<long[]> expected, List<long[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testToHex() {
+		assertEquals("00ff7f10", TableChecksum.toHex(new byte[] { 0, -1, 127, 16 }));
+	}
+
+}